@@ -0,0 +1,111 @@
+package app.bench;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.TimeoutHandler;
+import javax.ws.rs.core.Response;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * {@link AsyncResponse} для вызова асинхронных rest-методов напрямую (без HTTP) с ожиданием результата:
+ * работа с БД выполняется так же, как и при обработке запроса, - в {@link app.helpers.DatabaseExecutor}
+ */
+final class AwaitedResponse implements AsyncResponse {
+
+    private final CompletableFuture<Response> response = new CompletableFuture<>();
+
+    private AwaitedResponse() {
+    }
+
+    /**
+     * вызов rest-метода и ожидание его ответа
+     */
+    static Response await(Consumer<AsyncResponse> resourceMethod) throws InterruptedException {
+        AwaitedResponse asyncResponse = new AwaitedResponse();
+        resourceMethod.accept(asyncResponse);
+        try {
+            return asyncResponse.response.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Resource method failed", e.getCause());
+        }
+    }
+
+    @Override
+    public boolean resume(Object response) {
+        return this.response.complete((Response) response);
+    }
+
+    @Override
+    public boolean resume(Throwable response) {
+        return this.response.completeExceptionally(response);
+    }
+
+    @Override
+    public boolean cancel() {
+        return response.cancel(false);
+    }
+
+    @Override
+    public boolean cancel(int retryAfter) {
+        return cancel();
+    }
+
+    @Override
+    public boolean cancel(Date retryAfter) {
+        return cancel();
+    }
+
+    @Override
+    public boolean isSuspended() {
+        return !response.isDone();
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return response.isCancelled();
+    }
+
+    @Override
+    public boolean isDone() {
+        return response.isDone();
+    }
+
+    /**
+     * таймаут не отслеживается: бенчмарк ждёт ответ сколько потребуется
+     */
+    @Override
+    public boolean setTimeout(long time, TimeUnit unit) {
+        return true;
+    }
+
+    @Override
+    public void setTimeoutHandler(TimeoutHandler handler) {
+    }
+
+    @Override
+    public Collection<Class<?>> register(Class<?> callback) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public Map<Class<?>, Collection<Class<?>>> register(Class<?> callback, Class<?>... callbacks) {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public Collection<Class<?>> register(Object callback) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public Map<Class<?>, Collection<Class<?>>> register(Object callback, Object... callbacks) {
+        return Collections.emptyMap();
+    }
+
+}
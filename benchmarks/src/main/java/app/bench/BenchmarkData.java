@@ -0,0 +1,132 @@
+package app.bench;
+
+import app.api.rest.RestService;
+import app.helpers.FifoLedgerHelper;
+import app.helpers.HibernateHelper;
+import app.model.Product;
+import app.model.response.HttpResponseBody;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+
+import javax.ws.rs.core.Response;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+
+/**
+ * Подготовка данных для бенчмарков в файловой БД H2, заданной настройками профиля bench (см. {@link app.helpers.AppSettings}).
+ * Каждый бенчмарк запускается в отдельной JVM (fork) с параметрами {@link #PROFILE_ARG} и {@link #DB_URL_ARG}, поэтому схема создаётся заново.
+ */
+final class BenchmarkData {
+
+    /**
+     * параметры JVM для бенчмарков, работающих с БД: к DB_URL_ARG добавляется название файла БД бенчмарка
+     */
+    static final String PROFILE_ARG = "-Dmysklad.profile=bench";
+    static final String DB_URL_ARG = "-Dmysklad.db.url=jdbc:h2:./target/jmh/";
+    static final String NO_REPORT_CACHE_ARG = "-Dmysklad.report_cache.max_size=0";
+
+    static final LocalDate HISTORY_START = LocalDate.parse("2010-01-01");
+    static final int HISTORY_DAYS = 3650;
+
+    /**
+     * движения товара в истории чередуются: закупка 10 единиц по цене от 1 до 100, продажа 8 единиц по цене 150
+     */
+    static final int PURCHASE_COUNT = 10;
+    static final int SELLING_COUNT = 8;
+    static final double SELLING_PRICE = 150;
+
+    private BenchmarkData() {
+    }
+
+    static void createProduct(RestService restService, String name) throws InterruptedException {
+        Product product = new Product();
+        product.setName(name);
+        check(AwaitedResponse.await(response -> restService.createProduct(response, product)), "create product " + name);
+    }
+
+    /**
+     * история из historySize движений товара (закупок и продаж поровну) за HISTORY_DAYS дней.
+     * Записи вставляются напрямую через JDBC пакетами (id берутся из тех же последовательностей, что использует Hibernate),
+     * после чего журнал товара и его снимки перестраиваются {@link FifoLedgerHelper#rebuild(Session, Product)}
+     */
+    static void loadHistory(String name, int historySize) {
+        Transaction transaction = null;
+        try (Session session = HibernateHelper.getInstance().getFactory().openSession()) {
+            transaction = session.beginTransaction();
+            Product product = session.createQuery("from Product p where p.name = :name", Product.class)
+                    .setParameter("name", name)
+                    .getSingleResult();
+
+            session.doWork(connection -> {
+                try (PreparedStatement purchaseStatement = connection.prepareStatement(
+                        "insert into purchase (purchase_id, product_count, product_price, purchase_date, remaining_count, product_id) " +
+                                "values (next value for purchase_seq, ?, ?, ?, ?, ?)");
+                     PreparedStatement sellingStatement = connection.prepareStatement(
+                             "insert into selling (selling_id, product_count, product_price, selling_date, product_id) " +
+                                     "values (next value for selling_seq, ?, ?, ?, ?)")) {
+                    for (int i = 0; i < historySize; i++) {
+                        Date date = Date.valueOf(historyDate(i, historySize));
+                        if (i % 2 == 0) {
+                            purchaseStatement.setInt(1, PURCHASE_COUNT);
+                            purchaseStatement.setDouble(2, 1 + i % 100);
+                            purchaseStatement.setDate(3, date);
+                            purchaseStatement.setInt(4, PURCHASE_COUNT);
+                            purchaseStatement.setLong(5, product.getId());
+                            purchaseStatement.addBatch();
+                        } else {
+                            sellingStatement.setInt(1, SELLING_COUNT);
+                            sellingStatement.setDouble(2, SELLING_PRICE);
+                            sellingStatement.setDate(3, date);
+                            sellingStatement.setLong(4, product.getId());
+                            sellingStatement.addBatch();
+                        }
+                        if (i % 10_000 == 9_999) {
+                            purchaseStatement.executeBatch();
+                            sellingStatement.executeBatch();
+                        }
+                    }
+                    purchaseStatement.executeBatch();
+                    sellingStatement.executeBatch();
+                }
+            });
+            transaction.commit();
+        } catch (RuntimeException e) {
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        }
+
+        transaction = null;
+        try (Session session = HibernateHelper.getInstance().getFactory().openSession()) {
+            transaction = session.beginTransaction();
+            Product product = session.createQuery("from Product p where p.name = :name", Product.class)
+                    .setParameter("name", name)
+                    .getSingleResult();
+            FifoLedgerHelper.rebuild(session, product);
+            product.setCount((historySize + 1) / 2 * PURCHASE_COUNT - historySize / 2 * SELLING_COUNT);
+            transaction.commit();
+        } catch (RuntimeException e) {
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * дата i-го движения истории из historySize движений
+     */
+    static LocalDate historyDate(int i, int historySize) {
+        return HISTORY_START.plusDays((long) i * HISTORY_DAYS / historySize);
+    }
+
+    static Response check(Response response, String operation) {
+        if (response.getStatus() != Response.Status.OK.getStatusCode()) {
+            throw new IllegalStateException("Unable to " + operation + ": " + ((HttpResponseBody) response.getEntity()).getMessage());
+        }
+        return response;
+    }
+
+}
@@ -0,0 +1,60 @@
+package app.bench;
+
+import app.api.rest.RestService;
+import app.helpers.HibernateHelper;
+import org.openjdk.jmh.annotations.*;
+
+import javax.ws.rs.core.Response;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Отчёт о прибыли по методу FIFO ({@link RestService#getSalesReport(javax.ws.rs.container.AsyncResponse, String, String)}) в зависимости от размера истории движений товара:
+ * на дату последнего движения (прибыль берётся из журнала товара) и на дату в середине истории (расчёт от ближайшего снимка).
+ * Кэш отчётов ({@link app.helpers.ReportCache}) отключён, иначе измерялось бы только чтение из кэша.
+ * Историю из 10 млн движений можно задать параметром -p historySize=10000000 (загрузка занимает несколько минут и требует -Xmx8g).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = {BenchmarkData.PROFILE_ARG, BenchmarkData.DB_URL_ARG + "report", BenchmarkData.NO_REPORT_CACHE_ARG, "-Xmx2g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class FifoReportBenchmark {
+
+    private static final String PRODUCT_NAME = "report";
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int historySize;
+
+    private RestService restService;
+    private String lastMovementDate;
+    private String pastDate;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        restService = new RestService();
+        BenchmarkData.createProduct(restService, PRODUCT_NAME);
+        BenchmarkData.loadHistory(PRODUCT_NAME, historySize);
+
+        lastMovementDate = BenchmarkData.historyDate(historySize - 1, historySize).toString();
+        pastDate = BenchmarkData.historyDate(historySize / 2, historySize).toString();
+
+        BenchmarkData.check(AwaitedResponse.await(response -> restService.getSalesReport(response, PRODUCT_NAME, pastDate)), "build sales report");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        HibernateHelper.getInstance().close();
+    }
+
+    @Benchmark
+    public Response reportOnLastMovementDate() throws Exception {
+        return AwaitedResponse.await(response -> restService.getSalesReport(response, PRODUCT_NAME, lastMovementDate));
+    }
+
+    @Benchmark
+    public Response reportOnPastDate() throws Exception {
+        return AwaitedResponse.await(response -> restService.getSalesReport(response, PRODUCT_NAME, pastDate));
+    }
+
+}
@@ -0,0 +1,110 @@
+package app.bench;
+
+import app.api.rest.RestService;
+import app.helpers.HibernateHelper;
+import app.model.Product;
+import app.model.Purchase;
+import app.model.Selling;
+import app.model.request.PurchasesRequestModel;
+import app.model.request.SellingsRequestModel;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сохранение закупок и продаж ({@link RestService#buyProduct(javax.ws.rs.container.AsyncResponse, PurchasesRequestModel)}, {@link RestService#sellProduct(javax.ws.rs.container.AsyncResponse, SellingsRequestModel)})
+ * пакетами по batchSize движений в файловую БД H2. Каждый вызов сохраняет пакет закупок и пакет продаж на очередную дату,
+ * движения распределены между PRODUCTS товарами. Основная метрика - время сохранения пары пакетов,
+ * дополнительная (movements) - время в пересчёте на одно движение.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {BenchmarkData.PROFILE_ARG, BenchmarkData.DB_URL_ARG + "ingest"})
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class IngestBenchmark {
+
+    private static final int PRODUCTS = 10;
+
+    @Param({"1", "100", "1000"})
+    public int batchSize;
+
+    private RestService restService;
+    private LocalDate date;
+
+    /**
+     * счётчик сохранённых движений, JMH выводит его как отдельную метрику buyAndSell:movements
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long movements;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            movements = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException {
+        restService = new RestService();
+        for (int i = 0; i < PRODUCTS; i++) {
+            BenchmarkData.createProduct(restService, productName(i));
+        }
+        date = BenchmarkData.HISTORY_START;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        HibernateHelper.getInstance().close();
+    }
+
+    @Benchmark
+    public void buyAndSell(Counters counters) throws InterruptedException {
+        date = date.plusDays(1);
+
+        List<Purchase> purchases = new ArrayList<>(batchSize);
+        List<Selling> sellings = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            Purchase purchase = new Purchase();
+            purchase.setProduct(product(i));
+            purchase.setProductCount(BenchmarkData.PURCHASE_COUNT);
+            purchase.setProductPrice(1 + i % 100);
+            purchase.setPurchaseDate(date);
+            purchases.add(purchase);
+
+            Selling selling = new Selling();
+            selling.setProduct(product(i));
+            selling.setProductCount(BenchmarkData.SELLING_COUNT);
+            selling.setProductPrice(BenchmarkData.SELLING_PRICE);
+            selling.setSellingDate(date);
+            sellings.add(selling);
+        }
+
+        PurchasesRequestModel purchasesRequest = new PurchasesRequestModel();
+        purchasesRequest.setPurchases(purchases);
+        BenchmarkData.check(AwaitedResponse.await(response -> restService.buyProduct(response, purchasesRequest)), "save purchases");
+
+        SellingsRequestModel sellingsRequest = new SellingsRequestModel();
+        sellingsRequest.setSellings(sellings);
+        BenchmarkData.check(AwaitedResponse.await(response -> restService.sellProduct(response, sellingsRequest)), "save sellings");
+
+        counters.movements += 2L * batchSize;
+    }
+
+    private static Product product(int i) {
+        Product product = new Product();
+        product.setName(productName(i % PRODUCTS));
+        return product;
+    }
+
+    private static String productName(int i) {
+        return "ingest" + i;
+    }
+
+}
@@ -0,0 +1,110 @@
+package app.bench;
+
+import app.model.Product;
+import app.model.Purchase;
+import app.model.request.PurchasesRequestModel;
+import app.model.response.HttpResponseBody;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Преобразование в JSON и обратно объектов, которыми REST сервис обменивается с клиентом:
+ * ответа {@link HttpResponseBody}, закупки {@link Purchase} и запроса на закупку REQUEST_PURCHASES товаров.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class JsonBenchmark {
+
+    private static final int REQUEST_PURCHASES = 100;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private ObjectWriter responseWriter;
+    private ObjectReader responseReader;
+    private ObjectWriter purchaseWriter;
+    private ObjectReader purchaseReader;
+    private ObjectReader purchasesRequestReader;
+
+    private HttpResponseBody response;
+    private Purchase purchase;
+    private String responseJson;
+    private String purchaseJson;
+    private String purchasesRequestJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        responseWriter = mapper.writerFor(HttpResponseBody.class);
+        responseReader = mapper.readerFor(HttpResponseBody.class);
+        purchaseWriter = mapper.writerFor(Purchase.class);
+        purchaseReader = mapper.readerFor(Purchase.class);
+        purchasesRequestReader = mapper.readerFor(PurchasesRequestModel.class);
+
+        response = HttpResponseBody.builder()
+                .message("Income for product [phone] on date 2019-08-24 is: 7000.00")
+                .code(200)
+                .codeMessage("OK")
+                .build();
+        purchase = purchase(0);
+
+        List<Purchase> purchases = new ArrayList<>(REQUEST_PURCHASES);
+        for (int i = 0; i < REQUEST_PURCHASES; i++) {
+            purchases.add(purchase(i));
+        }
+        PurchasesRequestModel purchasesRequest = new PurchasesRequestModel();
+        purchasesRequest.setPurchases(purchases);
+
+        responseJson = responseWriter.writeValueAsString(response);
+        purchaseJson = purchaseWriter.writeValueAsString(purchase);
+        purchasesRequestJson = mapper.writeValueAsString(purchasesRequest);
+    }
+
+    @Benchmark
+    public String serializeResponse() throws IOException {
+        return responseWriter.writeValueAsString(response);
+    }
+
+    @Benchmark
+    public HttpResponseBody deserializeResponse() throws IOException {
+        return responseReader.readValue(responseJson);
+    }
+
+    @Benchmark
+    public String serializePurchase() throws IOException {
+        return purchaseWriter.writeValueAsString(purchase);
+    }
+
+    @Benchmark
+    public Purchase deserializePurchase() throws IOException {
+        return purchaseReader.readValue(purchaseJson);
+    }
+
+    @Benchmark
+    public PurchasesRequestModel deserializePurchasesRequest() throws IOException {
+        return purchasesRequestReader.readValue(purchasesRequestJson);
+    }
+
+    private static Purchase purchase(int i) {
+        Product product = new Product();
+        product.setName("product" + i % 10);
+
+        Purchase purchase = new Purchase();
+        purchase.setProduct(product);
+        purchase.setProductCount(1 + i % 5);
+        purchase.setProductPrice(1000 + i);
+        purchase.setPurchaseDate(LocalDate.parse("2019-08-24").plusDays(i));
+        return purchase;
+    }
+
+}
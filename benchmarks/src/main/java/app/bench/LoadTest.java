@@ -0,0 +1,197 @@
+package app.bench;
+
+import app.RunServer;
+import app.api.rest.RestService;
+import app.helpers.HibernateHelper;
+import app.helpers.VirtualThreads;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Нагрузочный тест HTTP: пропускная способность и задержки (p50, p99) отчёта о прибыли при выполнении запросов к БД
+ * на пуле потоков платформы и на виртуальных потоках (настройка server.virtual_threads, см. {@link app.helpers.DatabaseExecutor}).
+ * Запуск (после сборки модуля, см. pom.xml):
+ * <pre>
+ * java -cp target/benchmarks.jar app.bench.LoadTest [клиентов, по умолчанию 200] [секунд измерения, по умолчанию 20]
+ * </pre>
+ * Настройки приложения читаются один раз при запуске JVM, поэтому каждый режим запускается в отдельной JVM той же версии Java,
+ * что и тест; режим виртуальных потоков - только на Java 21+. Кэш отчётов отключён, чтобы каждый запрос выполнял расчёт по БД.
+ */
+public final class LoadTest {
+
+    private static final String CHILD_PROPERTY = "loadtest.child";
+    private static final String RESULT_PREFIX = "RESULT ";
+    private static final String PRODUCT_NAME = "load";
+    private static final int HISTORY_SIZE = 10_000;
+    private static final int WARMUP_SECONDS = 5;
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        if (Boolean.getBoolean(CHILD_PROPERTY)) {
+            run(clients, seconds);
+            return;
+        }
+
+        List<String> results = new ArrayList<>();
+        results.add(fork(false, clients, seconds));
+        if (VirtualThreads.isSupported()) {
+            results.add(fork(true, clients, seconds));
+        } else {
+            System.out.println("Java " + System.getProperty("java.version") + " does not support virtual threads, only platform threads are tested");
+        }
+
+        System.out.println();
+        System.out.printf("%-10s %8s %12s %10s %10s %8s%n", "threads", "clients", "requests/s", "p50, ms", "p99, ms", "errors");
+        results.forEach(System.out::println);
+    }
+
+    /**
+     * запуск теста в отдельной JVM; возвращает строку с результатом
+     */
+    private static String fork(boolean virtualThreads, int clients, int seconds) throws IOException, InterruptedException {
+        String mode = virtualThreads ? "virtual" : "platform";
+        List<String> command = new ArrayList<>(Arrays.asList(
+                System.getProperty("java.home") + File.separator + "bin" + File.separator + "java",
+                "-cp", System.getProperty("java.class.path"),
+                BenchmarkData.PROFILE_ARG,
+                BenchmarkData.DB_URL_ARG + "loadtest_" + mode,
+                BenchmarkData.NO_REPORT_CACHE_ARG,
+                "-Dmysklad.server.virtual_threads=" + virtualThreads,
+                "-Dmysklad.db_executor.queue_size=" + clients,
+                "-D" + CHILD_PROPERTY + "=true",
+                LoadTest.class.getName(), String.valueOf(clients), String.valueOf(seconds)));
+
+        System.out.println("Load test with " + mode + " threads, " + clients + " clients, " + seconds + " s");
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        String result = mode + " failed";
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(RESULT_PREFIX)) {
+                    result = line.substring(RESULT_PREFIX.length());
+                }
+            }
+        }
+        process.waitFor();
+        return result;
+    }
+
+    private static void run(int clients, int seconds) throws Exception {
+        /**
+         * соединения клиентов переиспользуются (keep-alive) - по умолчанию HttpURLConnection держит только 5 соединений
+         */
+        System.setProperty("http.maxConnections", String.valueOf(clients));
+
+        Server server = RunServer.createServer(0);
+        server.start();
+        try {
+            BenchmarkData.createProduct(new RestService(), PRODUCT_NAME);
+            BenchmarkData.loadHistory(PRODUCT_NAME, HISTORY_SIZE);
+
+            String baseUrl = "http://localhost:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort()
+                    + "/app/api/salesreport/" + PRODUCT_NAME + "/";
+            long measureStart = System.nanoTime() + WARMUP_SECONDS * 1_000_000_000L;
+            long measureEnd = measureStart + seconds * 1_000_000_000L;
+            LongAdder errors = new LongAdder();
+
+            ExecutorService clientThreads = Executors.newFixedThreadPool(clients);
+            List<Future<long[]>> clientLatencies = new ArrayList<>();
+            for (int i = 0; i < clients; i++) {
+                clientLatencies.add(clientThreads.submit(() -> {
+                    long[] latencies = new long[1024];
+                    int count = 0;
+                    while (System.nanoTime() < measureEnd) {
+                        String date = BenchmarkData.historyDate(ThreadLocalRandom.current().nextInt(HISTORY_SIZE), HISTORY_SIZE).toString();
+                        long start = System.nanoTime();
+                        boolean ok = get(baseUrl + date);
+                        long latency = System.nanoTime() - start;
+                        if (start < measureStart) {
+                            continue;
+                        }
+                        if (!ok) {
+                            errors.increment();
+                        } else {
+                            if (count == latencies.length) {
+                                latencies = Arrays.copyOf(latencies, count * 2);
+                            }
+                            latencies[count++] = latency;
+                        }
+                    }
+                    return Arrays.copyOf(latencies, count);
+                }));
+            }
+
+            long[] latencies = new long[0];
+            for (Future<long[]> future : clientLatencies) {
+                long[] clientLatency = future.get();
+                int offset = latencies.length;
+                latencies = Arrays.copyOf(latencies, offset + clientLatency.length);
+                System.arraycopy(clientLatency, 0, latencies, offset, clientLatency.length);
+            }
+            clientThreads.shutdown();
+            Arrays.sort(latencies);
+
+            System.out.printf(RESULT_PREFIX + "%-10s %8d %12.1f %10.2f %10.2f %8d%n",
+                    Boolean.getBoolean("mysklad.server.virtual_threads") ? "virtual" : "platform", clients,
+                    latencies.length / (double) seconds, percentile(latencies, 0.50), percentile(latencies, 0.99), errors.sum());
+        } finally {
+            server.stop();
+            HibernateHelper.getInstance().close();
+        }
+    }
+
+    private static boolean get(String url) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+            int status = connection.getResponseCode();
+            InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            if (body != null) {
+                try (InputStream in = body) {
+                    byte[] buffer = new byte[4096];
+                    while (in.read(buffer) >= 0) {
+                        /**
+                         * тело ответа дочитывается, чтобы соединение вернулось в пул keep-alive
+                         */
+                    }
+                }
+            }
+            return status == 200;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * перцентиль задержки в миллисекундах по отсортированным задержкам в наносекундах
+     */
+    private static double percentile(long[] sortedLatencies, double percentile) {
+        if (sortedLatencies.length == 0) {
+            return Double.NaN;
+        }
+        int index = (int) Math.ceil(percentile * sortedLatencies.length) - 1;
+        return sortedLatencies[Math.max(index, 0)] / 1_000_000.0;
+    }
+
+}
@@ -1,6 +1,6 @@
 package app;
 
-
+import app.filters.RequestTimingFilter;
 import io.swagger.jaxrs.config.BeanConfig;
 import org.glassfish.jersey.server.ResourceConfig;
 
@@ -21,6 +21,10 @@ public class RestConfig extends ResourceConfig{
          */
         packages("io.swagger.jaxrs.listing", "app.api.rest");
 //        packages( "app.api.rest");
+        /**
+         * время этапов обработки запросов для метрик и заголовка Server-Timing
+         */
+        register(RequestTimingFilter.class);
         /**
          * настройки swagger
          */
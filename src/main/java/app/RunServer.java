@@ -1,14 +1,32 @@
 package app;
 
+import app.filters.ClearResourcesFilter;
+import app.helpers.Constants;
+import app.helpers.DatabaseExecutor;
+import app.helpers.HibernateHelper;
+import app.helpers.ServerThreadPool;
+import app.helpers.WarmUp;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpHeaderValue;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
 import org.eclipse.jetty.servlet.DefaultServlet;
+import org.eclipse.jetty.servlet.FilterHolder;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
 import org.glassfish.jersey.servlet.ServletContainer;
 
-import java.io.File;
+import javax.servlet.DispatcherType;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.net.URL;
-import java.nio.file.Paths;
+import java.util.EnumSet;
 
 
 /**
@@ -19,17 +37,47 @@ public class RunServer {
 
     public static void main(String[] args) throws Exception {
 
-        URL resource = RunServer.class.getResource("/swagger-ui");
-        File swaggerStaticFilesDir = Paths.get(resource.toURI()).toFile();
+        Server server = createServer(Constants.SERVER_PORT);
+
+        try {
+            if (Constants.WARMUP_ENABLED) {
+                /**
+                 * сервер запускается после загрузки кэшей, а готовность (/app/admin/ready) сообщается после прогревочных запросов
+                 */
+                WarmUp.getInstance().run(server);
+            } else {
+                server.start();
+            }
+            server.join();
+        } finally {
+            server.destroy();
+            DatabaseExecutor.getInstance().shutdown();
+            HibernateHelper.getInstance().close();
+        }
+    }
+
+    /**
+     * сервер приложения (ещё не запущенный) на указанном порту (0 - любой свободный порт)
+     */
+    public static Server createServer(int port) {
+
+        /**
+         * статические файлы swagger читаются по URL ресурса, поэтому доступны и при запуске из jar
+         */
+        URL swaggerStaticFiles = RunServer.class.getResource("/swagger-ui");
 
 //        ResourceConfig config = new RestConfig();
 //        config.packages("io.swagger.jaxrs.listing", "app.api.rest");
 //        config.register(JacksonFeature.class);
         ServletContainer servletContainer = new ServletContainer(new RestConfig());
         ServletHolder servletHolder = new ServletHolder(servletContainer);
+        /**
+         * rest-методы, работающие с БД, асинхронные (см. {@link app.helpers.DatabaseExecutor})
+         */
+        servletHolder.setAsyncSupported(true);
 
         ServletHolder staticFilesHolder = new ServletHolder(new DefaultServlet());
-        staticFilesHolder.setInitParameter("resourceBase", swaggerStaticFilesDir.getAbsolutePath());
+        staticFilesHolder.setInitParameter("resourceBase", swaggerStaticFiles.toExternalForm());
         staticFilesHolder.setInitParameter("dirAllowed", "true");
         staticFilesHolder.setInitParameter("pathInfoOnly", "true");
 
@@ -39,14 +87,46 @@ public class RunServer {
         context.addServlet(servletHolder, "/app/*");
         context.addServlet(staticFilesHolder, "/swagger-ui/*");
 
-        Server server = new Server(8080);
-        server.setHandler(context);
+        /**
+         * фильтр метрик запросов; ресурсы приложения закрываются в main после остановки сервера, а не при остановке фильтра
+         */
+        FilterHolder metricsFilterHolder = new FilterHolder(ClearResourcesFilter.class);
+        metricsFilterHolder.setAsyncSupported(true);
+        metricsFilterHolder.setInitParameter(ClearResourcesFilter.CLOSE_RESOURCES_PARAM, "false");
+        context.addFilter(metricsFilterHolder, "/*", EnumSet.of(DispatcherType.REQUEST));
 
-        try {
-            server.start();
-            server.join();
-        } finally {
-            server.destroy();
+        /**
+         * пул потоков с ограниченной очередью и соединитель с настройками приложения (server.*, см. {@link Constants#SERVER_PORT})
+         */
+        Server server = new Server(ServerThreadPool.create());
+
+        ServerConnector connector = new ServerConnector(server, Constants.SERVER_ACCEPTORS, Constants.SERVER_SELECTORS,
+                new HttpConnectionFactory(new HttpConfiguration()));
+        connector.setPort(port);
+        connector.setIdleTimeout(Constants.SERVER_IDLE_TIMEOUT_MS);
+        connector.setAcceptQueueSize(Constants.SERVER_ACCEPT_QUEUE_SIZE);
+        server.addConnector(connector);
+
+        if (Constants.SERVER_KEEP_ALIVE) {
+            server.setHandler(context);
+        } else {
+            HandlerWrapper closeConnection = new CloseConnectionHandler();
+            closeConnection.setHandler(context);
+            server.setHandler(closeConnection);
+        }
+        return server;
+    }
+
+    /**
+     * закрытие соединения после каждого ответа (server.keep_alive=false)
+     */
+    private static class CloseConnectionHandler extends HandlerWrapper {
+
+        @Override
+        public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
+                throws IOException, ServletException {
+            response.setHeader(HttpHeader.CONNECTION.asString(), HttpHeaderValue.CLOSE.asString());
+            super.handle(target, baseRequest, request, response);
         }
     }
 
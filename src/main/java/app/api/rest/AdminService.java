@@ -0,0 +1,546 @@
+package app.api.rest;
+
+import app.helpers.Constants;
+import app.helpers.DatabaseExecutor;
+import app.helpers.FifoLedgerHelper;
+import app.helpers.HibernateHelper;
+import app.helpers.ProductLocks;
+import app.helpers.ReportCache;
+import app.helpers.ServerThreadPool;
+import app.helpers.SlowQueryLog;
+import app.helpers.WarmUp;
+import app.model.Product;
+import app.model.response.CacheRegionStatsResponseBody;
+import app.model.response.ConnectionPoolStatsResponseBody;
+import app.model.response.DatabaseExecutorStatsResponseBody;
+import app.model.response.EntityStatsResponseBody;
+import app.model.response.HibernateStatsResponseBody;
+import app.model.response.HttpResponseBody;
+import app.model.response.QueryStatsResponseBody;
+import app.model.response.ReportCacheStatsResponseBody;
+import app.model.response.ServerStatsResponseBody;
+import app.model.response.SlowQueriesResponseBody;
+import app.model.response.WarmUpResponseBody;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.swagger.annotations.*;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Ehcache;
+import org.hibernate.cache.ehcache.internal.EhcacheRegionFactory;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.EntityStatistics;
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.Statistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * служебные методы для наблюдения за состоянием приложения
+ */
+@Api(value = "admin")
+@Path("/admin")
+public class AdminService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdminService.class);
+
+    @ApiOperation(
+            value = "Перестроение журналов FIFO, дневных итогов и снимков товаров",
+            notes = "Пересчитывает производные данные по всем закупкам и продажам товара - например, после загрузки данных в обход приложения. " +
+                    "Если названия товаров не указаны, перестраиваются данные всех товаров. Каждый товар обрабатывается в отдельной транзакции: " +
+                    "ошибка при перестроении одного товара не отменяет перестроение остальных, а в ответе перечисляются товары с ошибками. " +
+                    "Перестроение выполняется в пуле потоков работы с БД, как изменяющие данные запросы",
+            response = HttpResponseBody.class
+    )
+    @ApiResponses(
+            value = {
+                    @ApiResponse(code = 500, message = "Rebuilt N products. Error: exception occurred while rebuilding product [product_name]."),
+                    @ApiResponse(code = 503, message = "Server is busy, try again later / Request timed out before it was started")
+            }
+    )
+    @POST
+    @Path("/rebuild")
+    @Produces(MediaType.APPLICATION_JSON)
+    public void rebuild(
+            @Suspended AsyncResponse asyncResponse,
+            @ApiParam(value = "Названия товаров")
+            @QueryParam("name") List<String> names
+    ) {
+        DatabaseExecutor.getInstance().submitWrite(asyncResponse, () -> rebuildProducts(names));
+    }
+
+    private static Response rebuildProducts(List<String> names) {
+        HttpResponseBody responseBody = new HttpResponseBody();
+        StringBuilder sb = new StringBuilder();
+        int rebuilt = 0;
+        int failed = 0;
+
+        List<String> productNames = names;
+        if (productNames == null || productNames.isEmpty()) {
+            try (Session session = HibernateHelper.getInstance().getFactory().openSession()) {
+                productNames = session.createQuery("select p.name from Product p order by p.name", String.class).list();
+            }
+        }
+
+        for (String name : productNames) {
+            /**
+             * на время перестроения товар блокируется, как и при закупках/продажах
+             */
+            try (ProductLocks locks = ProductLocks.lock(Collections.singleton(name));
+                 Session session = HibernateHelper.getInstance().getFactory().openSession()) {
+                Transaction transaction = session.beginTransaction();
+                /**
+                 * транзакция откатывается до закрытия сессии: после закрытия её соединение уже освобождено
+                 */
+                try {
+                    Product product = session.createQuery("from Product p where p.name = :name", Product.class)
+                            .setParameter("name", name)
+                            .uniqueResult();
+                    if (product == null) {
+                        sb.append("Error: product [").append(name).append("] does not exist. ");
+                    } else {
+                        FifoLedgerHelper.rebuild(session, product);
+                        /**
+                         * перестроение нужно после изменения данных в обход приложения, поэтому все отчёты товара в кэше считаются устаревшими
+                         */
+                        ReportCache.getInstance().invalidateOnCommit(session, name, null);
+                    }
+
+                    transaction.commit();
+                    if (product != null) {
+                        rebuilt++;
+                    }
+                } catch (RuntimeException e) {
+                    if (transaction.isActive()) {
+                        transaction.rollback();
+                    }
+                    throw e;
+                }
+            } catch (Exception e) {
+                /**
+                 * транзакции уже перестроенных товаров зафиксированы, поэтому перестроение продолжается со следующего товара
+                 */
+                LOGGER.warn("Exception occurred while rebuilding product [{}]", name, e);
+                sb.append("Error: exception occurred while rebuilding product [").append(name).append("]. ");
+                failed++;
+            }
+        }
+
+        Response.Status status = failed == 0 ? Response.Status.OK : Response.Status.INTERNAL_SERVER_ERROR;
+        responseBody.setMessage(("Rebuilt " + rebuilt + " products. " + sb).trim());
+        responseBody.setCode(status.getStatusCode());
+        responseBody.setCodeMessage(status.getReasonPhrase());
+
+        return Response.status(responseBody.getCode())
+                .entity(responseBody)
+                .build();
+    }
+
+    @ApiOperation(
+            value = "Состояние пула соединений с БД",
+            notes = "Если потоки, ожидающие соединение (threadsAwaitingConnection), появляются регулярно, пул стоит увеличить",
+            response = ConnectionPoolStatsResponseBody.class
+    )
+    @ApiResponses(
+            value = {
+                    @ApiResponse(code = 503, message = "Connection pool is not running")
+            }
+    )
+    @GET
+    @Path("/pool")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getConnectionPoolStats() {
+
+        HikariDataSource dataSource = HibernateHelper.getInstance().getDataSource();
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+
+        if (pool == null || dataSource.isClosed()) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).build();
+        }
+
+        ConnectionPoolStatsResponseBody responseBody = ConnectionPoolStatsResponseBody.builder()
+                .poolName(dataSource.getPoolName())
+                .activeConnections(pool.getActiveConnections())
+                .idleConnections(pool.getIdleConnections())
+                .totalConnections(pool.getTotalConnections())
+                .threadsAwaitingConnection(pool.getThreadsAwaitingConnection())
+                .maximumPoolSize(dataSource.getMaximumPoolSize())
+                .build();
+
+        return Response.status(Response.Status.OK)
+                .entity(responseBody)
+                .build();
+    }
+
+    @ApiOperation(
+            value = "Состояние кэша отчётов о прибыли",
+            notes = "Низкая доля попаданий (hits) при большом количестве вытеснений (evictions) означает, что кэш стоит увеличить " +
+                    "(настройка report_cache.max_size). Промахи кэша (misses) либо выполняют расчёт (calculations), либо получают " +
+                    "результат одновременного расчёта того же отчёта (coalescedRequests)",
+            response = ReportCacheStatsResponseBody.class
+    )
+    @GET
+    @Path("/reportcache")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getReportCacheStats() {
+
+        ReportCache reportCache = ReportCache.getInstance();
+        ReportCacheStatsResponseBody responseBody = ReportCacheStatsResponseBody.builder()
+                .size(reportCache.getSize())
+                .maxSize(reportCache.getMaxSize())
+                .hits(reportCache.getHits())
+                .misses(reportCache.getMisses())
+                .evictions(reportCache.getEvictions())
+                .invalidations(reportCache.getInvalidations())
+                .calculations(RestService.SALES_REPORT_CALLS.getExecutions())
+                .coalescedRequests(RestService.SALES_REPORT_CALLS.getCoalesced())
+                .inFlightCalculations(RestService.SALES_REPORT_CALLS.getInFlight())
+                .build();
+
+        return Response.status(Response.Status.OK)
+                .entity(responseBody)
+                .build();
+    }
+
+    @ApiOperation(
+            value = "Состояние пула потоков, выполняющих запросы к БД",
+            notes = "Рост отклонённых (rejectedRequests) и завершённых по таймауту (timedOutRequests) запросов означает, " +
+                    "что БД не справляется с нагрузкой; на виртуальных потоках о том же говорит рост запросов, " +
+                    "ожидающих соединения (connectionWaiters)",
+            response = DatabaseExecutorStatsResponseBody.class
+    )
+    @GET
+    @Path("/dbexecutor")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getDatabaseExecutorStats() {
+
+        DatabaseExecutor executor = DatabaseExecutor.getInstance();
+        DatabaseExecutorStatsResponseBody responseBody = DatabaseExecutorStatsResponseBody.builder()
+                .virtualThreads(executor.isVirtualThreads())
+                .threads(executor.getThreads())
+                .activeThreads(executor.getActiveThreads())
+                .queueSize(executor.getQueueSize())
+                .queueCapacity(executor.getQueueCapacity())
+                .connectionPermits(executor.getConnectionPermits())
+                .connectionWaiters(executor.getConnectionWaiters())
+                .rejectedRequests(executor.getRejected())
+                .timedOutRequests(executor.getTimedOut())
+                .build();
+
+        return Response.status(Response.Status.OK)
+                .entity(responseBody)
+                .build();
+    }
+
+    @ApiOperation(
+            value = "Состояние пула потоков встроенного сервера Jetty",
+            notes = "Если очередь (queueSize) растёт, а все потоки заняты (lowOnThreads), стоит увеличить server.max_threads; " +
+                    "отклонённые задачи (rejectedTasks) - соединения, закрытые из-за переполнения очереди (server.queue_size)",
+            response = ServerStatsResponseBody.class
+    )
+    @ApiResponses(
+            value = {
+                    @ApiResponse(code = 503, message = "Application is not run by the embedded server")
+            }
+    )
+    @GET
+    @Path("/server")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getServerStats() {
+
+        ServerThreadPool threadPool = ServerThreadPool.getCurrent();
+
+        if (threadPool == null || !threadPool.isRunning()) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).build();
+        }
+
+        ServerStatsResponseBody responseBody = ServerStatsResponseBody.builder()
+                .threads(threadPool.getThreads())
+                .busyThreads(threadPool.getBusyThreads())
+                .idleThreads(threadPool.getIdleThreads())
+                .minThreads(threadPool.getMinThreads())
+                .maxThreads(threadPool.getMaxThreads())
+                .queueSize(threadPool.getQueueSize())
+                .queueCapacity(threadPool.getQueueCapacity())
+                .rejectedTasks(threadPool.getRejected())
+                .lowOnThreads(threadPool.isLowOnThreads())
+                .build();
+
+        return Response.status(Response.Status.OK)
+                .entity(responseBody)
+                .build();
+    }
+
+    @ApiOperation(
+            value = "Статистика Hibernate и кэша второго уровня",
+            notes = "Для каждого региона кэша (product_region, purchase_region, selling_region, productByName_query_region и др.): " +
+                    "попадания, промахи и записи (статистика Hibernate), количество значений, вытеснения и истечения срока (ehcache); " +
+                    "статистика выполнения запросов и загрузки сущностей. Статистика Hibernate собирается, только если включены " +
+                    "метрики (metrics.enabled=true); её можно сбросить методом /admin/hibernate/reset",
+            response = HibernateStatsResponseBody.class
+    )
+    @GET
+    @Path("/hibernate")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getHibernateStats() {
+
+        SessionFactoryImplementor factory = HibernateHelper.getInstance().getFactory().unwrap(SessionFactoryImplementor.class);
+        Statistics statistics = factory.getStatistics();
+
+        /**
+         * счётчики ehcache (количество значений, вытеснения) доступны и без статистики Hibernate
+         */
+        RegionFactory regionFactory = factory.getCache().getRegionFactory();
+        CacheManager cacheManager = regionFactory instanceof EhcacheRegionFactory
+                ? ((EhcacheRegionFactory) regionFactory).getCacheManager()
+                : null;
+
+        List<CacheRegionStatsResponseBody> cacheRegions = factory.getCache().getCacheRegionNames()
+                .stream()
+                .sorted()
+                .map(regionName -> {
+                    CacheRegionStatistics regionStatistics = statistics.isStatisticsEnabled()
+                            ? statistics.getCacheRegionStatistics(regionName)
+                            : null;
+                    Ehcache cache = cacheManager != null ? cacheManager.getEhcache(regionName) : null;
+
+                    CacheRegionStatsResponseBody regionStats = new CacheRegionStatsResponseBody();
+                    regionStats.setRegionName(regionName);
+                    if (regionStatistics != null) {
+                        regionStats.setHitCount(regionStatistics.getHitCount());
+                        regionStats.setMissCount(regionStatistics.getMissCount());
+                        regionStats.setPutCount(regionStatistics.getPutCount());
+                        long requests = regionStatistics.getHitCount() + regionStatistics.getMissCount();
+                        regionStats.setHitRatio(requests == 0 ? 0 : (double) regionStatistics.getHitCount() / requests);
+                    }
+                    if (cache != null) {
+                        regionStats.setElementsInMemory(cache.getStatistics().getLocalHeapSize());
+                        regionStats.setMaxElementsInMemory(cache.getCacheConfiguration().getMaxEntriesLocalHeap());
+                        regionStats.setMaxBytesLocalHeap(cache.getCacheConfiguration().getMaxBytesLocalHeap());
+                        regionStats.setHeapSizeBytes(cache.getStatistics().getLocalHeapSizeInBytes());
+                        regionStats.setElementsOnDisk(cache.getStatistics().getLocalDiskSize());
+                        regionStats.setMaxBytesLocalDisk(cache.getCacheConfiguration().getMaxBytesLocalDisk());
+                        regionStats.setEvictionCount(cache.getStatistics().cacheEvictedCount());
+                        regionStats.setExpiredCount(cache.getStatistics().cacheExpiredCount());
+                    }
+                    return regionStats;
+                })
+                .collect(Collectors.toList());
+
+        List<EntityStatsResponseBody> entities = Arrays.stream(statistics.getEntityNames())
+                .sorted()
+                .map(entityName -> {
+                    EntityStatistics entityStatistics = statistics.getEntityStatistics(entityName);
+                    return EntityStatsResponseBody.builder()
+                            .entityName(entityName)
+                            .loadCount(entityStatistics.getLoadCount())
+                            .fetchCount(entityStatistics.getFetchCount())
+                            .insertCount(entityStatistics.getInsertCount())
+                            .updateCount(entityStatistics.getUpdateCount())
+                            .deleteCount(entityStatistics.getDeleteCount())
+                            .cacheHitCount(entityStatistics.getCacheHitCount())
+                            .cacheMissCount(entityStatistics.getCacheMissCount())
+                            .cachePutCount(entityStatistics.getCachePutCount())
+                            .build();
+                })
+                .collect(Collectors.toList());
+
+        List<QueryStatsResponseBody> queries = Arrays.stream(statistics.getQueries())
+                .map(query -> {
+                    QueryStatistics queryStatistics = statistics.getQueryStatistics(query);
+                    return QueryStatsResponseBody.builder()
+                            .query(query)
+                            .executionCount(queryStatistics.getExecutionCount())
+                            .executionRowCount(queryStatistics.getExecutionRowCount())
+                            .executionTotalTime(queryStatistics.getExecutionTotalTime())
+                            .executionAvgTime(queryStatistics.getExecutionAvgTime())
+                            .executionMaxTime(queryStatistics.getExecutionMaxTime())
+                            .cacheHitCount(queryStatistics.getCacheHitCount())
+                            .cacheMissCount(queryStatistics.getCacheMissCount())
+                            .cachePutCount(queryStatistics.getCachePutCount())
+                            .build();
+                })
+                .sorted(Comparator.comparingLong(QueryStatsResponseBody::getExecutionTotalTime).reversed())
+                .collect(Collectors.toList());
+
+        HibernateStatsResponseBody responseBody = HibernateStatsResponseBody.builder()
+                .statisticsEnabled(statistics.isStatisticsEnabled())
+                .statisticsSince(Instant.ofEpochMilli(statistics.getStartTime()).toString())
+                .sessionOpenCount(statistics.getSessionOpenCount())
+                .transactionCount(statistics.getTransactionCount())
+                .prepareStatementCount(statistics.getPrepareStatementCount())
+                .entityLoadCount(statistics.getEntityLoadCount())
+                .entityFetchCount(statistics.getEntityFetchCount())
+                .queryExecutionCount(statistics.getQueryExecutionCount())
+                .queryExecutionMaxTime(statistics.getQueryExecutionMaxTime())
+                .queryExecutionMaxTimeQuery(statistics.getQueryExecutionMaxTimeQueryString())
+                .secondLevelCacheHitCount(statistics.getSecondLevelCacheHitCount())
+                .secondLevelCacheMissCount(statistics.getSecondLevelCacheMissCount())
+                .secondLevelCachePutCount(statistics.getSecondLevelCachePutCount())
+                .queryCacheHitCount(statistics.getQueryCacheHitCount())
+                .queryCacheMissCount(statistics.getQueryCacheMissCount())
+                .queryCachePutCount(statistics.getQueryCachePutCount())
+                .cacheRegions(cacheRegions)
+                .entities(entities)
+                .queries(queries)
+                .build();
+
+        return Response.status(Response.Status.OK)
+                .entity(responseBody)
+                .build();
+    }
+
+    @ApiOperation(
+            value = "Сброс статистики Hibernate",
+            notes = "Обнуляет статистику запросов, сущностей и регионов кэша (счётчики ehcache не сбрасываются)",
+            response = HttpResponseBody.class
+    )
+    @POST
+    @Path("/hibernate/reset")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response resetHibernateStats() {
+
+        HibernateHelper.getInstance().getFactory().getStatistics().clear();
+
+        HttpResponseBody responseBody = new HttpResponseBody();
+        responseBody.setMessage("Hibernate statistics reset");
+        responseBody.setCode(Response.Status.OK.getStatusCode());
+        responseBody.setCodeMessage(Response.Status.OK.getReasonPhrase());
+
+        return Response.status(responseBody.getCode())
+                .entity(responseBody)
+                .build();
+    }
+
+    @ApiOperation(
+            value = "Журнал медленных запросов к БД",
+            notes = "Последние запросы дольше порога slow_query.threshold_ms: текст, значения параметров, время выполнения " +
+                    "и чтения результата, количество строк и план выполнения H2 (для SELECT)",
+            response = SlowQueriesResponseBody.class
+    )
+    @GET
+    @Path("/slowqueries")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getSlowQueries() {
+
+        SlowQueryLog slowQueryLog = SlowQueryLog.getInstance();
+        SlowQueriesResponseBody responseBody = SlowQueriesResponseBody.builder()
+                .thresholdMs(slowQueryLog.getThresholdMs())
+                .capacity(Constants.SLOW_QUERY_LOG_SIZE)
+                .slowQueryCount(slowQueryLog.getSlowQueryCount())
+                .queries(slowQueryLog.getQueries())
+                .build();
+
+        return Response.status(Response.Status.OK)
+                .entity(responseBody)
+                .build();
+    }
+
+    @ApiOperation(
+            value = "Очистка журнала медленных запросов",
+            response = HttpResponseBody.class
+    )
+    @POST
+    @Path("/slowqueries/reset")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response resetSlowQueries() {
+
+        SlowQueryLog.getInstance().clear();
+
+        HttpResponseBody responseBody = new HttpResponseBody();
+        responseBody.setMessage("Slow query log cleared");
+        responseBody.setCode(Response.Status.OK.getStatusCode());
+        responseBody.setCodeMessage(Response.Status.OK.getReasonPhrase());
+
+        return Response.status(responseBody.getCode())
+                .entity(responseBody)
+                .build();
+    }
+
+    @ApiOperation(
+            value = "Изменение порога журнала медленных запросов",
+            notes = "Порог действует до перезапуска приложения и не может быть меньше slow_query.min_threshold_ms. " +
+                    "Если журнал отключён при запуске (slow_query.threshold_ms=-1), включить его этим методом нельзя",
+            response = HttpResponseBody.class
+    )
+    @ApiResponses(
+            value = {
+                    @ApiResponse(code = 400, message = "Slow query log is disabled"),
+                    @ApiResponse(code = 400, message = "Slow query threshold must be >= [slow_query.min_threshold_ms] ms")
+            }
+    )
+    @POST
+    @Path("/slowqueries/threshold")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response setSlowQueryThreshold(
+            @ApiParam(value = "Порог времени запроса, мс", required = true)
+            @QueryParam("ms") long thresholdMs
+    ) {
+
+        HttpResponseBody responseBody = new HttpResponseBody();
+        SlowQueryLog slowQueryLog = SlowQueryLog.getInstance();
+
+        if (!slowQueryLog.isEnabled()) {
+            responseBody.setMessage("Slow query log is disabled");
+            responseBody.setCode(Response.Status.BAD_REQUEST.getStatusCode());
+            responseBody.setCodeMessage(Response.Status.BAD_REQUEST.getReasonPhrase());
+        } else if (thresholdMs < Constants.SLOW_QUERY_MIN_THRESHOLD_MS) {
+            responseBody.setMessage("Slow query threshold must be >= " + Constants.SLOW_QUERY_MIN_THRESHOLD_MS + " ms");
+            responseBody.setCode(Response.Status.BAD_REQUEST.getStatusCode());
+            responseBody.setCodeMessage(Response.Status.BAD_REQUEST.getReasonPhrase());
+        } else {
+            slowQueryLog.setThresholdMs(thresholdMs);
+            responseBody.setMessage("Slow query threshold set to " + slowQueryLog.getThresholdMs() + " ms");
+            responseBody.setCode(Response.Status.OK.getStatusCode());
+            responseBody.setCodeMessage(Response.Status.OK.getReasonPhrase());
+        }
+
+        return Response.status(responseBody.getCode())
+                .entity(responseBody)
+                .build();
+    }
+
+    @ApiOperation(
+            value = "Готовность приложения к работе",
+            notes = "При включённом прогреве (warmup.enabled=true) приложение готово после загрузки кэшей второго уровня " +
+                    "и прогревочных запросов; в ответе - количество загруженных товаров, закупок, продаж, выполненных запросов " +
+                    "и продолжительность прогрева. Подходит для проверки готовности (readiness probe) балансировщиком",
+            response = WarmUpResponseBody.class
+    )
+    @ApiResponses(
+            value = {
+                    @ApiResponse(code = 503, message = "Warm-up is in progress")
+            }
+    )
+    @GET
+    @Path("/ready")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getReadiness() {
+
+        WarmUpResponseBody responseBody = WarmUp.getInstance().getStats();
+
+        return Response.status(responseBody.isReady() ? Response.Status.OK : Response.Status.SERVICE_UNAVAILABLE)
+                .entity(responseBody)
+                .build();
+    }
+
+}
@@ -0,0 +1,44 @@
+package app.api.rest;
+
+import app.helpers.Constants;
+import app.helpers.RequestMetrics;
+import io.swagger.annotations.*;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Response;
+
+/**
+ * метрики приложения для сбора Prometheus
+ */
+@Api(value = "metrics")
+@Path("/metrics")
+public class MetricsService {
+
+    @ApiOperation(
+            value = "Метрики HTTP-запросов в текстовом формате Prometheus",
+            notes = "Для каждого rest-метода: гистограмма времени обработки и оценки p50/p95/p99 по ней, размер ответов, " +
+                    "количество ответов по кодам статуса, суммарное время этапов обработки (json, queue, db, fifo); " +
+                    "а также количество обрабатываемых запросов. Те же этапы каждого запроса передаются в заголовке ответа Server-Timing",
+            response = String.class
+    )
+    @ApiResponses(
+            value = {
+                    @ApiResponse(code = 404, message = "Metrics are disabled (metrics.enabled=false)")
+            }
+    )
+    @GET
+    @Produces(RequestMetrics.CONTENT_TYPE)
+    public Response getMetrics() {
+
+        if (!Constants.METRICS_ENABLED) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+
+        return Response.status(Response.Status.OK)
+                .entity(RequestMetrics.getInstance().scrape())
+                .build();
+    }
+
+}
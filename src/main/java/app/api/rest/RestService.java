@@ -1,28 +1,52 @@
 package app.api.rest;
 
+import app.helpers.Constants;
+import app.helpers.DatabaseExecutor;
+import app.helpers.FifoLedgerHelper;
 import app.helpers.HibernateHelper;
+import app.helpers.ImportHelper;
+import app.helpers.ProductLocks;
+import app.helpers.ReportCache;
+import app.helpers.ReportGranularity;
+import app.helpers.RequestTimings;
+import app.helpers.SingleFlight;
 import app.model.Product;
 import app.model.Purchase;
 import app.model.Selling;
 import app.model.request.PurchasesRequestModel;
 import app.model.request.SellingsRequestModel;
 import app.model.response.HttpResponseBody;
+import app.model.response.ImportResponseBody;
+import app.model.response.SalesReportSeriesResponseBody;
+import app.model.response.SalesReportsResponseBody;
 import io.swagger.annotations.*;
 import org.hibernate.Session;
 import org.hibernate.Transaction;
 
-import javax.persistence.Tuple;
-import javax.persistence.criteria.CriteriaBuilder;
-import javax.persistence.criteria.CriteriaQuery;
-import javax.persistence.criteria.Root;
 import javax.ws.rs.*;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.time.DateTimeException;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @SwaggerDefinition(
@@ -54,6 +78,11 @@ import java.util.stream.Collectors;
 @Path("/api")
 public class RestService {
 
+    /**
+     * выполняющиеся расчёты отчётов о прибыли по товару на дату (ключ - название товара, дата отчёта, версия кэша отчётов)
+     */
+    static final SingleFlight<List<Object>, HttpResponseBody> SALES_REPORT_CALLS = new SingleFlight<>();
+
     @ApiOperation(value = "Доступные операции в рамках данного сервиса")
     @ApiResponses(value = {
             @ApiResponse(code = 200, message = "OK",
@@ -77,19 +106,25 @@ public class RestService {
     @ApiResponses(
             value = {
                     @ApiResponse(code = 400, message = "Date must have format: YYYY-MM-DD"),
-                    @ApiResponse(code = 500, message = "Exception occurred while sales report calculation")
+                    @ApiResponse(code = 400, message = "Product [product_name] does not exist"),
+                    @ApiResponse(code = 500, message = "Exception occurred while sales report calculation"),
+                    @ApiResponse(code = 503, message = "Server is busy, try again later / Request timed out")
             }
     )
     @GET
     @Path("/salesreport/{name}/{date}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getSalesReport(
+    public void getSalesReport(
+            @Suspended AsyncResponse asyncResponse,
             @ApiParam(value = "Название товара")
             @PathParam("name") String name,
             @ApiParam(value = "Дата отчёта")
             @PathParam("date") String date
-    ) throws Exception {
+    ) {
+        DatabaseExecutor.getInstance().submit(asyncResponse, () -> salesReport(name, date));
+    }
 
+    private static Response salesReport(String name, String date) {
         HttpResponseBody responseBody = new HttpResponseBody();
 
         LocalDate reportDate = null;
@@ -102,64 +137,220 @@ public class RestService {
             responseBody.setCodeMessage(Response.Status.BAD_REQUEST.getReasonPhrase());
         }
 
-        if (reportDate != null) {
+        /**
+         * прибыль берётся из кэша отчётов, если после её расчёта не сохранялись движения товара с датой не позднее даты отчёта
+         */
+        Double cachedIncome = reportDate == null ? null : ReportCache.getInstance().get(name, reportDate);
+
+        if (cachedIncome != null) {
+            responseBody.setCode(Response.Status.OK.getStatusCode());
+            responseBody.setCodeMessage(Response.Status.OK.getReasonPhrase());
+            responseBody.setMessage(incomeMessage(reportDate, cachedIncome));
+        } else if (reportDate != null) {
+            /**
+             * одновременные запросы одного и того же отчёта (например, при обновлении дашбордов) выполняют один расчёт на всех;
+             * версия кэша в ключе не даёт запросу, пришедшему после изменения товара, получить результат расчёта, начатого до него
+             */
+            long cacheVersion = ReportCache.getInstance().getVersion(name);
+            LocalDate parsedDate = reportDate;
+            responseBody = SALES_REPORT_CALLS.execute(Arrays.asList(name, reportDate, cacheVersion),
+                    () -> calculateSalesReport(name, parsedDate, cacheVersion));
+        }
+
+        Response response = Response.status(responseBody.getCode())
+                .entity(responseBody)
+                .build();
+
+        return response;
+    }
+
+
+    @ApiOperation(
+            value = "Отчёт о прибыли, полученной с конкретного товара, за период",
+            notes = "Прибыль расчитывается по методу FIFO нарастающим итогом на конец каждого дня (day), недели (week) или месяца (month) периода. " +
+                    "Значения дат должны иметь следующий формат: YYYY-MM-DD",
+            response = SalesReportSeriesResponseBody.class
+    )
+    @ApiResponses(
+            value = {
+                    @ApiResponse(code = 400, message = "Dates must have format: YYYY-MM-DD, start date must not be after end date"),
+                    @ApiResponse(code = 400, message = "Granularity must be one of: day, week, month"),
+                    @ApiResponse(code = 400, message = "Product [product_name] does not exist"),
+                    @ApiResponse(code = 500, message = "Exception occurred while sales report calculation"),
+                    @ApiResponse(code = 503, message = "Server is busy, try again later / Request timed out")
+            }
+    )
+    @GET
+    @Path("/salesreport/{name}/{from}/{to}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public void getSalesReportSeries(
+            @Suspended AsyncResponse asyncResponse,
+            @ApiParam(value = "Название товара")
+            @PathParam("name") String name,
+            @ApiParam(value = "Дата начала периода")
+            @PathParam("from") String from,
+            @ApiParam(value = "Дата окончания периода")
+            @PathParam("to") String to,
+            @ApiParam(value = "Шаг отчёта", allowableValues = "day, week, month")
+            @QueryParam("granularity") @DefaultValue("day") String granularity
+    ) {
+        DatabaseExecutor.getInstance().submit(asyncResponse, () -> salesReportSeries(name, from, to, granularity));
+    }
+
+    private static Response salesReportSeries(String name, String from, String to, String granularity) {
+        SalesReportSeriesResponseBody responseBody = new SalesReportSeriesResponseBody();
+
+        LocalDate fromDate = null;
+        LocalDate toDate = null;
+        ReportGranularity reportGranularity = null;
+
+        try {
+            fromDate = LocalDate.parse(from);
+            toDate = LocalDate.parse(to);
+            if (fromDate.isAfter(toDate)) {
+                fromDate = null;
+            }
+        } catch (DateTimeException e) {
+            fromDate = null;
+        }
+
+        try {
+            reportGranularity = ReportGranularity.valueOf(granularity.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            responseBody.setMessage("Granularity must be one of: day, week, month");
+            responseBody.setCode(Response.Status.BAD_REQUEST.getStatusCode());
+            responseBody.setCodeMessage(Response.Status.BAD_REQUEST.getReasonPhrase());
+        }
+
+        if (fromDate == null) {
+            responseBody.setMessage("Dates must have format: YYYY-MM-DD, start date must not be after end date");
+            responseBody.setCode(Response.Status.BAD_REQUEST.getStatusCode());
+            responseBody.setCodeMessage(Response.Status.BAD_REQUEST.getReasonPhrase());
+        } else if (reportGranularity != null) {
             Transaction transaction = null;
             try (Session session = HibernateHelper.getInstance().getFactory().openSession()) {
                 transaction = session.beginTransaction();
 
-                CriteriaBuilder builder = session.getCriteriaBuilder();
-                CriteriaQuery<Purchase> purchaseQuery = builder.createQuery(Purchase.class);
-                Root<Purchase> purchaseRoot = purchaseQuery.from(Purchase.class);
+                Product product = session.createQuery("from Product p where p.name=:product_name", Product.class)
+                        .setParameter("product_name", name)
+                        .setCacheable(true)
+                        .setCacheRegion("productByName_query_region")
+                        .uniqueResult();
+
+                if (product == null) {
+                    responseBody.setCode(Response.Status.BAD_REQUEST.getStatusCode());
+                    responseBody.setCodeMessage(Response.Status.BAD_REQUEST.getReasonPhrase());
+                    responseBody.setMessage("Product [" + name + "] does not exist");
+                } else {
+                    Map<String, Double> incomes = new LinkedHashMap<>();
+                    LocalDate seriesFrom = fromDate;
+                    LocalDate seriesTo = toDate;
+                    ReportGranularity seriesGranularity = reportGranularity;
+                    RequestTimings.time(RequestTimings.FIFO,
+                            () -> FifoLedgerHelper.getIncomeSeries(session, product, seriesFrom, seriesTo, seriesGranularity))
+                            .forEach((date, income) -> incomes.put(date.toString(), Math.round(income * 100) / 100.0));
+
+                    responseBody.setMessage("Income of product [" + name + "] from " + fromDate + " to " + toDate);
+                    responseBody.setGranularity(reportGranularity.name().toLowerCase());
+                    responseBody.setIncomes(incomes);
+                    responseBody.setCode(Response.Status.OK.getStatusCode());
+                    responseBody.setCodeMessage(Response.Status.OK.getReasonPhrase());
+                }
 
-                List<Purchase> purchases = session.createQuery(purchaseQuery.select(purchaseRoot)
-                        .where(builder.and(builder.lessThanOrEqualTo(purchaseRoot.get("purchaseDate"), reportDate),
-                                builder.equal(purchaseRoot.get("product").get("name"), name)))
-                        .orderBy(builder.asc(purchaseRoot.get("purchaseDate")))
-                )
-                        .list();
+                transaction.commit();
+            } catch (Exception e) {
+                if (transaction != null && transaction.isActive()) {
+                    transaction.rollback();
+                }
 
+                responseBody.setCode(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode());
+                responseBody.setCodeMessage(Response.Status.INTERNAL_SERVER_ERROR.getReasonPhrase());
+                responseBody.setMessage("Exception occurred while sales report calculation");
+            }
+        }
 
-                builder = session.getCriteriaBuilder();
-                CriteriaQuery<Tuple> sellingQuery = builder.createTupleQuery();
-                Root<Selling> sellingRoot = sellingQuery.from(Selling.class);
+        Response response = Response.status(responseBody.getCode())
+                .entity(responseBody)
+                .build();
 
-                Tuple sellingCountAndSum = session.createQuery(sellingQuery.multiselect(
-                        builder.sumAsLong(sellingRoot.get("productCount")),
-                        builder.sumAsDouble(
-                                builder.prod(sellingRoot.get("productCount"), sellingRoot.get("productPrice"))
-                        )
-                        )
-                                .where(builder.and(builder.lessThanOrEqualTo(sellingRoot.get("sellingDate"), reportDate),
-                                        builder.equal(sellingRoot.get("product").get("name"), name)))
-                )
-                        .getSingleResult();
+        return response;
+    }
 
-                long sellingProductCount = sellingCountAndSum.get(0, Long.class);
-                double sellingProductFullPrice = sellingCountAndSum.get(1, Double.class);
 
-                long productCount = -sellingProductCount;
-                double fullPrice = sellingProductFullPrice;
-                for (Purchase purchase : purchases) {
-                    if (productCount == 0) {
-                        break;
-                    } else {
-                        if (productCount + purchase.getProductCount() <= 0) {
-                            productCount += purchase.getProductCount();
-                            fullPrice -= purchase.getProductCount() * purchase.getProductPrice();
-                        } else {
-                            fullPrice -= -productCount * purchase.getProductPrice();
-                            productCount = 0;
-                        }
-                    }
+    @ApiOperation(
+            value = "Отчёт о прибыли, полученной с нескольких товаров на указанную дату",
+            notes = "Прибыль расчитывается по методу FIFO. Если названия товаров не указаны, то отчёт строится по всем товарам. " +
+                    "Значение даты должно иметь следующий формат: YYYY-MM-DD",
+            response = SalesReportsResponseBody.class
+    )
+    @ApiResponses(
+            value = {
+                    @ApiResponse(code = 400, message = "Date must have format: YYYY-MM-DD"),
+                    @ApiResponse(code = 500, message = "Exception occurred while sales report calculation"),
+                    @ApiResponse(code = 503, message = "Server is busy, try again later / Request timed out")
+            }
+    )
+    @GET
+    @Path("/salesreports/{date}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public void getSalesReports(
+            @Suspended AsyncResponse asyncResponse,
+            @ApiParam(value = "Дата отчёта")
+            @PathParam("date") String date,
+            @ApiParam(value = "Названия товаров")
+            @QueryParam("name") List<String> names
+    ) {
+        DatabaseExecutor.getInstance().submit(asyncResponse, () -> salesReports(date, names));
+    }
+
+    private static Response salesReports(String date, List<String> names) {
+        SalesReportsResponseBody responseBody = new SalesReportsResponseBody();
+
+        LocalDate reportDate = null;
+
+        try {
+            reportDate = LocalDate.parse(date);
+        } catch (DateTimeException e) {
+            responseBody.setMessage("Date must have format: YYYY-MM-DD");
+            responseBody.setCode(Response.Status.BAD_REQUEST.getStatusCode());
+            responseBody.setCodeMessage(Response.Status.BAD_REQUEST.getReasonPhrase());
+        }
+
+        if (reportDate != null) {
+            Transaction transaction = null;
+            try (Session session = HibernateHelper.getInstance().getFactory().openSession()) {
+                transaction = session.beginTransaction();
+
+                List<Product> products;
+                if (names == null || names.isEmpty()) {
+                    products = session.createQuery("from Product", Product.class).list();
+                } else {
+                    products = session.createQuery("from Product p where p.name in :names", Product.class)
+                            .setParameter("names", names)
+                            .list();
                 }
 
+                Map<String, Double> incomes = new TreeMap<>();
+                LocalDate incomesDate = reportDate;
+                RequestTimings.time(RequestTimings.FIFO, () -> FifoLedgerHelper.getIncomes(session, products, incomesDate))
+                        .forEach((name, income) -> incomes.put(name, Math.round(income * 100) / 100.0));
+
+                StringBuilder sb = new StringBuilder();
+                if (names != null) {
+                    names.stream()
+                            .distinct()
+                            .filter(name -> !incomes.containsKey(name))
+                            .forEach(name -> sb.append("Error: product [")
+                                    .append(name)
+                                    .append("] does not exist. "));
+                }
 
+                responseBody.setMessage(sb.toString().trim());
+                responseBody.setDate(reportDate.toString());
+                responseBody.setIncomes(incomes);
                 responseBody.setCode(Response.Status.OK.getStatusCode());
                 responseBody.setCodeMessage(Response.Status.OK.getReasonPhrase());
 
-                NumberFormat formatter = new DecimalFormat("#0.00");
-                responseBody.setMessage("Income on " + reportDate + ": [" + formatter.format(fullPrice) + "]");
-
                 transaction.commit();
             } catch (Exception e) {
                 if (transaction != null && transaction.isActive()) {
@@ -187,16 +378,22 @@ public class RestService {
     )
     @ApiResponses(value = {
             @ApiResponse(code = 400, message = "Product [product_name] already exists"),
-            @ApiResponse(code = 500, message = "Exception occurred while saving product")
+            @ApiResponse(code = 500, message = "Exception occurred while saving product"),
+            @ApiResponse(code = 503, message = "Server is busy, try again later / Request timed out before it was started")
     })
     @POST
     @Path("/newproduct")
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public Response createProduct(
+    public void createProduct(
+            @Suspended AsyncResponse asyncResponse,
             @ApiParam(value = "Объект товара (указывается только наименование товара)", required = true)
                     Product product
     ) {
+        DatabaseExecutor.getInstance().submitWrite(asyncResponse, () -> saveProduct(product));
+    }
+
+    private static Response saveProduct(Product product) {
         HttpResponseBody responseBody = new HttpResponseBody();
 
         Transaction transaction = null;
@@ -213,6 +410,7 @@ public class RestService {
 
             if (productFromDb == null) {
                 session.save(product);
+                FifoLedgerHelper.createLedger(session, product);
                 responseBody.setMessage("Product [" + product.getName() + "] saved");
                 responseBody.setCode(Response.Status.OK.getStatusCode());
                 responseBody.setCodeMessage(Response.Status.OK.getReasonPhrase());
@@ -246,17 +444,22 @@ public class RestService {
     )
     @ApiResponses(value = {
             @ApiResponse(code = 400, message = "Products does not specified"),
-            @ApiResponse(code = 500, message = "Exception occurred while saving purchases")
+            @ApiResponse(code = 500, message = "Exception occurred while saving purchases"),
+            @ApiResponse(code = 503, message = "Server is busy, try again later / Request timed out before it was started")
     })
     @POST
     @Path("/purchase")
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public Response buyProduct(
+    public void buyProduct(
+            @Suspended AsyncResponse asyncResponse,
             @ApiParam(value = "Список закупленных товаров", required = true)
                     PurchasesRequestModel requestModel
     ) {
+        DatabaseExecutor.getInstance().submitWrite(asyncResponse, () -> purchase(requestModel));
+    }
 
+    private static Response purchase(PurchasesRequestModel requestModel) {
         List<Purchase> purchases = requestModel.getPurchases();
         HttpResponseBody responseBody = new HttpResponseBody();
 
@@ -266,51 +469,15 @@ public class RestService {
             responseBody.setCodeMessage(Response.Status.BAD_REQUEST.getReasonPhrase());
         } else {
             Transaction transaction = null;
-            try (Session session = HibernateHelper.getInstance().getFactory().openSession()) {
+            /**
+             * товары блокируются до фиксации транзакции, чтобы параллельные запросы не изменяли их остаток и журнал одновременно
+             */
+            try (ProductLocks locks = ProductLocks.lock(productNames(purchases, Purchase::getProduct));
+                 Session session = HibernateHelper.getInstance().getFactory().openSession()) {
                 transaction = session.beginTransaction();
 
-                CriteriaBuilder builder = session.getCriteriaBuilder();
-                CriteriaQuery<Product> productNamesQuery = builder.createQuery(Product.class);
-                Root<Product> productRoot = productNamesQuery.from(Product.class);
-                productNamesQuery.select(productRoot);
-
-                List<Product> productsFromDb = session.createQuery(productNamesQuery).list();
-                List<String> productNames = productsFromDb
-                        .stream()
-                        .map(Product::getName)
-                        .collect(Collectors.toList());
-
                 StringBuilder sb = new StringBuilder();
-
-                purchases.forEach(purchase -> {
-                    if (productNames.contains(purchase.getProduct().getName())) {
-                        if (purchase.getProductCount() > 0 && purchase.getProductPrice() >= 0 && purchase.getPurchaseDate() != null) {
-
-                            Product actualProduct = productsFromDb
-                                    .stream()
-                                    .filter(product -> product.getName().equals(purchase.getProduct().getName()))
-                                    .findFirst()
-                                    .get();
-                            actualProduct.setCount(actualProduct.getCount() + purchase.getProductCount());
-
-                            purchase.setProduct(actualProduct);
-
-                            session.save(purchase);
-
-                            sb.append("Purchase for product [")
-                                    .append(actualProduct.getName())
-                                    .append("] saved. ");
-                        } else {
-                            sb.append("Error: in product [")
-                                    .append(purchase.getProduct().getName())
-                                    .append("] purchase data incorrect: productCount must be > 0, productPrice must be >=0, productDate must be not null and have format YYYY-MM-DD. ");
-                        }
-                    } else {
-                        sb.append("Error: product [")
-                                .append(purchase.getProduct().getName())
-                                .append("] does not exist. ");
-                    }
-                });
+                savePurchases(session, purchases, sb, true);
 
                 responseBody.setMessage(sb.toString().trim());
                 responseBody.setCode(Response.Status.OK.getStatusCode());
@@ -341,17 +508,22 @@ public class RestService {
     )
     @ApiResponses(value = {
             @ApiResponse(code = 400, message = "Products does not specified"),
-            @ApiResponse(code = 500, message = "Exception occurred while saving sellings")
+            @ApiResponse(code = 500, message = "Exception occurred while saving sellings"),
+            @ApiResponse(code = 503, message = "Server is busy, try again later / Request timed out before it was started")
     })
     @POST
     @Path("/demand")
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public Response sellProduct(
+    public void sellProduct(
+            @Suspended AsyncResponse asyncResponse,
             @ApiParam(value = "Список проданных товаров", required = true)
                     SellingsRequestModel requestModel
     ) {
+        DatabaseExecutor.getInstance().submitWrite(asyncResponse, () -> demand(requestModel));
+    }
 
+    private static Response demand(SellingsRequestModel requestModel) {
         List<Selling> sellings = requestModel.getSellings();
         HttpResponseBody responseBody = new HttpResponseBody();
 
@@ -361,55 +533,15 @@ public class RestService {
             responseBody.setCodeMessage(Response.Status.BAD_REQUEST.getReasonPhrase());
         } else {
             Transaction transaction = null;
-            try (Session session = HibernateHelper.getInstance().getFactory().openSession()) {
+            /**
+             * товары блокируются до фиксации транзакции, чтобы параллельные запросы не изменяли их остаток и журнал одновременно
+             */
+            try (ProductLocks locks = ProductLocks.lock(productNames(sellings, Selling::getProduct));
+                 Session session = HibernateHelper.getInstance().getFactory().openSession()) {
                 transaction = session.beginTransaction();
 
-                List<Product> productsFromDb = session.createQuery("from Product", Product.class).list();
-                List<String> productNames = productsFromDb
-                        .stream()
-                        .map(Product::getName)
-                        .collect(Collectors.toList());
-
                 StringBuilder sb = new StringBuilder();
-
-                sellings.forEach(selling -> {
-                    if (productNames.contains(selling.getProduct().getName())) {
-                        if (selling.getProductCount() > 0 && selling.getProductPrice() >= 0 && selling.getSellingDate() != null) {
-
-                            Product actualProduct = productsFromDb
-                                    .stream()
-                                    .filter(product -> product.getName().equals(selling.getProduct().getName()))
-                                    .findFirst()
-                                    .get();
-
-                            if (actualProduct.getCount() >= selling.getProductCount()) {
-
-                                actualProduct.setCount(actualProduct.getCount() - selling.getProductCount());
-                                selling.setProduct(actualProduct);
-                                session.save(selling);
-
-                                sb.append("Selling for product [")
-                                        .append(actualProduct.getName())
-                                        .append("] saved. ");
-
-                            } else {
-                                sb.append("Error: in product [")
-                                        .append(actualProduct.getName())
-                                        .append("] - actual product count must be equal or greater productCount in selling");
-                            }
-
-
-                        } else {
-                            sb.append("Error: in product [")
-                                    .append(selling.getProduct().getName())
-                                    .append("] selling data incorrect: productCount must be > 0, productPrice must be >=0, productDate must be not null and have format YYYY-MM-DD. ");
-                        }
-                    } else {
-                        sb.append("Error: product [")
-                                .append(selling.getProduct().getName())
-                                .append("] does not exist. ");
-                    }
-                });
+                saveSellings(session, sellings, sb, true);
 
                 responseBody.setMessage(sb.toString().trim());
                 responseBody.setCode(Response.Status.OK.getStatusCode());
@@ -434,4 +566,383 @@ public class RestService {
     }
 
 
+    @ApiOperation(
+            value = "Массовая загрузка закупок(приёмок) товаров",
+            notes = "Тело запроса читается потоково: NDJSON (application/x-ndjson) - по одному объекту закупки в строке, " +
+                    "или CSV (text/csv) - строки вида: название товара,количество,цена,дата(YYYY-MM-DD). " +
+                    "Закупки сохраняются порциями по chunkSize записей, каждая порция - в отдельной транзакции. " +
+                    "Загрузка выполняется в пуле потоков работы с БД, как /purchase и /demand",
+            response = ImportResponseBody.class
+    )
+    @ApiResponses(value = {
+            @ApiResponse(code = 400, message = "Products does not specified"),
+            @ApiResponse(code = 400, message = "chunkSize must be > 0 and <= [import.max_chunk_size]"),
+            @ApiResponse(code = 400, message = "Import stopped at record [record_number]: [error]"),
+            @ApiResponse(code = 503, message = "Server is busy, try again later / Request timed out before it was started")
+    })
+    @POST
+    @Path("/import/purchases")
+    @Consumes({ImportHelper.NDJSON, ImportHelper.CSV})
+    @Produces(MediaType.APPLICATION_JSON)
+    public void importPurchases(
+            @Suspended AsyncResponse asyncResponse,
+            @ApiParam(value = "Тип содержимого: application/x-ndjson или text/csv")
+            @HeaderParam(HttpHeaders.CONTENT_TYPE) String contentType,
+            @ApiParam(value = "Количество закупок, сохраняемых в одной транзакции")
+            @QueryParam("chunkSize") @DefaultValue("" + Constants.IMPORT_CHUNK_SIZE) int chunkSize,
+            @ApiParam(value = "Закупки в формате NDJSON или CSV", required = true)
+                    InputStream body
+    ) {
+        DatabaseExecutor.getInstance().submitWrite(asyncResponse, () -> importMovements(
+                readRecords(body, contentType, Purchase.class, ImportHelper::purchaseFromCsv),
+                chunkSize, Purchase::getProduct, (session, chunk, sb) -> savePurchases(session, chunk, sb, false), "purchases"));
+    }
+
+    @ApiOperation(
+            value = "Массовая загрузка продаж(отгрузок) товаров",
+            notes = "Тело запроса читается потоково: NDJSON (application/x-ndjson) - по одному объекту продажи в строке, " +
+                    "или CSV (text/csv) - строки вида: название товара,количество,цена,дата(YYYY-MM-DD). " +
+                    "Продажи сохраняются порциями по chunkSize записей, каждая порция - в отдельной транзакции. " +
+                    "Загрузка выполняется в пуле потоков работы с БД, как /purchase и /demand",
+            response = ImportResponseBody.class
+    )
+    @ApiResponses(value = {
+            @ApiResponse(code = 400, message = "Products does not specified"),
+            @ApiResponse(code = 400, message = "chunkSize must be > 0 and <= [import.max_chunk_size]"),
+            @ApiResponse(code = 400, message = "Import stopped at record [record_number]: [error]"),
+            @ApiResponse(code = 503, message = "Server is busy, try again later / Request timed out before it was started")
+    })
+    @POST
+    @Path("/import/sellings")
+    @Consumes({ImportHelper.NDJSON, ImportHelper.CSV})
+    @Produces(MediaType.APPLICATION_JSON)
+    public void importSellings(
+            @Suspended AsyncResponse asyncResponse,
+            @ApiParam(value = "Тип содержимого: application/x-ndjson или text/csv")
+            @HeaderParam(HttpHeaders.CONTENT_TYPE) String contentType,
+            @ApiParam(value = "Количество продаж, сохраняемых в одной транзакции")
+            @QueryParam("chunkSize") @DefaultValue("" + Constants.IMPORT_CHUNK_SIZE) int chunkSize,
+            @ApiParam(value = "Продажи в формате NDJSON или CSV", required = true)
+                    InputStream body
+    ) {
+        DatabaseExecutor.getInstance().submitWrite(asyncResponse, () -> importMovements(
+                readRecords(body, contentType, Selling.class, ImportHelper::sellingFromCsv),
+                chunkSize, Selling::getProduct, (session, chunk, sb) -> saveSellings(session, chunk, sb, false), "sellings"));
+    }
+
+    /**
+     * итератор по записям тела запроса ({@link ImportHelper#read}); тело читается уже в потоке пула работы с БД,
+     * поэтому ошибка ввода-вывода выбрасывается непроверяемым исключением
+     */
+    private static <T> Iterator<T> readRecords(InputStream body, String contentType, Class<T> type, Function<String[], T> csvMapper) {
+        try {
+            return ImportHelper.read(body, contentType, type, csvMapper);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * сохранение порции закупок/продаж в рамках переданной сессии; возвращает количество сохранённых записей
+     */
+    private interface ChunkSaver<T> {
+        int save(Session session, List<T> chunk, StringBuilder sb);
+    }
+
+    /**
+     * чтение записей порциями по chunkSize и сохранение каждой порции в отдельной сессии и транзакции
+     */
+    private static <T> Response importMovements(Iterator<T> records, int chunkSize, Function<T, Product> product, ChunkSaver<T> saver,
+                                                String movementsName) {
+        ImportResponseBody responseBody = new ImportResponseBody();
+        List<HttpResponseBody> chunkResults = new ArrayList<>();
+        responseBody.setChunks(chunkResults);
+
+        if (chunkSize <= 0 || chunkSize > Constants.IMPORT_MAX_CHUNK_SIZE) {
+            responseBody.setMessage("chunkSize must be > 0 and <= " + Constants.IMPORT_MAX_CHUNK_SIZE);
+            responseBody.setCode(Response.Status.BAD_REQUEST.getStatusCode());
+            responseBody.setCodeMessage(Response.Status.BAD_REQUEST.getReasonPhrase());
+        } else {
+            List<T> chunk = new ArrayList<>();
+            int recordCount = 0;
+            int savedCount = 0;
+            String parseError = null;
+
+            while (parseError == null) {
+                boolean hasNext;
+                try {
+                    hasNext = records.hasNext();
+                    if (hasNext) {
+                        chunk.add(records.next());
+                        recordCount++;
+                    }
+                } catch (IllegalArgumentException e) {
+                    parseError = "Import stopped at record " + (recordCount + 1) + ": " + e.getMessage();
+                    hasNext = false;
+                }
+
+                if (chunk.size() == chunkSize || (!hasNext && !chunk.isEmpty())) {
+                    savedCount += saveChunk(chunk, product, saver, recordCount - chunk.size() + 1, recordCount, movementsName, chunkResults);
+                    chunk.clear();
+                }
+                if (!hasNext) {
+                    break;
+                }
+            }
+
+            if (parseError != null) {
+                responseBody.setMessage(parseError);
+                responseBody.setCode(Response.Status.BAD_REQUEST.getStatusCode());
+                responseBody.setCodeMessage(Response.Status.BAD_REQUEST.getReasonPhrase());
+            } else if (recordCount == 0) {
+                responseBody.setMessage("Products does not specified");
+                responseBody.setCode(Response.Status.BAD_REQUEST.getStatusCode());
+                responseBody.setCodeMessage(Response.Status.BAD_REQUEST.getReasonPhrase());
+            } else {
+                responseBody.setMessage("Imported " + savedCount + " of " + recordCount + " " + movementsName);
+                responseBody.setCode(Response.Status.OK.getStatusCode());
+                responseBody.setCodeMessage(Response.Status.OK.getReasonPhrase());
+            }
+        }
+
+        Response response = Response.status(responseBody.getCode())
+                .entity(responseBody)
+                .build();
+
+        return response;
+    }
+
+    /**
+     * сохранение одной порции записей в отдельной транзакции; результат добавляется в chunkResults,
+     * возвращается количество сохранённых записей
+     */
+    private static <T> int saveChunk(List<T> chunk, Function<T, Product> product, ChunkSaver<T> saver, int firstRecord, int lastRecord,
+                                     String movementsName, List<HttpResponseBody> chunkResults) {
+        HttpResponseBody chunkResult = new HttpResponseBody();
+        int saved = 0;
+
+        Transaction transaction = null;
+        try (ProductLocks locks = ProductLocks.lock(productNames(chunk, product));
+             Session session = HibernateHelper.getInstance().getFactory().openSession()) {
+            transaction = session.beginTransaction();
+
+            StringBuilder sb = new StringBuilder();
+            saved = saver.save(session, chunk, sb);
+
+            chunkResult.setMessage(("Saved " + saved + " of records " + firstRecord + "-" + lastRecord + ". " + sb).trim());
+            chunkResult.setCode(Response.Status.OK.getStatusCode());
+            chunkResult.setCodeMessage(Response.Status.OK.getReasonPhrase());
+
+            transaction.commit();
+        } catch (Exception e) {
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+            chunkResult.setMessage("Exception occurred while saving " + movementsName + " " + firstRecord + "-" + lastRecord);
+            chunkResult.setCode(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode());
+            chunkResult.setCodeMessage(Response.Status.INTERNAL_SERVER_ERROR.getReasonPhrase());
+            saved = 0;
+        }
+
+        chunkResults.add(chunkResult);
+        return saved;
+    }
+
+    /**
+     * сохранение закупок с проверкой их корректности; сообщения об ошибках (и, если reportSaved, об успешно сохранённых закупках)
+     * добавляются в sb. Возвращает количество сохранённых закупок
+     */
+    private static int savePurchases(Session session, List<Purchase> purchases, StringBuilder sb, boolean reportSaved) {
+        Map<String, Product> productsFromDb = findProductsByNames(session, purchases
+                .stream()
+                .map(purchase -> purchase.getProduct().getName())
+                .collect(Collectors.toSet()));
+
+        /**
+         * журналы товаров обновляются после сохранения всех закупок, чтобы их вставка ушла в БД одним пакетом (JDBC batch)
+         */
+        Map<Product, List<Purchase>> savedPurchases = new IdentityHashMap<>();
+
+        purchases.forEach(purchase -> {
+            Product actualProduct = productsFromDb.get(purchase.getProduct().getName());
+            if (actualProduct != null) {
+                if (purchase.getProductCount() > 0 && purchase.getProductPrice() >= 0 && purchase.getPurchaseDate() != null) {
+
+                    actualProduct.setCount(actualProduct.getCount() + purchase.getProductCount());
+
+                    purchase.setProduct(actualProduct);
+                    purchase.setRemainingCount(purchase.getProductCount());
+
+                    session.save(purchase);
+                    savedPurchases.computeIfAbsent(actualProduct, product -> new ArrayList<>()).add(purchase);
+
+                    if (reportSaved) {
+                        sb.append("Purchase for product [")
+                                .append(actualProduct.getName())
+                                .append("] saved. ");
+                    }
+                } else {
+                    sb.append("Error: in product [")
+                            .append(purchase.getProduct().getName())
+                            .append("] purchase data incorrect: productCount must be > 0, productPrice must be >=0, productDate must be not null and have format YYYY-MM-DD. ");
+                }
+            } else {
+                sb.append("Error: product [")
+                        .append(purchase.getProduct().getName())
+                        .append("] does not exist. ");
+            }
+        });
+
+        savedPurchases.forEach((product, productMovements) -> {
+            RequestTimings.time(RequestTimings.FIFO, () -> FifoLedgerHelper.registerPurchases(session, product, productMovements));
+            ReportCache.getInstance().invalidateOnCommit(session, product.getName(), productMovements
+                    .stream()
+                    .map(Purchase::getPurchaseDate)
+                    .min(LocalDate::compareTo)
+                    .get());
+        });
+
+        return savedPurchases.values().stream().mapToInt(List::size).sum();
+    }
+
+    /**
+     * сохранение продаж с проверкой их корректности и наличия товара; сообщения об ошибках (и, если reportSaved,
+     * об успешно сохранённых продажах) добавляются в sb. Возвращает количество сохранённых продаж
+     */
+    private static int saveSellings(Session session, List<Selling> sellings, StringBuilder sb, boolean reportSaved) {
+        Map<String, Product> productsFromDb = findProductsByNames(session, sellings
+                .stream()
+                .map(selling -> selling.getProduct().getName())
+                .collect(Collectors.toSet()));
+
+        Map<Product, List<Selling>> savedSellings = new IdentityHashMap<>();
+
+        sellings.forEach(selling -> {
+            Product actualProduct = productsFromDb.get(selling.getProduct().getName());
+            if (actualProduct != null) {
+                if (selling.getProductCount() > 0 && selling.getProductPrice() >= 0 && selling.getSellingDate() != null) {
+
+                    if (actualProduct.getCount() >= selling.getProductCount()) {
+
+                        actualProduct.setCount(actualProduct.getCount() - selling.getProductCount());
+                        selling.setProduct(actualProduct);
+                        session.save(selling);
+                        savedSellings.computeIfAbsent(actualProduct, product -> new ArrayList<>()).add(selling);
+
+                        if (reportSaved) {
+                            sb.append("Selling for product [")
+                                    .append(actualProduct.getName())
+                                    .append("] saved. ");
+                        }
+
+                    } else {
+                        sb.append("Error: in product [")
+                                .append(actualProduct.getName())
+                                .append("] - actual product count must be equal or greater productCount in selling");
+                    }
+
+
+                } else {
+                    sb.append("Error: in product [")
+                            .append(selling.getProduct().getName())
+                            .append("] selling data incorrect: productCount must be > 0, productPrice must be >=0, productDate must be not null and have format YYYY-MM-DD. ");
+                }
+            } else {
+                sb.append("Error: product [")
+                        .append(selling.getProduct().getName())
+                        .append("] does not exist. ");
+            }
+        });
+
+        savedSellings.forEach((product, productMovements) -> {
+            RequestTimings.time(RequestTimings.FIFO, () -> FifoLedgerHelper.registerSellings(session, product, productMovements));
+            ReportCache.getInstance().invalidateOnCommit(session, product.getName(), productMovements
+                    .stream()
+                    .map(Selling::getSellingDate)
+                    .min(LocalDate::compareTo)
+                    .get());
+        });
+
+        return savedSellings.values().stream().mapToInt(List::size).sum();
+    }
+
+    /**
+     * расчёт отчёта о прибыли по товару на дату; рассчитанная прибыль сохраняется в кэше отчётов, если товар не изменялся
+     * после получения версии кэша cacheVersion
+     */
+    private static HttpResponseBody calculateSalesReport(String name, LocalDate reportDate, long cacheVersion) {
+        HttpResponseBody responseBody = new HttpResponseBody();
+        Double income = null;
+        Transaction transaction = null;
+        try (Session session = HibernateHelper.getInstance().getFactory().openSession()) {
+            transaction = session.beginTransaction();
+
+            Product product = session.createQuery("from Product p where p.name=:product_name", Product.class)
+                    .setParameter("product_name", name)
+                    .setCacheable(true)
+                    .setCacheRegion("productByName_query_region")
+                    .uniqueResult();
+
+            if (product == null) {
+                responseBody.setCode(Response.Status.BAD_REQUEST.getStatusCode());
+                responseBody.setCodeMessage(Response.Status.BAD_REQUEST.getReasonPhrase());
+                responseBody.setMessage("Product [" + name + "] does not exist");
+            } else {
+                /**
+                 * прибыль берётся из накопительного FIFO-журнала товара, см. {@link FifoLedgerHelper}
+                 */
+                income = RequestTimings.time(RequestTimings.FIFO, () -> FifoLedgerHelper.getIncome(session, product, reportDate));
+
+                responseBody.setCode(Response.Status.OK.getStatusCode());
+                responseBody.setCodeMessage(Response.Status.OK.getReasonPhrase());
+                responseBody.setMessage(incomeMessage(reportDate, income));
+            }
+
+            transaction.commit();
+        } catch (Exception e) {
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+
+            income = null;
+            responseBody.setCode(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode());
+            responseBody.setCodeMessage(Response.Status.INTERNAL_SERVER_ERROR.getReasonPhrase());
+            responseBody.setMessage("Exception occurred while sales report calculation");
+        }
+
+        if (income != null) {
+            ReportCache.getInstance().put(name, reportDate, income, cacheVersion);
+        }
+
+        return responseBody;
+    }
+
+    private static String incomeMessage(LocalDate reportDate, double income) {
+        NumberFormat formatter = new DecimalFormat("#0.00");
+        return "Income on " + reportDate + ": [" + formatter.format(income) + "]";
+    }
+
+    /**
+     * названия товаров, упоминаемых в закупках/продажах (для блокировки товаров, см. {@link ProductLocks})
+     */
+    private static <T> Set<String> productNames(List<T> movements, Function<T, Product> product) {
+        return movements
+                .stream()
+                .map(product)
+                .map(movementProduct -> movementProduct == null ? null : movementProduct.getName())
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * загрузка из БД только тех товаров, которые упоминаются в запросе (ключ - название товара)
+     */
+    private static Map<String, Product> findProductsByNames(Session session, Set<String> names) {
+        Map<String, Product> products = new HashMap<>();
+        session.createQuery("from Product p where p.name in :names", Product.class)
+                .setParameter("names", names)
+                .list()
+                .forEach(product -> products.put(product.getName(), product));
+        return products;
+    }
+
 }
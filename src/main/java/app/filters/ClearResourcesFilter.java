@@ -1,31 +1,167 @@
 package app.filters;
 
+import app.helpers.Constants;
+import app.helpers.DatabaseExecutor;
 import app.helpers.HibernateHelper;
-import org.hibernate.SessionFactory;
+import app.helpers.RequestMetrics;
+import app.helpers.RequestTimings;
 
 import javax.servlet.*;
 import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
 import java.io.IOException;
 
-@WebFilter(urlPatterns = "/*")
+/**
+ * Фильтр всех запросов приложения: при включённых метриках ({@link Constants#METRICS_ENABLED}) измеряет время обработки
+ * каждого запроса (до отправки ответа, в том числе асинхронного), размер и код статуса ответа и учитывает их в {@link RequestMetrics};
+ * время этапов обработки собирается в {@link RequestTimings} (см. также {@link RequestTimingFilter}).
+ * При уничтожении фильтра (остановке приложения) закрываются пул потоков работы с БД и пул соединений; встроенный сервер
+ * ({@link app.RunServer}) закрывает их сам и отключает это параметром {@link #CLOSE_RESOURCES_PARAM}=false.
+ */
+@WebFilter(urlPatterns = "/*", asyncSupported = true)
 public class ClearResourcesFilter implements Filter {
 
+    public static final String CLOSE_RESOURCES_PARAM = "closeResources";
+
+    private boolean closeResources = true;
 
     @Override
     public void init(FilterConfig filterConfig) throws ServletException {
+        String closeResourcesParam = filterConfig.getInitParameter(CLOSE_RESOURCES_PARAM);
+        if (closeResourcesParam != null) {
+            closeResources = Boolean.parseBoolean(closeResourcesParam);
+        }
     }
 
     @Override
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
-        chain.doFilter(request, response);
+        if (!Constants.METRICS_ENABLED || !(response instanceof HttpServletResponse)) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        RequestMetrics.getInstance().requestStarted();
+        RequestTimings timings = new RequestTimings();
+        CountingResponse countingResponse = new CountingResponse((HttpServletResponse) response);
+        RequestTimings previous = RequestTimings.attach(timings);
+        boolean finished = true;
+        try {
+            chain.doFilter(request, countingResponse);
+            /**
+             * асинхронный запрос учитывается после отправки ответа из потока работы с БД
+             */
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        finish(timings, countingResponse, countingResponse.getStatus());
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                        event.getAsyncContext().addListener(this);
+                    }
+                });
+                finished = false;
+            }
+        } catch (IOException | ServletException | RuntimeException e) {
+            finish(timings, countingResponse, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            finished = false;
+            throw e;
+        } finally {
+            RequestTimings.attach(previous);
+            if (finished) {
+                finish(timings, countingResponse, countingResponse.getStatus());
+            }
+        }
+    }
+
+    private static void finish(RequestTimings timings, CountingResponse response, int status) {
+        RequestMetrics.getInstance().requestFinished(timings.getEndpoint(), status,
+                System.nanoTime() - timings.getStartNanos(), response.getBytesWritten(), timings.getPhases());
     }
 
     @Override
     public void destroy() {
-        SessionFactory factory = HibernateHelper.getInstance().getFactory();
-        if (factory != null && !factory.isClosed()) {
-            factory.close();
+        if (closeResources) {
+            DatabaseExecutor.getInstance().shutdown();
+            HibernateHelper.getInstance().close();
         }
     }
-}
 
+    /**
+     * ответ, считающий байты тела, записанные через {@link #getOutputStream()} (так пишут ответы Jersey и сервлет статических файлов)
+     */
+    private static class CountingResponse extends HttpServletResponseWrapper {
+
+        private CountingOutputStream outputStream;
+
+        CountingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public synchronized ServletOutputStream getOutputStream() throws IOException {
+            if (outputStream == null) {
+                outputStream = new CountingOutputStream(super.getOutputStream());
+            }
+            return outputStream;
+        }
+
+        synchronized long getBytesWritten() {
+            return outputStream == null ? 0 : outputStream.count;
+        }
+    }
+
+    private static class CountingOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream delegate;
+        private volatile long count;
+
+        CountingOutputStream(ServletOutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            delegate.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            delegate.setWriteListener(writeListener);
+        }
+    }
+}
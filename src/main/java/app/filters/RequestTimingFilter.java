@@ -0,0 +1,75 @@
+package app.filters;
+
+import app.helpers.RequestTimings;
+import org.glassfish.jersey.server.ExtendedUriInfo;
+import org.glassfish.jersey.uri.UriTemplate;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.ext.ReaderInterceptor;
+import javax.ws.rs.ext.ReaderInterceptorContext;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Дополняет {@link RequestTimings} запроса, созданный {@link ClearResourcesFilter}, сведениями, известными только Jersey:
+ * шаблоном пути rest-метода (метка метрик), временем разбора JSON тела запроса; перед отправкой ответа добавляет заголовок
+ * Server-Timing. Запросы, обрабатываемые без фильтра (или при отключённых метриках), не изменяются.
+ */
+public class RequestTimingFilter implements ContainerRequestFilter, ContainerResponseFilter, ReaderInterceptor {
+
+    public static final String SERVER_TIMING_HEADER = "Server-Timing";
+
+    /**
+     * ответ может отправляться из другого потока (асинхронные rest-методы), поэтому объект запроса хранится в его свойствах
+     */
+    private static final String TIMINGS_PROPERTY = RequestTimings.class.getName();
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        RequestTimings timings = RequestTimings.current();
+        if (timings == null) {
+            return;
+        }
+        requestContext.setProperty(TIMINGS_PROPERTY, timings);
+
+        /**
+         * шаблоны совпавших путей перечислены от rest-метода к корню: например /{date} и /salesreport
+         */
+        List<UriTemplate> templates = ((ExtendedUriInfo) requestContext.getUriInfo()).getMatchedTemplates();
+        StringBuilder path = new StringBuilder();
+        for (int i = templates.size() - 1; i >= 0; i--) {
+            String template = templates.get(i).getTemplate();
+            if (!template.startsWith("/")) {
+                path.append('/');
+            }
+            path.append(template);
+        }
+        timings.setEndpoint(requestContext.getMethod() + " " + path);
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        RequestTimings timings = (RequestTimings) requestContext.getProperty(TIMINGS_PROPERTY);
+        if (timings != null) {
+            responseContext.getHeaders().putSingle(SERVER_TIMING_HEADER, timings.toServerTiming());
+        }
+    }
+
+    @Override
+    public Object aroundReadFrom(ReaderInterceptorContext context) throws IOException {
+        RequestTimings timings = (RequestTimings) context.getProperty(TIMINGS_PROPERTY);
+        if (timings == null) {
+            return context.proceed();
+        }
+        long start = System.nanoTime();
+        try {
+            return context.proceed();
+        } finally {
+            timings.add(RequestTimings.JSON, System.nanoTime() - start);
+        }
+    }
+
+}
@@ -0,0 +1,113 @@
+package app.helpers;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+/**
+ * Настройки приложения, зависящие от окружения (профиля запуска).
+ * Загружаются один раз при первом обращении (до инициализации {@link Constants}) в следующем порядке, каждый следующий источник
+ * переопределяет значения предыдущего:
+ * <ol>
+ * <li>application.properties - общие значения;</li>
+ * <li>profiles/&lt;profile&gt;.properties - значения профиля dev, prod или bench (системное свойство mysklad.profile, по умолчанию dev);</li>
+ * <li>внешний файл, заданный системным свойством mysklad.config (по умолчанию ./my_sklad.properties, если он существует);</li>
+ * <li>системные свойства вида mysklad.&lt;ключ&gt;.</li>
+ * </ol>
+ */
+public final class AppSettings {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AppSettings.class);
+
+    public static final String SYSTEM_PROPERTY_PREFIX = "mysklad.";
+    public static final String PROFILE_PROPERTY = SYSTEM_PROPERTY_PREFIX + "profile";
+    public static final String CONFIG_PROPERTY = SYSTEM_PROPERTY_PREFIX + "config";
+    public static final String DEFAULT_PROFILE = "dev";
+    public static final String DEFAULT_CONFIG_FILE = "./my_sklad.properties";
+
+    private static final String PROFILE = System.getProperty(PROFILE_PROPERTY, DEFAULT_PROFILE);
+    private static final Properties PROPERTIES = load(PROFILE, System.getProperties());
+
+    private AppSettings() {
+    }
+
+    /**
+     * название активного профиля
+     */
+    public static String getProfile() {
+        return PROFILE;
+    }
+
+    public static String getString(String key) {
+        String value = PROPERTIES.getProperty(key);
+        if (value == null) {
+            throw new IllegalStateException("Setting [" + key + "] is not defined");
+        }
+        return value.trim();
+    }
+
+    public static int getInt(String key) {
+        return Integer.parseInt(getString(key));
+    }
+
+    public static long getLong(String key) {
+        return Long.parseLong(getString(key));
+    }
+
+    public static boolean getBoolean(String key) {
+        return Boolean.parseBoolean(getString(key));
+    }
+
+    /**
+     * настройки профиля profile с учётом внешнего файла и системных свойств systemProperties (см. описание класса)
+     */
+    static Properties load(String profile, Properties systemProperties) {
+
+        Properties properties = new Properties();
+        loadResource(properties, "/application.properties");
+        loadResource(properties, "/profiles/" + profile + ".properties");
+
+        String configPath = systemProperties.getProperty(CONFIG_PROPERTY);
+        File configFile = new File(configPath != null ? configPath : DEFAULT_CONFIG_FILE);
+        if (configFile.isFile()) {
+            try (Reader reader = new InputStreamReader(new FileInputStream(configFile), StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to read settings file [" + configFile.getAbsolutePath() + "]", e);
+            }
+        } else if (configPath != null) {
+            throw new IllegalStateException("Settings file [" + configFile.getAbsolutePath() + "] does not exist");
+        }
+
+        for (String name : systemProperties.stringPropertyNames()) {
+            if (name.startsWith(SYSTEM_PROPERTY_PREFIX) && !name.equals(PROFILE_PROPERTY) && !name.equals(CONFIG_PROPERTY)) {
+                properties.setProperty(name.substring(SYSTEM_PROPERTY_PREFIX.length()), systemProperties.getProperty(name));
+            }
+        }
+
+        LOGGER.info("Settings profile [{}], hbm2ddl [{}], show_sql [{}], metrics [{}]", profile,
+                properties.getProperty("hibernate.hbm2ddl.auto"), properties.getProperty("hibernate.show_sql"),
+                properties.getProperty("metrics.enabled"));
+        return properties;
+    }
+
+    private static void loadResource(Properties properties, String resource) {
+        try (InputStream in = AppSettings.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalStateException("Settings resource [" + resource + "] does not exist (unknown profile?)");
+            }
+            properties.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read settings resource [" + resource + "]", e);
+        }
+    }
+
+}
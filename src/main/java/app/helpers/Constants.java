@@ -1,7 +1,5 @@
 package app.helpers;
 
-import org.hibernate.cache.ehcache.internal.EhcacheRegionFactory;
-
 
 public class Constants {
 
@@ -11,19 +9,137 @@ public class Constants {
     /**
      * если запускать на не встроенном(not embedded) сервере, например Tomcat, то файлы с базой !создадутся в папке <PATH_TO_SERVER>/bin!
      */
-    public static final String URL = "jdbc:h2:./my_sklad";
-    public static final String USER = "user";
-    public static final String PASS = "pass";
-    public static final String HBM2DDL_AUTO = "create";
+    public static final String URL = AppSettings.getString("db.url");
+    public static final String USER = AppSettings.getString("db.user");
+    public static final String PASS = AppSettings.getString("db.password");
+
+    /**
+     * настройки пула соединений HikariCP (см. {@link HibernateHelper}).
+     * Размер пула стоит выбирать с учётом количества потоков Jetty, одновременно работающих с БД
+     */
+    public static final String POOL_NAME = "my_sklad_pool";
+    public static final int POOL_MAX_SIZE = AppSettings.getInt("pool.max_size");
+    public static final int POOL_MIN_IDLE = AppSettings.getInt("pool.min_idle");
+    public static final long POOL_CONNECTION_TIMEOUT_MS = AppSettings.getLong("pool.connection_timeout_ms");
+    public static final long POOL_IDLE_TIMEOUT_MS = AppSettings.getLong("pool.idle_timeout_ms");
+    /**
+     * количество разобранных SQL запросов, кэшируемых H2 для каждого соединения (настройка H2 QUERY_CACHE_SIZE)
+     */
+    public static final int STATEMENT_CACHE_SIZE = 64;
+    /**
+     * настройки, зависящие от профиля запуска (dev/prod/bench), см. {@link AppSettings}
+     */
+    public static final String PROFILE = AppSettings.getProfile();
+    public static final String HBM2DDL_AUTO = AppSettings.getString("hibernate.hbm2ddl.auto");
     public static final boolean USE_SECOND_LEVEL_CACHE = true;
-    public static final String CACHE_REGION_FACTORY = EhcacheRegionFactory.class.getName();
+    public static final String CACHE_REGION_FACTORY = SizedEhcacheRegionFactory.class.getName();
     public static final boolean USE_QUERY_CACHE = true;
+    /**
+     * настройки регионов кэша второго уровня ({@link SizedEhcacheRegionFactory}); размеры - строки ehcache вида 32m, 1g
+     */
+    public static final String CACHE_CONFIG = AppSettings.getString("cache.config");
+    public static final String CACHE_PRODUCT_REGION_MAX_BYTES = AppSettings.getString("cache.product_region.max_bytes_heap");
+    public static final String CACHE_PURCHASE_REGION_MAX_BYTES = AppSettings.getString("cache.purchase_region.max_bytes_heap");
+    public static final String CACHE_SELLING_REGION_MAX_BYTES = AppSettings.getString("cache.selling_region.max_bytes_heap");
+    public static final String CACHE_PRODUCT_BY_NAME_REGION_MAX_BYTES = AppSettings.getString("cache.productByName_query_region.max_bytes_heap");
+    public static final long CACHE_TIME_TO_LIVE_SECONDS = AppSettings.getLong("cache.time_to_live_seconds");
+    public static final boolean CACHE_DISK_TIER_ENABLED = AppSettings.getBoolean("cache.disk_tier.enabled");
+    public static final String CACHE_DISK_TIER_MAX_BYTES = AppSettings.getString("cache.disk_tier.max_bytes");
+    public static final String CACHE_DISK_TIER_PATH = AppSettings.getString("cache.disk_tier.path");
 
-    public static final boolean SHOW_SQL = true;
-    public static final boolean FORMAT_SQL = true;
-    public static final boolean GENERATE_STATISTICS = true;
+    public static final boolean SHOW_SQL = AppSettings.getBoolean("hibernate.show_sql");
+    public static final boolean FORMAT_SQL = AppSettings.getBoolean("hibernate.format_sql");
+    /**
+     * включены ли служебные методы, отдающие метрики приложения; без них статистика Hibernate не собирается
+     */
+    public static final boolean METRICS_ENABLED = AppSettings.getBoolean("metrics.enabled");
+    public static final boolean GENERATE_STATISTICS = METRICS_ENABLED && AppSettings.getBoolean("hibernate.generate_statistics");
     public static final boolean USE_STRUCTURED_CACHE = true;
 
+    /**
+     * пакетная (batch) вставка/обновление строк: возможна только если id сущностей генерируются не через IDENTITY,
+     * поэтому id выдаются из последовательностей (sequence) блоками по ID_ALLOCATION_SIZE значений (оптимизатор pooled)
+     */
+    public static final int JDBC_BATCH_SIZE = 50;
+    public static final boolean ORDER_INSERTS = true;
+    public static final boolean ORDER_UPDATES = true;
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    /**
+     * размер порции записей, сохраняемых в одной транзакции при массовой загрузке закупок/продаж (по умолчанию)
+     */
+    public static final int IMPORT_CHUNK_SIZE = 500;
+    /**
+     * наибольший размер порции, который можно задать в запросе: порция целиком хранится в памяти и сохраняется в одной транзакции
+     */
+    public static final int IMPORT_MAX_CHUNK_SIZE = AppSettings.getInt("import.max_chunk_size");
+
+    /**
+     * количество строк, получаемых драйвером JDBC за одно обращение при потоковом чтении движений товара в отчётах
+     */
+    public static final int REPORT_FETCH_SIZE = 1000;
+
+    /**
+     * количество блокировок, между которыми распределяются товары при параллельных закупках/продажах ({@link ProductLocks})
+     */
+    public static final int PRODUCT_LOCK_STRIPES = 256;
+
+    /**
+     * минимальное количество движений товара между соседними снимками FIFO-состояния ({@link app.model.LedgerCheckpoint})
+     */
+    public static final int LEDGER_CHECKPOINT_INTERVAL = 100;
+
+    /**
+     * пул потоков асинхронных rest-методов, работающих с БД ({@link DatabaseExecutor}): потоков - по размеру пула соединений,
+     * очередь ограничена, а запрос, не получивший ответ за DB_EXECUTOR_TIMEOUT_MS мс, завершается ответом 503
+     * (изменяющий данные запрос - только если ещё не начал выполняться)
+     */
+    public static final int DB_EXECUTOR_THREADS = POOL_MAX_SIZE;
+    public static final int DB_EXECUTOR_QUEUE_SIZE = AppSettings.getInt("db_executor.queue_size");
+    public static final long DB_EXECUTOR_TIMEOUT_MS = AppSettings.getLong("db_executor.timeout_ms");
+    /**
+     * выполнение запросов к БД на виртуальных потоках (только Java 21+, на более старых JDK настройка игнорируется)
+     */
+    public static final boolean VIRTUAL_THREADS = AppSettings.getBoolean("server.virtual_threads");
+
+    /**
+     * настройки встроенного сервера Jetty ({@link app.RunServer}, {@link ServerThreadPool}): количество потоков, принимающих
+     * соединения (acceptors) и обслуживающих ввод-вывод (selectors), -1 - по количеству процессоров (выбирает Jetty);
+     * размер пула потоков и ограничение его очереди; время бездействия соединения, после которого оно закрывается,
+     * и сохранение соединения между запросами (keep-alive)
+     */
+    public static final int SERVER_PORT = AppSettings.getInt("server.port");
+    public static final int SERVER_ACCEPTORS = AppSettings.getInt("server.acceptors");
+    public static final int SERVER_SELECTORS = AppSettings.getInt("server.selectors");
+    public static final int SERVER_ACCEPT_QUEUE_SIZE = AppSettings.getInt("server.accept_queue_size");
+    public static final int SERVER_MIN_THREADS = AppSettings.getInt("server.min_threads");
+    public static final int SERVER_MAX_THREADS = AppSettings.getInt("server.max_threads");
+    public static final int SERVER_THREAD_IDLE_TIMEOUT_MS = AppSettings.getInt("server.thread_idle_timeout_ms");
+    public static final int SERVER_QUEUE_SIZE = AppSettings.getInt("server.queue_size");
+    public static final long SERVER_IDLE_TIMEOUT_MS = AppSettings.getLong("server.idle_timeout_ms");
+    public static final boolean SERVER_KEEP_ALIVE = AppSettings.getBoolean("server.keep_alive");
+
+    /**
+     * журнал медленных запросов к БД ({@link SlowQueryLog}): порог времени запроса (-1 - журнал отключён), наименьший порог,
+     * который можно установить во время работы (/admin/slowqueries/threshold), и количество последних медленных запросов,
+     * хранимых для метода /admin/slowqueries
+     */
+    public static final long SLOW_QUERY_THRESHOLD_MS = AppSettings.getLong("slow_query.threshold_ms");
+    public static final long SLOW_QUERY_MIN_THRESHOLD_MS = AppSettings.getLong("slow_query.min_threshold_ms");
+    public static final int SLOW_QUERY_LOG_SIZE = AppSettings.getInt("slow_query.log_size");
+
+    /**
+     * максимальное количество значений прибыли в кэше отчётов ({@link ReportCache}); 0 - кэш отключён
+     */
+    public static final int REPORT_CACHE_MAX_SIZE = AppSettings.getInt("report_cache.max_size");
+
+    /**
+     * прогрев при запуске встроенного сервера ({@link WarmUp}): кэши второго уровня и прогревочные запросы к rest-методам
+     */
+    public static final boolean WARMUP_ENABLED = AppSettings.getBoolean("warmup.enabled");
+    public static final int WARMUP_RECENT_DAYS = AppSettings.getInt("warmup.recent_days");
+    public static final int WARMUP_REQUESTS = AppSettings.getInt("warmup.requests");
+
 
 
 
@@ -0,0 +1,260 @@
+package app.helpers;
+
+import app.model.response.HttpResponseBody;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Пул потоков, выполняющих работу с БД асинхронных rest-методов ({@link javax.ws.rs.container.Suspended} {@link AsyncResponse}):
+ * поток Jetty только принимает запрос и сразу освобождается для ввода-вывода, а запрос к БД выполняется в этом пуле.
+ * Количество потоков равно размеру пула соединений ({@link Constants#POOL_MAX_SIZE}) - больше потоков всё равно ждали бы
+ * соединение. Очередь задач ограничена ({@link Constants#DB_EXECUTOR_QUEUE_SIZE}): при её переполнении запрос сразу
+ * завершается ответом 503 с заголовком Retry-After, а не копится в памяти. Запрос, не получивший ответ
+ * за {@link Constants#DB_EXECUTOR_TIMEOUT_MS} мс, также завершается ответом 503; если к этому моменту он ещё ждал в очереди,
+ * то работа с БД для него не выполняется. Изменяющий данные запрос ({@link #submitWrite}) после начала выполнения по таймауту
+ * не завершается: ответ 503 на уже фиксируемую закупку или продажу привёл бы к её повтору клиентом.
+ * <p>
+ * На Java 21+ настройкой server.virtual_threads=true ({@link Constants#VIRTUAL_THREADS}) можно включить выполнение каждого
+ * запроса в отдельном виртуальном потоке: тогда запросы ждут соединение с БД в своих потоках, а не в очереди пула,
+ * и количество одновременно принятых запросов ограничивается той же суммой DB_EXECUTOR_THREADS + DB_EXECUTOR_QUEUE_SIZE.
+ * Работу с БД при этом одновременно выполняют не больше {@link Constants#POOL_MAX_SIZE} запросов (по числу соединений
+ * пула), остальные ждут разрешения до открытия сессии - и, как запросы в очереди, по таймауту не выполняются.
+ * Драйвер H2 синхронизирует обращения к соединению (synchronized), поэтому до Java 24 виртуальный поток на время запроса
+ * к БД занимает поток-носитель (pinning) - выигрыш стоит проверять нагрузочным тестом (benchmarks, app.bench.LoadTest).
+ */
+public final class DatabaseExecutor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatabaseExecutor.class);
+
+    private static final DatabaseExecutor INSTANCE = new DatabaseExecutor();
+
+    private final boolean virtualThreads;
+    private final ExecutorService executor;
+    /**
+     * ограничение количества одновременно принятых запросов при работе на виртуальных потоках (у пула потоков платформы
+     * его роль выполняет ограниченная очередь)
+     */
+    private final Semaphore permits;
+    /**
+     * разрешения на работу с БД по числу соединений пула: задача получает разрешение до открытия сессии, поэтому
+     * принятые запросы сверх размера пула ждут здесь, а не таймаута получения соединения HikariCP
+     */
+    private final Semaphore connections;
+    private final int connectionPermits;
+    private final int queueCapacity;
+    private final AtomicInteger running = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+
+    private DatabaseExecutor() {
+        this(Constants.DB_EXECUTOR_THREADS, Constants.DB_EXECUTOR_QUEUE_SIZE, Constants.POOL_MAX_SIZE);
+    }
+
+    DatabaseExecutor(int threads, int queueCapacity, int connectionPermits) {
+        this.queueCapacity = queueCapacity;
+        this.connectionPermits = connectionPermits;
+        connections = new Semaphore(connectionPermits, true);
+        virtualThreads = Constants.VIRTUAL_THREADS && VirtualThreads.isSupported();
+        if (Constants.VIRTUAL_THREADS && !virtualThreads) {
+            LOGGER.warn("Virtual threads are not supported by Java {}, platform threads are used", System.getProperty("java.version"));
+        }
+
+        if (virtualThreads) {
+            executor = VirtualThreads.newThreadPerTaskExecutor("db-executor-");
+            permits = new Semaphore(threads + queueCapacity);
+        } else {
+            AtomicInteger threadNumber = new AtomicInteger();
+            executor = new ThreadPoolExecutor(threads, threads,
+                    0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "db-executor-" + threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            permits = null;
+        }
+        LOGGER.info("Database executor: {} threads", virtualThreads ? "virtual" : threads + " platform");
+    }
+
+    public static DatabaseExecutor getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * выполнение читающей task в пуле и отправка её результата в asyncResponse
+     */
+    public void submit(AsyncResponse asyncResponse, Supplier<Response> task) {
+        submit(asyncResponse, task, true);
+    }
+
+    /**
+     * выполнение изменяющей данные task в пуле и отправка её результата в asyncResponse: по таймауту запрос завершается,
+     * только если task ещё не начала выполняться, иначе ответ ждёт её результата
+     */
+    public void submitWrite(AsyncResponse asyncResponse, Supplier<Response> task) {
+        submit(asyncResponse, task, false);
+    }
+
+    private void submit(AsyncResponse asyncResponse, Supplier<Response> task, boolean idempotent) {
+        /**
+         * признак, что запрос уже начал выполняться или завершён по таймауту, - кто установил его первым, тот и выполняет запрос
+         */
+        AtomicBoolean claimed = new AtomicBoolean();
+        asyncResponse.setTimeoutHandler(response -> {
+            if (claimed.compareAndSet(false, true) || idempotent) {
+                timedOut.increment();
+                response.resume(unavailable(idempotent ? "Request timed out" : "Request timed out before it was started", false));
+            } else {
+                response.setTimeout(Constants.DB_EXECUTOR_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            }
+        });
+        asyncResponse.setTimeout(Constants.DB_EXECUTOR_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+        if (permits != null && !permits.tryAcquire()) {
+            reject(asyncResponse);
+            return;
+        }
+
+        /**
+         * время ожидания в очереди и работы с БД учитывается в этапах запроса (если метрики включены)
+         */
+        RequestTimings timings = RequestTimings.current();
+        long submitted = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                running.incrementAndGet();
+                RequestTimings previous = RequestTimings.attach(timings);
+                try {
+                    if (timings != null) {
+                        timings.add(RequestTimings.QUEUE, System.nanoTime() - submitted);
+                    }
+                    connections.acquire();
+                    try {
+                        /**
+                         * запрос, не дождавшийся выполнения (в очереди или разрешения на соединение), уже завершён по таймауту
+                         */
+                        if (claimed.compareAndSet(false, true)) {
+                            asyncResponse.resume(RequestTimings.time(RequestTimings.DB, task));
+                        }
+                    } finally {
+                        connections.release();
+                    }
+                } catch (RuntimeException e) {
+                    asyncResponse.resume(e);
+                } catch (InterruptedException e) {
+                    /**
+                     * пул останавливается; запрос не начат, поэтому его завершит таймаут
+                     */
+                    Thread.currentThread().interrupt();
+                } finally {
+                    RequestTimings.attach(previous);
+                    running.decrementAndGet();
+                    if (permits != null) {
+                        permits.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            if (permits != null) {
+                permits.release();
+            }
+            reject(asyncResponse);
+        }
+    }
+
+    private void reject(AsyncResponse asyncResponse) {
+        rejected.increment();
+        asyncResponse.resume(unavailable("Server is busy, try again later", true));
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * количество потоков пула; для виртуальных потоков - количество выполняющихся запросов (по потоку на запрос)
+     */
+    public int getThreads() {
+        return virtualThreads ? running.get() : ((ThreadPoolExecutor) executor).getMaximumPoolSize();
+    }
+
+    public int getActiveThreads() {
+        return running.get();
+    }
+
+    /**
+     * количество запросов в очереди пула; для виртуальных потоков очереди нет (запросы ждут соединение в своих потоках)
+     */
+    public int getQueueSize() {
+        return virtualThreads ? 0 : ((ThreadPoolExecutor) executor).getQueue().size();
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * количество разрешений на работу с БД (размер пула соединений)
+     */
+    public int getConnectionPermits() {
+        return connectionPermits;
+    }
+
+    /**
+     * количество запросов, ожидающих разрешения на работу с БД (оценка: {@link Semaphore#getQueueLength()})
+     */
+    public int getConnectionWaiters() {
+        return connections.getQueueLength();
+    }
+
+    /**
+     * количество запросов, отклонённых из-за переполнения очереди
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * количество запросов, завершённых по таймауту
+     */
+    public long getTimedOut() {
+        return timedOut.sum();
+    }
+
+    /**
+     * ответ 503; Retry-After предлагает повторить запрос, только если он отклонён до начала выполнения
+     */
+    private static Response unavailable(String message, boolean retryAfter) {
+        HttpResponseBody responseBody = new HttpResponseBody();
+        responseBody.setMessage(message);
+        responseBody.setCode(Response.Status.SERVICE_UNAVAILABLE.getStatusCode());
+        responseBody.setCodeMessage(Response.Status.SERVICE_UNAVAILABLE.getReasonPhrase());
+
+        Response.ResponseBuilder builder = Response.status(responseBody.getCode());
+        if (retryAfter) {
+            builder.header(HttpHeaders.RETRY_AFTER, 1);
+        }
+        return builder
+                .entity(responseBody)
+                .build();
+    }
+
+}
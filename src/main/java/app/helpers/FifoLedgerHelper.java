@@ -0,0 +1,715 @@
+package app.helpers;
+
+import app.model.DailyMovement;
+import app.model.LedgerCheckpoint;
+import app.model.Product;
+import app.model.ProductLedger;
+import app.model.Purchase;
+import app.model.Selling;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.hibernate.query.Query;
+
+import javax.persistence.Tuple;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Поддержка накопительного FIFO-журнала ({@link ProductLedger}) товара.
+ * Порядок списания слоёв себестоимости (закупок): по дате закупки, при равных датах - по id закупки.
+ * Для отчётов на прошедшие даты периодически сохраняются снимки FIFO-состояния ({@link LedgerCheckpoint}):
+ * снимок создаётся при переходе к движению с новой датой, если после предыдущего снимка накопилось не менее
+ * {@link Constants#LEDGER_CHECKPOINT_INTERVAL} движений. Движение "задним числом" удаляет снимки начиная со своей даты
+ * и пересчитывает их от предшествующего снимка.
+ * Все методы работают в рамках уже открытой сессии и транзакции вызывающего кода; отчёты, которым нужен отсутствующий журнал,
+ * строят его в отдельной транзакции той же сессии под блокировкой товара (см. {@link #getLedger(Session, Product)}).
+ */
+public class FifoLedgerHelper {
+
+    private FifoLedgerHelper() {
+    }
+
+    /**
+     * возвращает журнал товара; если журнала нет (например, товар создан до появления журнала), то журнал строится заново
+     * ({@link #buildMissingLedger(Session, Product)}). Вызывается отчётами, транзакция которых до этого только читала данные
+     */
+    public static ProductLedger getLedger(Session session, Product product) {
+        ProductLedger ledger = findLedger(session, product);
+        if (ledger == null) {
+            ledger = buildMissingLedger(session, product);
+        }
+        return ledger;
+    }
+
+    /**
+     * построение журнала товара для отчёта под блокировкой товара ({@link ProductLocks}), как при закупках/продажах:
+     * иначе отчёт, выполняемый одновременно с закупкой/продажей товара, построил бы журнал по устаревшим данным,
+     * а два первых отчёта по товару создали бы два журнала (нарушение уникальности product_id).
+     * Транзакция отчёта (пока только читавшая данные) завершается, журнал строится и сохраняется в отдельной транзакции
+     * после захвата блокировки (если его не построил другой запрос, пока этот ждал блокировку), после чего транзакция
+     * отчёта начинается заново - уже видя сохранённый журнал. Второе соединение с БД при этом не требуется.
+     */
+    private static ProductLedger buildMissingLedger(Session session, Product product) {
+        Transaction transaction = session.getTransaction();
+        transaction.commit();
+        try (ProductLocks locks = ProductLocks.lock(Collections.singleton(product.getName()))) {
+            transaction.begin();
+            ProductLedger ledger = findLedger(session, product);
+            if (ledger == null) {
+                ledger = rebuild(session, product);
+            }
+            transaction.commit();
+            return ledger;
+        } catch (RuntimeException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        } finally {
+            transaction.begin();
+        }
+    }
+
+    /**
+     * создание пустого журнала для нового товара
+     */
+    public static ProductLedger createLedger(Session session, Product product) {
+        ProductLedger ledger = new ProductLedger();
+        ledger.setProduct(product);
+        session.save(ledger);
+        return ledger;
+    }
+
+    /**
+     * учёт сохранённых закупок товара в журнале.
+     * Закупки обрабатываются группами по датам (в порядке возрастания), поэтому запросы к БД выполняются
+     * не на каждую закупку, а на каждую дату, и вставки закупок уходят в БД одним пакетом.
+     * Если закупка "задним числом" встаёт в очереди FIFO перед уже списанными слоями, то списание
+     * откатывается только для слоёв, стоящих в очереди после неё, и повторяется начиная с новой закупки.
+     */
+    public static void registerPurchases(Session session, Product product, List<Purchase> purchases) {
+        ProductLedger ledger = findLedger(session, product);
+        if (ledger == null) {
+            /**
+             * журнал строится по всем сохранённым движениям, включая текущие
+             */
+            rebuild(session, product);
+            return;
+        }
+
+        Map<LocalDate, List<Purchase>> purchasesByDate = purchases.stream()
+                .collect(Collectors.groupingBy(Purchase::getPurchaseDate, TreeMap::new, Collectors.toList()));
+        Map<LocalDate, DailyMovement> days = getDailyMovements(session, product, purchasesByDate.keySet());
+
+        purchasesByDate.forEach((date, datePurchases) -> {
+            checkpointOnNewDay(session, ledger, date);
+
+            DailyMovement day = days.get(date);
+            datePurchases.forEach(purchase -> {
+                ledger.setPurchasedCount(ledger.getPurchasedCount() + purchase.getProductCount());
+                day.setPurchasedCount(day.getPurchasedCount() + purchase.getProductCount());
+                day.setPurchasedCost(day.getPurchasedCost() + purchase.getProductCount() * purchase.getProductPrice());
+            });
+            day.setPurchaseMovements(day.getPurchaseMovements() + datePurchases.size());
+
+            long firstId = datePurchases.stream().mapToLong(Purchase::getId).min().getAsLong();
+            if (ledger.getConsumedCount() > 0 && ledger.getLastMovementDate() != null && !date.isAfter(ledger.getLastMovementDate())) {
+                List<Purchase> laterConsumedLayers = session.createQuery(
+                        "from Purchase p where p.product = :product and p.remainingCount < p.productCount " +
+                                "and (p.purchaseDate > :date or (p.purchaseDate = :date and p.id > :id))",
+                        Purchase.class)
+                        .setParameter("product", product)
+                        .setParameter("date", date)
+                        .setParameter("id", firstId)
+                        .list();
+                for (Purchase layer : laterConsumedLayers) {
+                    int used = layer.getProductCount() - layer.getRemainingCount();
+                    ledger.setConsumedCount(ledger.getConsumedCount() - used);
+                    ledger.setCostOfGoodsSold(ledger.getCostOfGoodsSold() - used * layer.getProductPrice());
+                    layer.setRemainingCount(layer.getProductCount());
+                }
+            }
+
+            if (ledger.getWatermarkLayerId() != null && (date.isBefore(ledger.getWatermarkLayerDate())
+                    || date.isEqual(ledger.getWatermarkLayerDate()) && firstId < ledger.getWatermarkLayerId())) {
+                /**
+                 * все слои перед новой закупкой стоят перед водяным знаком, т.е. списаны полностью,
+                 * а слои после неё больше не списаны: водяной знак переносится на новую закупку
+                 */
+                setWatermark(ledger, firstId, date, ledger.getConsumedCount(), ledger.getCostOfGoodsSold());
+            }
+
+            ledger.setMovementsSinceCheckpoint(ledger.getMovementsSinceCheckpoint() + datePurchases.size());
+            updateLastMovementDate(ledger, date);
+            consume(session, ledger);
+            invalidateCheckpoints(session, ledger, date);
+        });
+    }
+
+    /**
+     * учёт сохранённых продаж товара в журнале (группами по датам, как и закупки).
+     * Себестоимость последних проданных единиц не зависит от даты продажи, поэтому продажа "задним числом"
+     * обрабатывается так же, как и обычная.
+     */
+    public static void registerSellings(Session session, Product product, List<Selling> sellings) {
+        ProductLedger ledger = findLedger(session, product);
+        if (ledger == null) {
+            /**
+             * журнал строится по всем сохранённым движениям, включая текущие
+             */
+            rebuild(session, product);
+            return;
+        }
+
+        Map<LocalDate, List<Selling>> sellingsByDate = sellings.stream()
+                .collect(Collectors.groupingBy(Selling::getSellingDate, TreeMap::new, Collectors.toList()));
+        Map<LocalDate, DailyMovement> days = getDailyMovements(session, product, sellingsByDate.keySet());
+
+        sellingsByDate.forEach((date, dateSellings) -> {
+            checkpointOnNewDay(session, ledger, date);
+
+            DailyMovement day = days.get(date);
+            dateSellings.forEach(selling -> {
+                ledger.setSoldCount(ledger.getSoldCount() + selling.getProductCount());
+                ledger.setRevenue(ledger.getRevenue() + selling.getProductCount() * selling.getProductPrice());
+                day.setSoldCount(day.getSoldCount() + selling.getProductCount());
+                day.setRevenue(day.getRevenue() + selling.getProductCount() * selling.getProductPrice());
+            });
+            day.setSellingMovements(day.getSellingMovements() + dateSellings.size());
+            ledger.setMovementsSinceCheckpoint(ledger.getMovementsSinceCheckpoint() + dateSellings.size());
+            updateLastMovementDate(ledger, date);
+            consume(session, ledger);
+            invalidateCheckpoints(session, ledger, date);
+        });
+    }
+
+    /**
+     * прибыль по товару на указанную дату.
+     * Для даты не ранее последнего движения товара берётся готовое значение из журнала,
+     * для более ранней даты расчёт продолжается от ближайшего снимка, сделанного не позднее этой даты.
+     */
+    public static double getIncome(Session session, Product product, LocalDate reportDate) {
+        ProductLedger ledger = getLedger(session, product);
+
+        if (ledger.getLastMovementDate() == null || !reportDate.isBefore(ledger.getLastMovementDate())) {
+            return ledger.getRevenue() - ledger.getCostOfGoodsSold();
+        }
+
+        LedgerCheckpoint checkpoint = findCheckpoint(session, product, reportDate);
+        return replay(session, product, checkpoint, reportDate, null).getIncome();
+    }
+
+    /**
+     * прибыль по нескольким товарам на указанную дату (ключ - название товара).
+     * Журналы всех товаров читаются одним запросом; для товаров, у которых есть движения позже даты отчёта,
+     * итоги движений на дату отчёта читаются одним общим запросом по дневным итогам {@link DailyMovement}, а слои себестоимости
+     * всех товаров - другим общим запросом, для каждого товара начиная с водяного знака журнала (если он не дальше даты отчёта).
+     * FIFO рассчитывается в памяти параллельно по товарам; в памяти при этом находятся слои всех товаров отчёта
+     * от водяного знака (или от начала) до даты отчёта.
+     */
+    public static Map<String, Double> getIncomes(Session session, List<Product> products, LocalDate reportDate) {
+        Map<String, Double> incomes = new ConcurrentHashMap<>();
+        if (products.isEmpty()) {
+            return incomes;
+        }
+
+        Map<String, ProductLedger> ledgers = new HashMap<>();
+        session.createQuery("from ProductLedger l where l.product in :products", ProductLedger.class)
+                .setParameter("products", products)
+                .list()
+                .forEach(ledger -> ledgers.put(ledger.getProduct().getName(), ledger));
+
+        List<Product> outdatedProducts = new ArrayList<>();
+        for (Product product : products) {
+            ProductLedger ledger = ledgers.get(product.getName());
+            if (ledger == null) {
+                ledger = buildMissingLedger(session, product);
+                ledgers.put(product.getName(), ledger);
+            }
+            if (ledger.getLastMovementDate() == null || !reportDate.isBefore(ledger.getLastMovementDate())) {
+                incomes.put(product.getName(), ledger.getRevenue() - ledger.getCostOfGoodsSold());
+            } else {
+                outdatedProducts.add(product);
+            }
+        }
+
+        if (outdatedProducts.isEmpty()) {
+            return incomes;
+        }
+
+        /**
+         * итоги движений на дату отчёта по дневным итогам {@link DailyMovement} одним запросом; группировка по внешнему ключу
+         * (d.product.id), а не по названию товара: так запрос обходится без соединения с таблицей product
+         */
+        Map<Long, Object[]> totals = new HashMap<>();
+        session.createQuery(
+                "select d.product.id, sum(d.purchasedCount), sum(d.purchaseMovements), sum(d.soldCount), sum(d.revenue), " +
+                        "sum(d.sellingMovements) from DailyMovement d where d.product in :products and d.movementDate <= :date " +
+                        "group by d.product.id", Object[].class)
+                .setParameter("products", outdatedProducts)
+                .setParameter("date", reportDate)
+                .list()
+                .forEach(row -> totals.put((Long) row[0], row));
+
+        /**
+         * себестоимость первых N единиц в очереди FIFO не зависит от даты отчёта, поэтому если на дату отчёта списано
+         * не меньше единиц, чем стоит перед водяным знаком, то слои товара нужны только начиная с водяного знака
+         */
+        List<Product> fromStartProducts = new ArrayList<>();
+        List<Product> fromWatermarkProducts = new ArrayList<>();
+        for (Product product : outdatedProducts) {
+            ProductLedger ledger = ledgers.get(product.getName());
+            Object[] total = totals.get(product.getId());
+            long consumedCount = total == null ? 0 : Math.min(((Number) total[1]).longValue(), ((Number) total[3]).longValue());
+            if (ledger.getWatermarkLayerId() != null && ledger.getWatermarkConsumedCount() <= consumedCount) {
+                fromWatermarkProducts.add(product);
+            } else {
+                fromStartProducts.add(product);
+            }
+        }
+
+        /**
+         * слои себестоимости всех товаров одним запросом (проекция {@link FifoReplay#LAYER_PROJECTION} и id товара),
+         * каждого товара - не позднее даты отчёта и начиная с его водяного знака (если он применим);
+         * слои товаров идут подряд в порядке FIFO
+         */
+        StringBuilder layerBounds = new StringBuilder();
+        if (!fromStartProducts.isEmpty()) {
+            layerBounds.append("p.product in :fromStartProducts");
+        }
+        for (int i = 0; i < fromWatermarkProducts.size(); i++) {
+            layerBounds.append(layerBounds.length() == 0 ? "" : " or ")
+                    .append("(p.product = :product").append(i)
+                    .append(" and (p.purchaseDate > :layerDate").append(i)
+                    .append(" or (p.purchaseDate = :layerDate").append(i).append(" and p.id >= :layerId").append(i).append(")))");
+        }
+        Query<Object[]> layerQuery = session.createQuery(
+                "select " + FifoReplay.LAYER_PROJECTION + ", p.product.id from Purchase p " +
+                        "where p.product in :products and p.purchaseDate <= :date and (" + layerBounds + ") " +
+                        "order by p.product, p.purchaseDate, p.id", Object[].class)
+                .setParameter("products", outdatedProducts)
+                .setParameter("date", reportDate);
+        if (!fromStartProducts.isEmpty()) {
+            layerQuery.setParameter("fromStartProducts", fromStartProducts);
+        }
+        for (int i = 0; i < fromWatermarkProducts.size(); i++) {
+            Product product = fromWatermarkProducts.get(i);
+            ProductLedger ledger = ledgers.get(product.getName());
+            layerQuery.setParameter("product" + i, product)
+                    .setParameter("layerDate" + i, ledger.getWatermarkLayerDate())
+                    .setParameter("layerId" + i, ledger.getWatermarkLayerId());
+        }
+
+        Set<Product> fromWatermark = new HashSet<>(fromWatermarkProducts);
+        Map<Long, List<Object[]>> layers = new HashMap<>();
+        try (Stream<Object[]> rows = layerQuery.setFetchSize(Constants.REPORT_FETCH_SIZE).stream()) {
+            rows.forEach(row -> layers.computeIfAbsent((Long) row[4], productId -> new ArrayList<>()).add(row));
+        }
+
+        /**
+         * дальше работа идёт только с уже загруженными данными, поэтому расчёт можно выполнять вне потока сессии
+         * (parallelStream использует общий ForkJoinPool)
+         */
+        outdatedProducts.parallelStream().forEach(product -> {
+            ProductLedger ledger = ledgers.get(product.getName());
+            Object[] total = totals.get(product.getId());
+            Iterator<Object[]> productLayers = layers.getOrDefault(product.getId(), Collections.emptyList()).iterator();
+
+            FifoReplay replay = fromWatermark.contains(product)
+                    ? new FifoReplay(productLayers, ledger.getWatermarkConsumedCount(), ledger.getWatermarkCostOfGoodsSold())
+                    : new FifoReplay(productLayers);
+            if (total != null) {
+                replay.addPurchases(((Number) total[1]).longValue(), ((Number) total[2]).longValue());
+                replay.addSellings(((Number) total[3]).longValue(), ((Number) total[4]).doubleValue(), ((Number) total[5]).longValue());
+            }
+            replay.consume();
+            incomes.put(product.getName(), replay.getIncome());
+        });
+
+        return incomes;
+    }
+
+    /**
+     * прибыль по товару нарастающим итогом на конец каждого интервала в периоде [from, to] (последний интервал заканчивается датой to).
+     * Расчёт начинается с ближайшего снимка, сделанного не позднее from, и выполняется за один проход по движениям товара.
+     */
+    public static Map<LocalDate, Double> getIncomeSeries(Session session, Product product, LocalDate from, LocalDate to,
+                                                         ReportGranularity granularity) {
+        List<LocalDate> boundaries = new ArrayList<>();
+        for (LocalDate date = from; !date.isAfter(to); date = granularity.bucketEnd(date).plusDays(1)) {
+            LocalDate bucketEnd = granularity.bucketEnd(date);
+            boundaries.add(bucketEnd.isAfter(to) ? to : bucketEnd);
+        }
+
+        Map<LocalDate, Double> incomes = new LinkedHashMap<>();
+        LedgerCheckpoint checkpoint = findCheckpoint(session, product, from);
+        /**
+         * прибыль после последней обработанной даты движения; на границах интервалов без движений она не меняется
+         */
+        double[] income = {checkpoint == null ? 0 : checkpoint.getRevenue() - checkpoint.getCostOfGoodsSold()};
+        int[] boundaryIndex = {0};
+
+        replay(session, product, checkpoint, to, (date, state) -> {
+            while (boundaryIndex[0] < boundaries.size() && boundaries.get(boundaryIndex[0]).isBefore(date)) {
+                incomes.put(boundaries.get(boundaryIndex[0]++), income[0]);
+            }
+            income[0] = state.getIncome();
+        });
+        while (boundaryIndex[0] < boundaries.size()) {
+            incomes.put(boundaries.get(boundaryIndex[0]++), income[0]);
+        }
+
+        return incomes;
+    }
+
+    /**
+     * полное перестроение журнала товара, дневных итогов {@link DailyMovement} и снимков по всем закупкам и продажам товара
+     * (например, для данных, сохранённых до появления журнала или в обход приложения)
+     */
+    public static ProductLedger rebuild(Session session, Product product) {
+        ProductLedger ledger = findLedger(session, product);
+        if (ledger == null) {
+            ledger = createLedger(session, product);
+        }
+        rebuildDailyMovements(session, product);
+
+        List<Purchase> purchases = session.createQuery("from Purchase p where p.product = :product", Purchase.class)
+                .setParameter("product", product)
+                .list();
+        long purchasedCount = 0;
+        LocalDate lastMovementDate = null;
+        for (Purchase purchase : purchases) {
+            purchase.setRemainingCount(purchase.getProductCount());
+            purchasedCount += purchase.getProductCount();
+            if (lastMovementDate == null || purchase.getPurchaseDate().isAfter(lastMovementDate)) {
+                lastMovementDate = purchase.getPurchaseDate();
+            }
+        }
+
+        Tuple selling = session.createQuery(
+                "select coalesce(sum(s.productCount), 0), coalesce(sum(s.productCount * s.productPrice), 0.0), max(s.sellingDate) " +
+                        "from Selling s where s.product = :product", Tuple.class)
+                .setParameter("product", product)
+                .getSingleResult();
+        LocalDate lastSellingDate = selling.get(2, LocalDate.class);
+        if (lastSellingDate != null && (lastMovementDate == null || lastSellingDate.isAfter(lastMovementDate))) {
+            lastMovementDate = lastSellingDate;
+        }
+
+        ledger.setPurchasedCount(purchasedCount);
+        ledger.setSoldCount(((Number) selling.get(0)).longValue());
+        ledger.setRevenue(((Number) selling.get(1)).doubleValue());
+        ledger.setConsumedCount(0);
+        ledger.setCostOfGoodsSold(0);
+        setWatermark(ledger, null, null, 0, 0);
+        ledger.setLastMovementDate(lastMovementDate);
+        consume(session, ledger);
+
+        session.createQuery("delete from LedgerCheckpoint c where c.product = :product")
+                .setParameter("product", product)
+                .executeUpdate();
+        rebuildCheckpoints(session, ledger, null);
+
+        return ledger;
+    }
+
+    /**
+     * списание со слоёв себестоимости (в порядке FIFO) единиц товара, проданных, но ещё не списанных.
+     * Слои читаются начиная с водяного знака журнала (полностью списанные слои перед ним не читаются) и только до списания
+     * нужного количества, после чего водяной знак переносится на последний слой, с которого списывался товар
+     */
+    private static void consume(Session session, ProductLedger ledger) {
+        long need = Math.min(ledger.getSoldCount(), ledger.getPurchasedCount()) - ledger.getConsumedCount();
+        if (need <= 0) {
+            return;
+        }
+
+        Long watermarkLayerId = ledger.getWatermarkLayerId();
+        Query<Purchase> layerQuery = session.createQuery(
+                "from Purchase p where p.product = :product and p.remainingCount > 0" +
+                        (watermarkLayerId == null ? "" : " and (p.purchaseDate > :layerDate or (p.purchaseDate = :layerDate and p.id >= :layerId))") +
+                        " order by p.product, p.purchaseDate, p.id", Purchase.class)
+                .setParameter("product", ledger.getProduct());
+        if (watermarkLayerId != null) {
+            layerQuery.setParameter("layerDate", ledger.getWatermarkLayerDate())
+                    .setParameter("layerId", watermarkLayerId);
+        }
+
+        try (Stream<Purchase> layers = layerQuery.setFetchSize(Constants.REPORT_FETCH_SIZE).stream()) {
+            Iterator<Purchase> iterator = layers.iterator();
+            while (need > 0 && iterator.hasNext()) {
+                Purchase layer = iterator.next();
+                int taken = (int) Math.min(need, layer.getRemainingCount());
+                layer.setRemainingCount(layer.getRemainingCount() - taken);
+                ledger.setConsumedCount(ledger.getConsumedCount() + taken);
+                ledger.setCostOfGoodsSold(ledger.getCostOfGoodsSold() + taken * layer.getProductPrice());
+                need -= taken;
+
+                int used = layer.getProductCount() - layer.getRemainingCount();
+                setWatermark(ledger, layer.getId(), layer.getPurchaseDate(), ledger.getConsumedCount() - used,
+                        ledger.getCostOfGoodsSold() - used * layer.getProductPrice());
+            }
+        }
+    }
+
+    private static void setWatermark(ProductLedger ledger, Long layerId, LocalDate layerDate, long consumedCount, double costOfGoodsSold) {
+        ledger.setWatermarkLayerId(layerId);
+        ledger.setWatermarkLayerDate(layerDate);
+        ledger.setWatermarkConsumedCount(consumedCount);
+        ledger.setWatermarkCostOfGoodsSold(costOfGoodsSold);
+    }
+
+    private static ProductLedger findLedger(Session session, Product product) {
+        return session.createQuery("from ProductLedger l where l.product = :product", ProductLedger.class)
+                .setParameter("product", product)
+                .uniqueResult();
+    }
+
+    /**
+     * последний снимок FIFO-состояния товара с датой не позднее указанной.
+     * Снимки после сохранения не изменяются (только удаляются), поэтому загружаются в режиме только для чтения
+     */
+    private static LedgerCheckpoint findCheckpoint(Session session, Product product, LocalDate date) {
+        return session.createQuery(
+                "from LedgerCheckpoint c where c.product = :product and c.checkpointDate <= :date order by c.checkpointDate desc",
+                LedgerCheckpoint.class)
+                .setParameter("product", product)
+                .setParameter("date", date)
+                .setReadOnly(true)
+                .setMaxResults(1)
+                .uniqueResult();
+    }
+
+    /**
+     * при переходе к движению с новой (более поздней) датой журнал содержит состояние на конец даты последнего движения,
+     * которое и сохраняется в качестве снимка
+     */
+    private static void checkpointOnNewDay(Session session, ProductLedger ledger, LocalDate movementDate) {
+        if (ledger.getLastMovementDate() == null
+                || !movementDate.isAfter(ledger.getLastMovementDate())
+                || ledger.getMovementsSinceCheckpoint() < Constants.LEDGER_CHECKPOINT_INTERVAL) {
+            return;
+        }
+
+        LedgerCheckpoint checkpoint = new LedgerCheckpoint();
+        checkpoint.setProduct(ledger.getProduct());
+        checkpoint.setCheckpointDate(ledger.getLastMovementDate());
+        checkpoint.setPurchasedCount(ledger.getPurchasedCount());
+        checkpoint.setSoldCount(ledger.getSoldCount());
+        checkpoint.setConsumedCount(ledger.getConsumedCount());
+        checkpoint.setRevenue(ledger.getRevenue());
+        checkpoint.setCostOfGoodsSold(ledger.getCostOfGoodsSold());
+        /**
+         * курсор слоёв снимка - водяной знак журнала
+         */
+        if (ledger.getWatermarkLayerId() != null) {
+            checkpoint.setLayerId(ledger.getWatermarkLayerId());
+            checkpoint.setLayerDate(ledger.getWatermarkLayerDate());
+            checkpoint.setLayerConsumedCount((int) (ledger.getConsumedCount() - ledger.getWatermarkConsumedCount()));
+        }
+        session.save(checkpoint);
+
+        ledger.setLastCheckpointDate(checkpoint.getCheckpointDate());
+        ledger.setMovementsSinceCheckpoint(0);
+    }
+
+    /**
+     * удаление снимков, которые затрагивает движение "задним числом", и их пересчёт от предшествующего снимка
+     */
+    private static void invalidateCheckpoints(Session session, ProductLedger ledger, LocalDate movementDate) {
+        if (ledger.getLastCheckpointDate() == null || movementDate.isAfter(ledger.getLastCheckpointDate())) {
+            return;
+        }
+
+        session.createQuery("delete from LedgerCheckpoint c where c.product = :product and c.checkpointDate >= :date")
+                .setParameter("product", ledger.getProduct())
+                .setParameter("date", movementDate)
+                .executeUpdate();
+        rebuildCheckpoints(session, ledger, findCheckpoint(session, ledger.getProduct(), movementDate.minusDays(1)));
+    }
+
+    /**
+     * пересчёт снимков начиная с указанного (null - с самого начала) до даты последнего движения товара (не включительно)
+     */
+    private static void rebuildCheckpoints(Session session, ProductLedger ledger, LedgerCheckpoint start) {
+        Product product = ledger.getProduct();
+        LocalDate lastMovementDate = ledger.getLastMovementDate();
+        ledger.setLastCheckpointDate(start == null ? null : start.getCheckpointDate());
+        if (lastMovementDate == null) {
+            ledger.setMovementsSinceCheckpoint(0);
+            return;
+        }
+
+        FifoReplay replay = replay(session, product, start, lastMovementDate, (date, state) -> {
+            if (date.isBefore(lastMovementDate) && state.getMovementCount() >= Constants.LEDGER_CHECKPOINT_INTERVAL) {
+                session.save(state.toCheckpoint(product, date));
+                ledger.setLastCheckpointDate(date);
+                state.resetMovementCount();
+            }
+        });
+        ledger.setMovementsSinceCheckpoint(replay.getMovementCount());
+    }
+
+    /**
+     * проход по движениям товара в порядке дат, начиная со снимка checkpoint (null - с самого начала) и до даты endDate включительно.
+     * Если задан dayListener, то он вызывается после обработки каждой даты, на которую есть движения.
+     * Движения читаются только скалярными проекциями в режиме потокового чтения (ScrollableResults),
+     * поэтому сущности закупок/продаж не создаются и не попадают в контекст сессии и кэш второго уровня:
+     * закупки и продажи - дневными итогами {@link DailyMovement}, слои себестоимости - по одному, по мере списания.
+     * Оба запроса упорядочены по индексам (product_id, дата, ...) и выполняются лениво (LAZY_QUERY_EXECUTION, см. {@link HibernateHelper}),
+     * поэтому H2 выдаёт строки по мере чтения: слои после последнего списанного не читаются и из БД.
+     */
+    static FifoReplay replay(Session session, Product product, LedgerCheckpoint checkpoint, LocalDate endDate,
+                             BiConsumer<LocalDate, FifoReplay> dayListener) {
+        LocalDate startDate = checkpoint == null ? null : checkpoint.getCheckpointDate();
+
+        /**
+         * слои себестоимости начиная с последнего слоя, с которого списывался товар на момент снимка
+         */
+        Query<Object[]> layerQuery = checkpoint == null
+                ? layerQuery(session, product, endDate, null, null)
+                : layerQuery(session, product, endDate, checkpoint.getLayerId(), checkpoint.getLayerDate());
+
+        Query<Object[]> dayQuery = dayQuery(session, product, startDate, endDate);
+
+        try (Stream<Object[]> layers = layerQuery.setFetchSize(Constants.REPORT_FETCH_SIZE).stream();
+             Stream<Object[]> days = dayQuery.setFetchSize(Constants.REPORT_FETCH_SIZE).stream()) {
+
+            FifoReplay replay = checkpoint == null
+                    ? new FifoReplay(layers.iterator())
+                    : new FifoReplay(checkpoint, layers.iterator());
+
+            days.forEach(day -> {
+                replay.addPurchases(((Number) day[1]).longValue(), ((Number) day[2]).longValue());
+                replay.addSellings(((Number) day[3]).longValue(), ((Number) day[4]).doubleValue(), ((Number) day[5]).longValue());
+
+                if (dayListener != null) {
+                    replay.consume();
+                    dayListener.accept((LocalDate) day[0], replay);
+                }
+            });
+
+            replay.consume();
+            return replay;
+        }
+    }
+
+    /**
+     * запрос дневных итогов товара {@link DailyMovement} после даты startDate (null - с самого начала) и не позднее endDate
+     * в порядке дат: {дата, закуплено, закупок, продано, выручка, продаж}. Порядок совпадает с уникальным индексом (product_id, movement_date)
+     */
+    static Query<Object[]> dayQuery(Session session, Product product, LocalDate startDate, LocalDate endDate) {
+        Query<Object[]> dayQuery = session.createQuery(
+                "select d.movementDate, d.purchasedCount, d.purchaseMovements, d.soldCount, d.revenue, d.sellingMovements " +
+                        "from DailyMovement d where d.product = :product and d.movementDate <= :endDate" +
+                        (startDate == null ? "" : " and d.movementDate > :startDate") +
+                        " order by d.product, d.movementDate", Object[].class)
+                .setParameter("product", product)
+                .setParameter("endDate", endDate);
+        if (startDate != null) {
+            dayQuery.setParameter("startDate", startDate);
+        }
+        return dayQuery;
+    }
+
+    /**
+     * запрос слоёв себестоимости товара (проекция {@link FifoReplay#LAYER_PROJECTION}) с датой не позднее endDate
+     * в порядке FIFO, начиная со слоя layerId (null - с самого первого слоя). Товар в начале ORDER BY совпадает с первым столбцом
+     * индекса purchase_product_fifo_idx: только так H2 не сортирует результат и может выдавать его лениво
+     */
+    static Query<Object[]> layerQuery(Session session, Product product, LocalDate endDate, Long layerId, LocalDate layerDate) {
+        Query<Object[]> layerQuery = session.createQuery(
+                "select " + FifoReplay.LAYER_PROJECTION + " from Purchase p where p.product = :product and p.purchaseDate <= :endDate" +
+                        (layerId == null ? "" : " and (p.purchaseDate > :layerDate or (p.purchaseDate = :layerDate and p.id >= :layerId))") +
+                        " order by p.product, p.purchaseDate, p.id", Object[].class)
+                .setParameter("product", product)
+                .setParameter("endDate", endDate);
+        if (layerId != null) {
+            layerQuery.setParameter("layerDate", layerDate)
+                    .setParameter("layerId", layerId);
+        }
+        return layerQuery;
+    }
+
+    /**
+     * дневные итоги товара на указанные даты; недостающие итоги создаются
+     */
+    private static Map<LocalDate, DailyMovement> getDailyMovements(Session session, Product product, Collection<LocalDate> dates) {
+        Map<LocalDate, DailyMovement> days = new HashMap<>();
+        session.createQuery("from DailyMovement d where d.product = :product and d.movementDate in :dates", DailyMovement.class)
+                .setParameter("product", product)
+                .setParameter("dates", dates)
+                .list()
+                .forEach(day -> days.put(day.getMovementDate(), day));
+        for (LocalDate date : dates) {
+            days.computeIfAbsent(date, movementDate -> {
+                DailyMovement day = createDailyMovement(product, movementDate);
+                session.save(day);
+                return day;
+            });
+        }
+        return days;
+    }
+
+    /**
+     * пересчёт дневных итогов товара по всем его закупкам и продажам (двумя сгруппированными по датам запросами)
+     */
+    private static void rebuildDailyMovements(Session session, Product product) {
+        session.createQuery("delete from DailyMovement d where d.product = :product")
+                .setParameter("product", product)
+                .executeUpdate();
+
+        Map<LocalDate, DailyMovement> days = new TreeMap<>();
+        session.createQuery(
+                "select p.purchaseDate, sum(p.productCount), sum(p.productCount * p.productPrice), count(p) " +
+                        "from Purchase p where p.product = :product group by p.purchaseDate", Object[].class)
+                .setParameter("product", product)
+                .list()
+                .forEach(row -> {
+                    DailyMovement day = days.computeIfAbsent((LocalDate) row[0], date -> createDailyMovement(product, date));
+                    day.setPurchasedCount(((Number) row[1]).longValue());
+                    day.setPurchasedCost(((Number) row[2]).doubleValue());
+                    day.setPurchaseMovements(((Number) row[3]).intValue());
+                });
+        session.createQuery(
+                "select s.sellingDate, sum(s.productCount), sum(s.productCount * s.productPrice), count(s) " +
+                        "from Selling s where s.product = :product group by s.sellingDate", Object[].class)
+                .setParameter("product", product)
+                .list()
+                .forEach(row -> {
+                    DailyMovement day = days.computeIfAbsent((LocalDate) row[0], date -> createDailyMovement(product, date));
+                    day.setSoldCount(((Number) row[1]).longValue());
+                    day.setRevenue(((Number) row[2]).doubleValue());
+                    day.setSellingMovements(((Number) row[3]).intValue());
+                });
+        days.values().forEach(session::save);
+    }
+
+    private static DailyMovement createDailyMovement(Product product, LocalDate date) {
+        DailyMovement day = new DailyMovement();
+        day.setProduct(product);
+        day.setMovementDate(date);
+        return day;
+    }
+
+    private static void updateLastMovementDate(ProductLedger ledger, LocalDate movementDate) {
+        if (ledger.getLastMovementDate() == null || movementDate.isAfter(ledger.getLastMovementDate())) {
+            ledger.setLastMovementDate(movementDate);
+        }
+    }
+
+}
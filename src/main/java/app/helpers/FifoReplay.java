@@ -0,0 +1,154 @@
+package app.helpers;
+
+import app.model.LedgerCheckpoint;
+import app.model.Product;
+
+import java.time.LocalDate;
+import java.util.Iterator;
+
+/**
+ * Расчёт FIFO в памяти, начиная с пустого состояния или со снимка {@link LedgerCheckpoint}.
+ * Количество закупленного и проданного товара учитывается суммами (по датам), а слои себестоимости (закупки)
+ * читаются из итератора layers только тогда, когда с них нужно списывать товар, поэтому в памяти одновременно находится
+ * не больше одного слоя. Слои должны идти в порядке очереди FIFO (по дате, при равных датах - по id) и представлены
+ * проекцией закупки: {id, дата, количество, цена} (см. {@link #LAYER_PROJECTION}).
+ * Себестоимость списанных единиц зависит только от их количества, поэтому {@link #consume()}
+ * достаточно вызывать перед чтением результата (или на границе каждого дня, если нужны промежуточные снимки).
+ */
+class FifoReplay {
+
+    /**
+     * проекция закупки для HQL запроса слоёв себестоимости (псевдоним закупки - p)
+     */
+    static final String LAYER_PROJECTION = "p.id, p.purchaseDate, p.productCount, p.productPrice";
+
+    private final Iterator<Object[]> layers;
+    /**
+     * текущий слой себестоимости, с которого списано headConsumedCount единиц
+     */
+    private Object[] head;
+    private int headConsumedCount;
+
+    private long purchasedCount;
+    private long soldCount;
+    private long consumedCount;
+    private double revenue;
+    private double costOfGoodsSold;
+    private int movementCount;
+
+    private Long layerId;
+    private LocalDate layerDate;
+    private int layerConsumedCount;
+
+    FifoReplay(Iterator<Object[]> layers) {
+        this.layers = layers;
+    }
+
+    /**
+     * расчёт от водяного знака журнала ({@link app.model.ProductLedger#getWatermarkLayerId()}): первым слоем в layers должен быть
+     * слой водяного знака, consumedCount и costOfGoodsSold - количество и себестоимость единиц товара в слоях перед ним
+     */
+    FifoReplay(Iterator<Object[]> layers, long consumedCount, double costOfGoodsSold) {
+        this.layers = layers;
+        this.consumedCount = consumedCount;
+        this.costOfGoodsSold = costOfGoodsSold;
+    }
+
+    /**
+     * расчёт от снимка: первым слоем в layers должен быть последний слой, с которого списывался товар на момент снимка
+     * (или, если списаний не было, самая первая закупка)
+     */
+    FifoReplay(LedgerCheckpoint checkpoint, Iterator<Object[]> layers) {
+        this.layers = layers;
+        purchasedCount = checkpoint.getPurchasedCount();
+        soldCount = checkpoint.getSoldCount();
+        consumedCount = checkpoint.getConsumedCount();
+        revenue = checkpoint.getRevenue();
+        costOfGoodsSold = checkpoint.getCostOfGoodsSold();
+        layerId = checkpoint.getLayerId();
+        layerDate = checkpoint.getLayerDate();
+        layerConsumedCount = checkpoint.getLayerConsumedCount();
+    }
+
+    /**
+     * закупки (одна или несколько, сгруппированные по дате) после даты снимка
+     */
+    void addPurchases(long count, long purchases) {
+        purchasedCount += count;
+        movementCount += purchases;
+    }
+
+    /**
+     * продажи (одна или несколько, сгруппированные по дате) после даты снимка
+     */
+    void addSellings(long count, double amount, long sellings) {
+        soldCount += count;
+        revenue += amount;
+        movementCount += sellings;
+    }
+
+    /**
+     * списание со слоёв себестоимости проданных, но ещё не списанных единиц товара
+     */
+    void consume() {
+        long need = Math.min(soldCount, purchasedCount) - consumedCount;
+        while (need > 0 && nextLayer()) {
+            int headCount = ((Number) head[2]).intValue();
+            int taken = (int) Math.min(need, headCount - headConsumedCount);
+            headConsumedCount += taken;
+            consumedCount += taken;
+            costOfGoodsSold += taken * ((Number) head[3]).doubleValue();
+            need -= taken;
+
+            layerId = (Long) head[0];
+            layerDate = (LocalDate) head[1];
+            layerConsumedCount = headConsumedCount;
+        }
+    }
+
+    /**
+     * переход к следующему слою, если с текущего слоя списано всё; false - слоёв больше нет
+     */
+    private boolean nextLayer() {
+        while (head == null || headConsumedCount == ((Number) head[2]).intValue()) {
+            if (!layers.hasNext()) {
+                return false;
+            }
+            boolean first = head == null;
+            head = layers.next();
+            headConsumedCount = first && head[0].equals(layerId) ? layerConsumedCount : 0;
+        }
+        return true;
+    }
+
+    double getIncome() {
+        return revenue - costOfGoodsSold;
+    }
+
+    /**
+     * количество движений (закупок и продаж), добавленных после снимка или после последнего вызова {@link #resetMovementCount()}
+     */
+    int getMovementCount() {
+        return movementCount;
+    }
+
+    void resetMovementCount() {
+        movementCount = 0;
+    }
+
+    LedgerCheckpoint toCheckpoint(Product product, LocalDate checkpointDate) {
+        LedgerCheckpoint checkpoint = new LedgerCheckpoint();
+        checkpoint.setProduct(product);
+        checkpoint.setCheckpointDate(checkpointDate);
+        checkpoint.setPurchasedCount(purchasedCount);
+        checkpoint.setSoldCount(soldCount);
+        checkpoint.setConsumedCount(consumedCount);
+        checkpoint.setRevenue(revenue);
+        checkpoint.setCostOfGoodsSold(costOfGoodsSold);
+        checkpoint.setLayerId(layerId);
+        checkpoint.setLayerDate(layerDate);
+        checkpoint.setLayerConsumedCount(layerConsumedCount);
+        return checkpoint;
+    }
+
+}
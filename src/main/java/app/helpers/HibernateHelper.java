@@ -1,6 +1,8 @@
 package app.helpers;
 
 import app.RunServer;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
 import org.hibernate.SessionFactory;
 import org.hibernate.cfg.Configuration;
 import org.hibernate.cfg.Environment;
@@ -9,33 +11,75 @@ import javax.persistence.Entity;
 import java.io.File;
 import java.io.IOException;
 import java.lang.annotation.Annotation;
+import java.net.JarURLConnection;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.Properties;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
 
 public class HibernateHelper {
 
     private SessionFactory factory;
+    private HikariDataSource dataSource;
 
     public SessionFactory getFactory() {
         return factory;
     }
 
+    /**
+     * пул соединений с БД, через который работает {@link SessionFactory}
+     */
+    public HikariDataSource getDataSource() {
+        return dataSource;
+    }
+
     private static volatile HibernateHelper instance;
 
     private HibernateHelper() {
 
+        /**
+         * без заданного {@link javax.sql.DataSource} Hibernate использует встроенный пул соединений, не предназначенный для работы под нагрузкой
+         */
+        HikariConfig poolConfig = new HikariConfig();
+        poolConfig.setPoolName(Constants.POOL_NAME);
+        poolConfig.setDriverClassName(Constants.DRIVER);
+        poolConfig.setJdbcUrl(Constants.URL);
+        poolConfig.setUsername(Constants.USER);
+        poolConfig.setPassword(Constants.PASS);
+        poolConfig.setMaximumPoolSize(Constants.POOL_MAX_SIZE);
+        poolConfig.setMinimumIdle(Constants.POOL_MIN_IDLE);
+        poolConfig.setConnectionTimeout(Constants.POOL_CONNECTION_TIMEOUT_MS);
+        poolConfig.setIdleTimeout(Constants.POOL_IDLE_TIMEOUT_MS);
+        poolConfig.setAutoCommit(false);
+        poolConfig.addDataSourceProperty("QUERY_CACHE_SIZE", Constants.STATEMENT_CACHE_SIZE);
+        /**
+         * без ленивого выполнения встроенная H2 строит весь результат запроса до выдачи первой строки, и потоковое чтение
+         * слоёв себестоимости в отчётах ({@link FifoLedgerHelper}) не прекращалось бы после списания нужного количества.
+         * Ленивый результат читается строка за строкой, только если порядок ORDER BY совпадает с порядком индекса
+         */
+        poolConfig.addDataSourceProperty("LAZY_QUERY_EXECUTION", 1);
+        /**
+         * метрики пула (active/idle/waiting) доступны также через JMX: com.zaxxer.hikari:type=Pool (my_sklad_pool)
+         */
+        poolConfig.setRegisterMbeans(true);
+        dataSource = new HikariDataSource(poolConfig);
+
         Properties hibernateConnectionProperties = new Properties();
         hibernateConnectionProperties.put(Environment.DIALECT, Constants.DIALECT);
-        hibernateConnectionProperties.put(Environment.DRIVER, Constants.DRIVER);
-        hibernateConnectionProperties.put(Environment.URL, Constants.URL);
-        hibernateConnectionProperties.put(Environment.USER, Constants.USER);
-        hibernateConnectionProperties.put(Environment.PASS, Constants.PASS);
+        /**
+         * Hibernate получает соединения через журнал медленных запросов ({@link SlowQueryLog}), пул - напрямую
+         */
+        hibernateConnectionProperties.put(Environment.DATASOURCE, SlowQueryLog.getInstance().wrap(dataSource));
+        hibernateConnectionProperties.put(Environment.CONNECTION_PROVIDER_DISABLES_AUTOCOMMIT, true);
         hibernateConnectionProperties.put(Environment.CACHE_REGION_FACTORY, Constants.CACHE_REGION_FACTORY);
         hibernateConnectionProperties.put(Environment.USE_SECOND_LEVEL_CACHE, Constants.USE_SECOND_LEVEL_CACHE);
         hibernateConnectionProperties.put(Environment.USE_QUERY_CACHE, Constants.USE_QUERY_CACHE);
+        hibernateConnectionProperties.put(Environment.STATEMENT_BATCH_SIZE, Constants.JDBC_BATCH_SIZE);
+        hibernateConnectionProperties.put(Environment.ORDER_INSERTS, Constants.ORDER_INSERTS);
+        hibernateConnectionProperties.put(Environment.ORDER_UPDATES, Constants.ORDER_UPDATES);
         /**
          * FOR DEBUG:
          */
@@ -76,7 +120,18 @@ public class HibernateHelper {
         }
 
         while (lst.hasMoreElements()) {
-            File file = new File(lst.nextElement().getPath().replaceAll("%20", " "));
+            URL url = lst.nextElement();
+            /**
+             * классы приложения находятся в .jar архиве (например, при запуске бенчмарков или jar-with-dependencies)
+             */
+            if ("jar".equals(url.getProtocol())) {
+                List<Class<?>> jarClasses = getJarEntityClasses(url, path);
+                if (jarClasses != null) {
+                    classes.addAll(jarClasses);
+                }
+                continue;
+            }
+            File file = new File(url.getPath().replaceAll("%20", " "));
             if (file.isDirectory()) {
                 for (File f : file.listFiles()) {
                     if (f.isDirectory()) {
@@ -98,6 +153,46 @@ public class HibernateHelper {
         return classes;
     }
 
+    private static List<Class<?>> getJarEntityClasses(URL packageUrl, String path) {
+
+        List<Class<?>> classes = new ArrayList<>();
+
+        try {
+            JarURLConnection connection = (JarURLConnection) packageUrl.openConnection();
+            connection.setUseCaches(false);
+            try (JarFile jar = connection.getJarFile()) {
+                Enumeration<JarEntry> entries = jar.entries();
+                while (entries.hasMoreElements()) {
+                    String name = entries.nextElement().getName();
+                    if (name.startsWith(path + "/") && name.endsWith(".class")) {
+                        try {
+                            Class<?> clazz = Class.forName(name.substring(0, name.length() - 6).replace('/', '.'));
+                            if (clazz.getAnnotation(Entity.class) != null) {
+                                classes.add(clazz);
+                            }
+                        } catch (ClassNotFoundException e) {
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return classes;
+    }
+
+    /**
+     * закрытие {@link SessionFactory} и пула соединений
+     */
+    public void close() {
+        if (factory != null && !factory.isClosed()) {
+            factory.close();
+        }
+        if (dataSource != null && !dataSource.isClosed()) {
+            dataSource.close();
+        }
+    }
+
     public static HibernateHelper getInstance() {
         HibernateHelper result = instance;
         if (result == null) {
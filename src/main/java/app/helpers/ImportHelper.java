@@ -0,0 +1,150 @@
+package app.helpers;
+
+import app.model.Product;
+import app.model.Purchase;
+import app.model.Selling;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * Потоковое чтение закупок/продаж из тела запроса на массовую загрузку.
+ * Записи читаются по одной, поэтому расход памяти не зависит от размера загружаемого файла.
+ * Поддерживаемые форматы:
+ * NDJSON (application/x-ndjson) - по одному JSON объекту закупки/продажи (как в /purchase, /demand) в строке;
+ * CSV (text/csv) - строки вида: название товара,количество,цена,дата(YYYY-MM-DD); первая строка может быть заголовком.
+ */
+public class ImportHelper {
+
+    public static final String NDJSON = "application/x-ndjson";
+    public static final String CSV = "text/csv";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private ImportHelper() {
+    }
+
+    /**
+     * итератор по записям тела запроса; ошибка формата записи выбрасывается из {@link Iterator#next()}
+     * в виде {@link IllegalArgumentException}
+     */
+    public static <T> Iterator<T> read(InputStream input, String contentType, Class<T> type,
+                                       Function<String[], T> csvMapper) throws IOException {
+        if (contentType != null && contentType.startsWith(CSV)) {
+            return new CsvIterator<>(new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8)), csvMapper);
+        }
+        /**
+         * MappingIterator читает корневые JSON значения, разделённые пробельными символами, с помощью потокового парсера
+         */
+        Iterator<T> values = MAPPER.readerFor(type).readValues(input);
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                try {
+                    return values.hasNext();
+                } catch (RuntimeException e) {
+                    throw new IllegalArgumentException(e.getMessage(), e);
+                }
+            }
+
+            @Override
+            public T next() {
+                try {
+                    return values.next();
+                } catch (RuntimeException e) {
+                    throw new IllegalArgumentException(e.getMessage(), e);
+                }
+            }
+        };
+    }
+
+    public static Purchase purchaseFromCsv(String[] columns) {
+        Purchase purchase = new Purchase();
+        purchase.setProduct(productFromCsv(columns));
+        purchase.setProductCount(Integer.parseInt(columns[1].trim()));
+        purchase.setProductPrice(Double.parseDouble(columns[2].trim()));
+        purchase.setPurchaseDate(LocalDate.parse(columns[3].trim()));
+        return purchase;
+    }
+
+    public static Selling sellingFromCsv(String[] columns) {
+        Selling selling = new Selling();
+        selling.setProduct(productFromCsv(columns));
+        selling.setProductCount(Integer.parseInt(columns[1].trim()));
+        selling.setProductPrice(Double.parseDouble(columns[2].trim()));
+        selling.setSellingDate(LocalDate.parse(columns[3].trim()));
+        return selling;
+    }
+
+    private static Product productFromCsv(String[] columns) {
+        if (columns.length != 4) {
+            throw new IllegalArgumentException("expected 4 columns: name,count,price,date");
+        }
+        Product product = new Product();
+        product.setName(columns[0].trim());
+        return product;
+    }
+
+    private static class CsvIterator<T> implements Iterator<T> {
+
+        private final BufferedReader reader;
+        private final Function<String[], T> mapper;
+        private String nextLine;
+        private boolean firstLine = true;
+
+        CsvIterator(BufferedReader reader, Function<String[], T> mapper) {
+            this.reader = reader;
+            this.mapper = mapper;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                while (nextLine == null) {
+                    String line = reader.readLine();
+                    if (line == null) {
+                        return false;
+                    }
+                    if (line.trim().isEmpty()) {
+                        continue;
+                    }
+                    if (firstLine) {
+                        firstLine = false;
+                        String[] columns = line.split(",");
+                        if (columns.length > 1 && !columns[1].trim().matches("-?\\d+")) {
+                            continue;
+                        }
+                    }
+                    nextLine = line;
+                }
+                return true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String line = nextLine;
+            nextLine = null;
+            try {
+                return mapper.apply(line.split(",", -1));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("incorrect line [" + line + "]: " + e.getMessage(), e);
+            }
+        }
+    }
+
+}
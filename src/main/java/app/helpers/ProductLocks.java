@@ -0,0 +1,75 @@
+package app.helpers;
+
+import java.util.Collection;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Блокировки товаров на время транзакции, изменяющей их остаток и FIFO-журнал (закупки/продажи).
+ * Без блокировки два параллельных запроса могут одновременно пройти проверку остатка и продать больше, чем есть на складе.
+ * Блокировки "полосатые" (striped): товар блокирует одну из {@link Constants#PRODUCT_LOCK_STRIPES} блокировок, выбранную по хэшу
+ * названия, поэтому запросы по разным товарам почти никогда не ждут друг друга, а память не растёт с количеством товаров.
+ * Блокировки нескольких товаров захватываются в порядке возрастания номера, что исключает взаимную блокировку (deadlock).
+ * Блокировки действуют в пределах одного процесса, что достаточно для встроенной (embedded) БД H2.
+ * Использование:
+ * <pre>
+ * try (ProductLocks locks = ProductLocks.lock(names); Session session = ...) { ... transaction.commit(); }
+ * </pre>
+ */
+public final class ProductLocks implements AutoCloseable {
+
+    private static final ReentrantLock[] STRIPES = new ReentrantLock[Constants.PRODUCT_LOCK_STRIPES];
+
+    static {
+        for (int i = 0; i < STRIPES.length; i++) {
+            STRIPES[i] = new ReentrantLock();
+        }
+    }
+
+    private final int[] stripes;
+
+    private ProductLocks(int[] stripes) {
+        this.stripes = stripes;
+    }
+
+    /**
+     * захват блокировок для товаров с указанными названиями (ожидание, пока их не освободят другие запросы)
+     */
+    public static ProductLocks lock(Collection<String> productNames) {
+        TreeSet<Integer> sortedStripes = new TreeSet<>();
+        productNames.forEach(name -> sortedStripes.add(stripe(name)));
+
+        int[] stripes = new int[sortedStripes.size()];
+        int locked = 0;
+        try {
+            for (int stripe : sortedStripes) {
+                STRIPES[stripe].lockInterruptibly();
+                stripes[locked++] = stripe;
+            }
+        } catch (InterruptedException e) {
+            for (int i = locked - 1; i >= 0; i--) {
+                STRIPES[stripes[i]].unlock();
+            }
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for product locks", e);
+        }
+        return new ProductLocks(stripes);
+    }
+
+    /**
+     * освобождение блокировок (в обратном порядке)
+     */
+    @Override
+    public void close() {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            STRIPES[stripes[i]].unlock();
+        }
+    }
+
+    private static int stripe(String productName) {
+        int hash = productName == null ? 0 : productName.hashCode();
+        hash ^= hash >>> 16;
+        return Math.floorMod(hash, STRIPES.length);
+    }
+
+}
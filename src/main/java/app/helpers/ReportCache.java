@@ -0,0 +1,201 @@
+package app.helpers;
+
+import org.hibernate.Session;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * Кэш рассчитанной прибыли по товару на дату (отчёт getSalesReport), ключ - (название товара, дата отчёта).
+ * Размер ограничен {@link Constants#REPORT_CACHE_MAX_SIZE} записями (0 - кэш отключён), при переполнении вытесняется
+ * запись, к которой дольше всего не обращались (LRU).
+ * Прибыль на дату зависит только от движений товара с датой не позднее её, поэтому после фиксации транзакции, сохранившей
+ * движения товара, удаляются только записи этого товара с датами не ранее самого раннего из движений
+ * (см. {@link #invalidateOnCommit(Session, String, LocalDate)}).
+ * Чтобы результат расчёта, начатого до изменения товара, не попал в кэш после удаления устаревших записей, каждое изменение
+ * увеличивает версию товара, а {@link #put(String, LocalDate, double, long)} сохраняет результат, только если версия
+ * не изменилась с начала расчёта.
+ */
+public final class ReportCache {
+
+    private static final ReportCache INSTANCE = new ReportCache(Constants.REPORT_CACHE_MAX_SIZE);
+
+    private final int maxSize;
+    private final LinkedHashMap<Key, Double> incomes;
+    /**
+     * даты отчётов в кэше по товарам - для удаления записей товара без просмотра всего кэша
+     */
+    private final Map<String, NavigableSet<LocalDate>> datesByProduct = new HashMap<>();
+    private final Map<String, Long> versions = new HashMap<>();
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    ReportCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.incomes = new LinkedHashMap<Key, Double>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Double> eldest) {
+                if (size() <= ReportCache.this.maxSize) {
+                    return false;
+                }
+                removeDate(eldest.getKey());
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    public static ReportCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * прибыль из кэша; null - значения нет в кэше
+     */
+    public synchronized Double get(String productName, LocalDate reportDate) {
+        Double income = incomes.get(new Key(productName, reportDate));
+        if (income == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return income;
+    }
+
+    /**
+     * версия данных товара; должна быть получена до начала чтения данных из БД для расчёта и передана в {@link #put}
+     */
+    public synchronized long getVersion(String productName) {
+        return versions.getOrDefault(productName, 0L);
+    }
+
+    /**
+     * сохранение рассчитанной прибыли, если товар не изменялся после получения версии version
+     */
+    public synchronized void put(String productName, LocalDate reportDate, double income, long version) {
+        if (maxSize <= 0 || version != getVersion(productName)) {
+            return;
+        }
+        Key key = new Key(productName, reportDate);
+        if (incomes.put(key, income) == null) {
+            datesByProduct.computeIfAbsent(productName, name -> new TreeSet<>()).add(reportDate);
+        }
+    }
+
+    /**
+     * удаление записей товара с датами отчёта не ранее fromDate (null - всех записей товара)
+     */
+    public synchronized void invalidate(String productName, LocalDate fromDate) {
+        versions.merge(productName, 1L, Long::sum);
+
+        NavigableSet<LocalDate> dates = datesByProduct.get(productName);
+        if (dates == null) {
+            return;
+        }
+        NavigableSet<LocalDate> invalidDates = fromDate == null ? dates : dates.tailSet(fromDate, true);
+        invalidDates.forEach(date -> incomes.remove(new Key(productName, date)));
+        invalidations += invalidDates.size();
+        invalidDates.clear();
+        if (dates.isEmpty()) {
+            datesByProduct.remove(productName);
+        }
+    }
+
+    /**
+     * удаление записей товара (см. {@link #invalidate(String, LocalDate)}) после успешной фиксации текущей транзакции сессии:
+     * до фиксации параллельные запросы читают из БД ещё прежние данные
+     */
+    public void invalidateOnCommit(Session session, String productName, LocalDate fromDate) {
+        session.getTransaction().registerSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    invalidate(productName, fromDate);
+                }
+            }
+        });
+    }
+
+    public synchronized void clear() {
+        incomes.clear();
+        datesByProduct.clear();
+        versions.replaceAll((name, version) -> version + 1);
+    }
+
+    public synchronized int getSize() {
+        return incomes.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    private void removeDate(Key key) {
+        NavigableSet<LocalDate> dates = datesByProduct.get(key.productName);
+        if (dates != null) {
+            dates.remove(key.reportDate);
+            if (dates.isEmpty()) {
+                datesByProduct.remove(key.productName);
+            }
+        }
+    }
+
+    private static final class Key {
+
+        private final String productName;
+        private final LocalDate reportDate;
+
+        private Key(String productName, LocalDate reportDate) {
+            this.productName = productName;
+            this.reportDate = reportDate;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Key key = (Key) o;
+
+            if (!productName.equals(key.productName)) return false;
+            return reportDate.equals(key.reportDate);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = productName.hashCode();
+            result = 31 * result + reportDate.hashCode();
+            return result;
+        }
+    }
+
+}
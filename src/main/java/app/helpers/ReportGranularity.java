@@ -0,0 +1,37 @@
+package app.helpers;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * Шаг временного ряда в отчёте о прибыли за период.
+ * Прибыль выводится нарастающим итогом на последний день каждого интервала (день, неделя ISO - по воскресенье, месяц).
+ */
+public enum ReportGranularity {
+
+    DAY {
+        @Override
+        LocalDate bucketEnd(LocalDate date) {
+            return date;
+        }
+    },
+    WEEK {
+        @Override
+        LocalDate bucketEnd(LocalDate date) {
+            return date.with(TemporalAdjusters.nextOrSame(DayOfWeek.SUNDAY));
+        }
+    },
+    MONTH {
+        @Override
+        LocalDate bucketEnd(LocalDate date) {
+            return date.with(TemporalAdjusters.lastDayOfMonth());
+        }
+    };
+
+    /**
+     * последний день интервала, которому принадлежит дата
+     */
+    abstract LocalDate bucketEnd(LocalDate date);
+
+}
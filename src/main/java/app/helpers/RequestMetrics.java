@@ -0,0 +1,201 @@
+package app.helpers;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Метрики HTTP-запросов, собираемые фильтром {@link app.filters.ClearResourcesFilter}: для каждого rest-метода -
+ * гистограмма времени обработки (и оценки p50/p95/p99 по ней), размер ответов, количество ответов по кодам статуса
+ * и суммарное время этапов обработки ({@link RequestTimings}); а также количество обрабатываемых запросов.
+ * Отдаются методом /metrics в текстовом формате Prometheus ({@link #scrape()}).
+ */
+public final class RequestMetrics {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    /**
+     * метка запросов, не дошедших до rest-метода (статические файлы, неизвестные пути)
+     */
+    public static final String UNMATCHED_ENDPOINT = "unmatched";
+
+    /**
+     * верхние границы интервалов гистограммы времени обработки запроса, в секундах
+     */
+    private static final double[] BUCKETS = {
+            0.0005, 0.001, 0.0025, 0.005, 0.0075, 0.01, 0.025, 0.05, 0.075, 0.1,
+            0.25, 0.5, 0.75, 1, 2.5, 5, 7.5, 10, 30
+    };
+    private static final double[] QUANTILES = {0.5, 0.95, 0.99};
+
+    private static final RequestMetrics INSTANCE = new RequestMetrics();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Map<String, EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+
+    private RequestMetrics() {
+    }
+
+    public static RequestMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    public void requestStarted() {
+        inFlight.incrementAndGet();
+    }
+
+    /**
+     * учёт завершённого запроса (вызывается ровно один раз на каждый {@link #requestStarted()})
+     */
+    public void requestFinished(String endpoint, int status, long durationNanos, long responseBytes, Map<String, Long> phases) {
+        inFlight.decrementAndGet();
+        endpoints.computeIfAbsent(endpoint == null ? UNMATCHED_ENDPOINT : endpoint, name -> new EndpointMetrics())
+                .record(status, durationNanos, responseBytes, phases);
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * все метрики в текстовом формате Prometheus (https://prometheus.io/docs/instrumenting/exposition_formats/)
+     */
+    public String scrape() {
+        StringBuilder sb = new StringBuilder();
+        Map<String, EndpointMetrics> sorted = new TreeMap<>(endpoints);
+
+        header(sb, "mysklad_http_requests_in_flight", "gauge", "Requests being processed");
+        sb.append("mysklad_http_requests_in_flight ").append(inFlight.get()).append('\n');
+
+        header(sb, "mysklad_http_request_duration_seconds", "histogram", "Request processing time");
+        sorted.forEach((endpoint, metrics) -> {
+            long[] counts = metrics.bucketCounts();
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS.length; i++) {
+                cumulative += counts[i];
+                sb.append("mysklad_http_request_duration_seconds_bucket{endpoint=\"").append(escape(endpoint))
+                        .append("\",le=\"").append(format(BUCKETS[i])).append("\"} ").append(cumulative).append('\n');
+            }
+            cumulative += counts[BUCKETS.length];
+            sb.append("mysklad_http_request_duration_seconds_bucket{endpoint=\"").append(escape(endpoint))
+                    .append("\",le=\"+Inf\"} ").append(cumulative).append('\n');
+            sb.append("mysklad_http_request_duration_seconds_sum{endpoint=\"").append(escape(endpoint)).append("\"} ")
+                    .append(format(metrics.durationNanos.sum() / 1e9)).append('\n');
+            sb.append("mysklad_http_request_duration_seconds_count{endpoint=\"").append(escape(endpoint)).append("\"} ")
+                    .append(cumulative).append('\n');
+        });
+
+        header(sb, "mysklad_http_request_duration_quantile_seconds", "gauge", "Request processing time quantiles estimated from the histogram");
+        sorted.forEach((endpoint, metrics) -> {
+            long[] counts = metrics.bucketCounts();
+            for (double quantile : QUANTILES) {
+                sb.append("mysklad_http_request_duration_quantile_seconds{endpoint=\"").append(escape(endpoint))
+                        .append("\",quantile=\"").append(format(quantile)).append("\"} ")
+                        .append(format(metrics.quantile(counts, quantile))).append('\n');
+            }
+        });
+
+        header(sb, "mysklad_http_response_size_bytes", "summary", "Response body size");
+        sorted.forEach((endpoint, metrics) -> {
+            sb.append("mysklad_http_response_size_bytes_sum{endpoint=\"").append(escape(endpoint)).append("\"} ")
+                    .append(metrics.responseBytes.sum()).append('\n');
+            sb.append("mysklad_http_response_size_bytes_count{endpoint=\"").append(escape(endpoint)).append("\"} ")
+                    .append(metrics.responses.sum()).append('\n');
+        });
+
+        header(sb, "mysklad_http_responses_total", "counter", "Responses by status code");
+        sorted.forEach((endpoint, metrics) -> new TreeMap<>(metrics.statuses).forEach((status, count) ->
+                sb.append("mysklad_http_responses_total{endpoint=\"").append(escape(endpoint))
+                        .append("\",status=\"").append(status).append("\"} ").append(count.sum()).append('\n')));
+
+        header(sb, "mysklad_http_request_phase_seconds_total", "counter", "Time spent in request processing phases (db includes fifo)");
+        sorted.forEach((endpoint, metrics) -> new TreeMap<>(metrics.phases).forEach((phase, nanos) ->
+                sb.append("mysklad_http_request_phase_seconds_total{endpoint=\"").append(escape(endpoint))
+                        .append("\",phase=\"").append(phase).append("\"} ").append(format(nanos.sum() / 1e9)).append('\n')));
+
+        return sb.toString();
+    }
+
+    private static void header(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static String format(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+    }
+
+    private static String escape(String labelValue) {
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static final class EndpointMetrics {
+
+        /**
+         * количество запросов в каждом интервале гистограммы; последний элемент - запросы дольше последней границы
+         */
+        private final LongAdder[] buckets = new LongAdder[BUCKETS.length + 1];
+        private final LongAdder durationNanos = new LongAdder();
+        private final LongAdder responses = new LongAdder();
+        private final LongAdder responseBytes = new LongAdder();
+        private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        private final Map<String, LongAdder> phases = new ConcurrentHashMap<>();
+
+        private EndpointMetrics() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        private void record(int status, long nanos, long bytes, Map<String, Long> requestPhases) {
+            double seconds = nanos / 1e9;
+            int bucket = 0;
+            while (bucket < BUCKETS.length && seconds > BUCKETS[bucket]) {
+                bucket++;
+            }
+            buckets[bucket].increment();
+            durationNanos.add(nanos);
+            responses.increment();
+            responseBytes.add(bytes);
+            statuses.computeIfAbsent(status, code -> new LongAdder()).increment();
+            requestPhases.forEach((phase, phaseNanos) -> phases.computeIfAbsent(phase, name -> new LongAdder()).add(phaseNanos));
+        }
+
+        private long[] bucketCounts() {
+            long[] counts = new long[buckets.length];
+            for (int i = 0; i < buckets.length; i++) {
+                counts[i] = buckets[i].sum();
+            }
+            return counts;
+        }
+
+        /**
+         * оценка квантиля линейной интерполяцией внутри интервала гистограммы (как histogram_quantile в Prometheus)
+         */
+        private double quantile(long[] counts, double quantile) {
+            long total = 0;
+            for (long count : counts) {
+                total += count;
+            }
+            if (total == 0) {
+                return Double.NaN;
+            }
+            double rank = quantile * total;
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS.length; i++) {
+                if (cumulative + counts[i] >= rank && counts[i] > 0) {
+                    double lower = i == 0 ? 0 : BUCKETS[i - 1];
+                    return lower + (BUCKETS[i] - lower) * (rank - cumulative) / counts[i];
+                }
+                cumulative += counts[i];
+            }
+            return BUCKETS[BUCKETS.length - 1];
+        }
+    }
+
+}
@@ -0,0 +1,111 @@
+package app.helpers;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Время этапов обработки одного запроса (разбор JSON, ожидание в очереди и работа с БД, расчёт FIFO) для заголовка
+ * Server-Timing и метрик ({@link RequestMetrics}). Создаётся фильтром {@link app.filters.ClearResourcesFilter} и доступен
+ * обработчикам запроса через {@link #current()}; {@link DatabaseExecutor} переносит его в поток, выполняющий работу с БД.
+ * Если метрики отключены (или запрос обрабатывается не через фильтр), текущего объекта нет и время этапов не измеряется.
+ */
+public final class RequestTimings {
+
+    public static final String JSON = "json";
+    public static final String QUEUE = "queue";
+    public static final String DB = "db";
+    public static final String FIFO = "fifo";
+
+    private static final ThreadLocal<RequestTimings> CURRENT = new ThreadLocal<>();
+
+    private final long startNanos = System.nanoTime();
+    /**
+     * суммарное время этапов в наносекундах, в порядке их первого выполнения
+     */
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+    private volatile String endpoint;
+
+    public static RequestTimings current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * делает timings текущим для потока (null - убирает текущий); возвращает предыдущий, чтобы его можно было восстановить
+     */
+    public static RequestTimings attach(RequestTimings timings) {
+        RequestTimings previous = CURRENT.get();
+        if (timings == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(timings);
+        }
+        return previous;
+    }
+
+    /**
+     * выполнение action с добавлением его времени к этапу phase текущего запроса
+     */
+    public static <T> T time(String phase, Supplier<T> action) {
+        RequestTimings timings = CURRENT.get();
+        if (timings == null) {
+            return action.get();
+        }
+        long start = System.nanoTime();
+        try {
+            return action.get();
+        } finally {
+            timings.add(phase, System.nanoTime() - start);
+        }
+    }
+
+    public static void time(String phase, Runnable action) {
+        time(phase, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public synchronized void add(String phase, long nanos) {
+        phases.merge(phase, nanos, Long::sum);
+    }
+
+    public synchronized Map<String, Long> getPhases() {
+        return new LinkedHashMap<>(phases);
+    }
+
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    /**
+     * метод и шаблон пути rest-метода, обработавшего запрос, например GET /api/salesreport/{name}/{date}
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public void setEndpoint(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    /**
+     * значение заголовка Server-Timing: время этапов и общее время с начала обработки запроса в миллисекундах,
+     * например json;dur=0.4, queue;dur=0.1, db;dur=12.5, fifo;dur=9.8, total;dur=13.2 (этап db включает fifo)
+     */
+    public String toServerTiming() {
+        StringBuilder sb = new StringBuilder();
+        getPhases().forEach((phase, nanos) -> appendTiming(sb, phase, nanos));
+        appendTiming(sb, "total", System.nanoTime() - startNanos);
+        return sb.toString();
+    }
+
+    private static void appendTiming(StringBuilder sb, String name, long nanos) {
+        if (sb.length() > 0) {
+            sb.append(", ");
+        }
+        sb.append(name).append(";dur=").append(String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0));
+    }
+
+}
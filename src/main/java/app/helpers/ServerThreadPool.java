@@ -0,0 +1,67 @@
+package app.helpers;
+
+import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Пул потоков Jetty встроенного сервера ({@link app.RunServer}). Очередь задач пула ограничена ({@link Constants#SERVER_QUEUE_SIZE}):
+ * когда все потоки заняты и очередь заполнена, Jetty не копит новые задачи, а сразу закрывает соединение - клиент получает
+ * ошибку без ожидания, а сервер не тратит память и время на запросы, которые всё равно не успеет обработать.
+ * Текущий пул доступен через {@link #getCurrent()} для служебного метода /admin/server; при запуске приложения в другом
+ * контейнере сервлетов (war) пула нет.
+ */
+public final class ServerThreadPool extends QueuedThreadPool {
+
+    private static volatile ServerThreadPool current;
+
+    private final int queueCapacity;
+    private final LongAdder rejected = new LongAdder();
+
+    private ServerThreadPool(int maxThreads, int minThreads, int idleTimeout, int queueCapacity) {
+        super(maxThreads, minThreads, idleTimeout, new BlockingArrayQueue<>(Math.min(minThreads, queueCapacity), minThreads, queueCapacity));
+        this.queueCapacity = queueCapacity;
+        setName("jetty");
+    }
+
+    /**
+     * пул с настройками приложения (server.min_threads, server.max_threads, server.thread_idle_timeout_ms, server.queue_size)
+     */
+    public static ServerThreadPool create() {
+        ServerThreadPool threadPool = new ServerThreadPool(Constants.SERVER_MAX_THREADS, Constants.SERVER_MIN_THREADS,
+                Constants.SERVER_THREAD_IDLE_TIMEOUT_MS, Constants.SERVER_QUEUE_SIZE);
+        current = threadPool;
+        return threadPool;
+    }
+
+    /**
+     * пул последнего созданного сервера или null, если приложение запущено не через {@link app.RunServer}
+     */
+    public static ServerThreadPool getCurrent() {
+        return current;
+    }
+
+    @Override
+    public void execute(Runnable job) {
+        try {
+            super.execute(job);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * количество задач, отклонённых из-за переполнения очереди (соединения закрыты без обработки)
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+}
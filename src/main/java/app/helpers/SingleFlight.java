@@ -0,0 +1,72 @@
+package app.helpers;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Объединение одновременных одинаковых вычислений (single flight): пока вычисление с ключом key выполняется, другие потоки,
+ * запросившие тот же ключ, не запускают его повторно, а ждут и получают тот же результат (или то же исключение).
+ * Результат после завершения вычисления не сохраняется - для этого используется кэш (например, {@link ReportCache}).
+ * В ключ стоит включать всё, от чего зависит результат (например, версию данных), чтобы запрос, пришедший после изменения
+ * данных, не получил результат вычисления, начатого до него.
+ */
+public final class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> calls = new ConcurrentHashMap<>();
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public V execute(K key, Supplier<V> supplier) {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = calls.putIfAbsent(key, call);
+
+        if (inFlight != null) {
+            coalesced.increment();
+            try {
+                return inFlight.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        executions.increment();
+        try {
+            V value = supplier.get();
+            call.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            calls.remove(key, call);
+        }
+    }
+
+    /**
+     * количество выполненных вычислений
+     */
+    public long getExecutions() {
+        return executions.sum();
+    }
+
+    /**
+     * количество запросов, получивших результат вычисления, запущенного другим потоком
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * количество выполняющихся в данный момент вычислений
+     */
+    public int getInFlight() {
+        return calls.size();
+    }
+
+}
@@ -0,0 +1,99 @@
+package app.helpers;
+
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.config.CacheConfiguration;
+import net.sf.ehcache.config.Configuration;
+import net.sf.ehcache.config.ConfigurationFactory;
+import net.sf.ehcache.config.DiskStoreConfiguration;
+import net.sf.ehcache.config.PersistenceConfiguration;
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.ehcache.internal.EhcacheRegionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Фабрика регионов кэша второго уровня, настраивающая ehcache из настроек приложения ({@link AppSettings}):
+ * размер каждого региона в памяти задаётся в байтах (cache.&lt;регион&gt;.max_bytes_heap, например 32m), а не количеством
+ * значений, - так размер кэша не зависит от размера сущностей; время хранения - cache.time_to_live_seconds.
+ * Для регионов закупок и продаж можно включить дисковый уровень (cache.disk_tier.enabled): значения, вытесненные из памяти,
+ * сохраняются во временных файлах и не занимают кучу. Настройки, как и остальные, переопределяются при запуске внешним
+ * файлом или системными свойствами mysklad.cache.*.
+ * Если задан внешний файл конфигурации ehcache (cache.config), он используется как есть, без настроек cache.*.
+ */
+public class SizedEhcacheRegionFactory extends EhcacheRegionFactory {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SizedEhcacheRegionFactory.class);
+
+    /**
+     * регионы с большим количеством значений (история движений товаров), для которых можно включить дисковый уровень
+     */
+    public static final List<String> DISK_TIER_REGIONS = Arrays.asList("purchase_region", "selling_region");
+
+    @Override
+    protected CacheManager resolveCacheManager(SessionFactoryOptions settings, Map properties) {
+        return new CacheManager(configuration());
+    }
+
+    static Configuration configuration() {
+        if (!Constants.CACHE_CONFIG.isEmpty()) {
+            LOGGER.info("Ehcache configuration [{}]", Constants.CACHE_CONFIG);
+            return ConfigurationFactory.parseConfiguration(externalConfiguration(Constants.CACHE_CONFIG));
+        }
+
+        Configuration configuration = ConfigurationFactory.parseConfiguration(SizedEhcacheRegionFactory.class.getResource("/ehcache.xml"));
+
+        regionMaxBytesHeap().forEach((region, maxBytes) -> {
+            CacheConfiguration cache = configuration.getCacheConfigurations().get(region);
+            if (cache == null) {
+                throw new CacheException("Region [" + region + "] is not declared in ehcache.xml");
+            }
+            cache.setMaxBytesLocalHeap(maxBytes);
+            cache.setTimeToLiveSeconds(Constants.CACHE_TIME_TO_LIVE_SECONDS);
+        });
+
+        if (Constants.CACHE_DISK_TIER_ENABLED) {
+            configuration.diskStore(new DiskStoreConfiguration().path(Constants.CACHE_DISK_TIER_PATH));
+            DISK_TIER_REGIONS.forEach(region -> {
+                CacheConfiguration cache = configuration.getCacheConfigurations().get(region);
+                cache.persistence(new PersistenceConfiguration().strategy(PersistenceConfiguration.Strategy.LOCALTEMPSWAP));
+                cache.setMaxBytesLocalDisk(Constants.CACHE_DISK_TIER_MAX_BYTES);
+            });
+        }
+
+        LOGGER.info("Ehcache regions (heap bytes) {}, time to live {} s, disk tier {}", regionMaxBytesHeap(),
+                Constants.CACHE_TIME_TO_LIVE_SECONDS,
+                Constants.CACHE_DISK_TIER_ENABLED ? DISK_TIER_REGIONS + " " + Constants.CACHE_DISK_TIER_MAX_BYTES : "disabled");
+        return configuration;
+    }
+
+    private static Map<String, String> regionMaxBytesHeap() {
+        Map<String, String> regions = new LinkedHashMap<>();
+        regions.put("product_region", Constants.CACHE_PRODUCT_REGION_MAX_BYTES);
+        regions.put("purchase_region", Constants.CACHE_PURCHASE_REGION_MAX_BYTES);
+        regions.put("selling_region", Constants.CACHE_SELLING_REGION_MAX_BYTES);
+        regions.put("productByName_query_region", Constants.CACHE_PRODUCT_BY_NAME_REGION_MAX_BYTES);
+        return regions;
+    }
+
+    /**
+     * файл конфигурации ehcache: путь к файлу или URL
+     */
+    private static URL externalConfiguration(String location) {
+        File file = new File(location);
+        try {
+            return file.isFile() ? file.toURI().toURL() : new URL(location);
+        } catch (MalformedURLException e) {
+            throw new CacheException("Ehcache configuration [" + location + "] is neither a file nor a URL", e);
+        }
+    }
+
+}
@@ -0,0 +1,349 @@
+package app.helpers;
+
+import app.model.response.SlowQueryResponseBody;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Журнал медленных запросов к БД. Источник соединений, через который работает Hibernate ({@link HibernateHelper}),
+ * оборачивается ({@link #wrap(DataSource)}) так, что для каждого запроса JDBC запоминаются текст и значения параметров
+ * и измеряется время работы драйвера - выполнение запроса и чтение строк результата ({@link ResultSet#next()}), а также
+ * количество прочитанных (или изменённых) строк. Обработка строк приложением между чтениями (потоковые отчёты FIFO)
+ * во время запроса не входит.
+ * Запросы дольше {@link Constants#SLOW_QUERY_THRESHOLD_MS} мс записываются в лог и в кольцевой буфер последних
+ * {@link Constants#SLOW_QUERY_LOG_SIZE} запросов (метод /admin/slowqueries); для SELECT к записи добавляется план H2 (EXPLAIN).
+ * При пороге меньше 0 (по умолчанию везде, кроме профиля dev) источник соединений не оборачивается.
+ */
+public final class SlowQueryLog {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SlowQueryLog.class);
+
+    private static final SlowQueryLog INSTANCE = new SlowQueryLog();
+
+    /**
+     * максимальная длина значения параметра в журнале
+     */
+    private static final int MAX_PARAMETER_LENGTH = 200;
+
+    /**
+     * порог может быть изменён во время работы (например, снижен на время поиска причины медленных отчётов)
+     */
+    private volatile long thresholdMs = Constants.SLOW_QUERY_THRESHOLD_MS;
+    private final Deque<SlowQueryResponseBody> queries = new ArrayDeque<>();
+    private final LongAdder slowQueryCount = new LongAdder();
+
+    private SlowQueryLog() {
+    }
+
+    public static SlowQueryLog getInstance() {
+        return INSTANCE;
+    }
+
+    public boolean isEnabled() {
+        return Constants.SLOW_QUERY_THRESHOLD_MS >= 0 && Constants.SLOW_QUERY_LOG_SIZE > 0;
+    }
+
+    /**
+     * источник соединений, измеряющий время запросов; если журнал отключён - сам dataSource
+     */
+    public DataSource wrap(DataSource dataSource) {
+        if (!isEnabled()) {
+            return dataSource;
+        }
+        return proxy(DataSource.class, (proxy, method, args) -> {
+            Object result = invoke(dataSource, method, args);
+            return result instanceof Connection ? proxy(Connection.class, new ConnectionHandler((Connection) result)) : result;
+        });
+    }
+
+    public long getThresholdMs() {
+        return isEnabled() ? thresholdMs : -1;
+    }
+
+    /**
+     * новый порог времени запроса, не меньше {@link Constants#SLOW_QUERY_MIN_THRESHOLD_MS}: при слишком низком пороге
+     * каждый запрос записывался бы в лог и выполнялся повторно для EXPLAIN; действует, только если журнал включён
+     * при запуске приложения
+     */
+    public void setThresholdMs(long thresholdMs) {
+        this.thresholdMs = Math.max(thresholdMs, Constants.SLOW_QUERY_MIN_THRESHOLD_MS);
+    }
+
+    /**
+     * медленные запросы, начиная с последнего
+     */
+    public synchronized List<SlowQueryResponseBody> getQueries() {
+        List<SlowQueryResponseBody> result = new ArrayList<>(queries.size());
+        queries.descendingIterator().forEachRemaining(result::add);
+        return result;
+    }
+
+    public long getSlowQueryCount() {
+        return slowQueryCount.sum();
+    }
+
+    public synchronized void clear() {
+        queries.clear();
+        slowQueryCount.reset();
+    }
+
+    private void record(Execution execution, long durationNanos, Connection connection) {
+        String plan = null;
+        if (execution.sql.trim().regionMatches(true, 0, "select", 0, 6)) {
+            plan = explain(connection, execution.sql, execution.parameters);
+        }
+
+        List<String> parameters = new ArrayList<>(execution.parameters.size());
+        execution.parameters.values().forEach(value -> parameters.add(format(value)));
+
+        SlowQueryResponseBody slowQuery = SlowQueryResponseBody.builder()
+                .timestamp(Instant.now().toString())
+                .thread(Thread.currentThread().getName())
+                .sql(execution.sql)
+                .parameters(parameters)
+                .durationMs(durationNanos / 1_000_000.0)
+                .executionMs(execution.executionNanos / 1_000_000.0)
+                .rows(execution.rows)
+                .plan(plan)
+                .build();
+
+        LOGGER.warn("Slow query: {} ms, {} rows: {} {}{}", String.format(Locale.ROOT, "%.1f", slowQuery.getDurationMs()),
+                execution.rows, execution.sql, parameters, plan == null ? "" : "\n" + plan);
+
+        slowQueryCount.increment();
+        synchronized (this) {
+            if (queries.size() == Constants.SLOW_QUERY_LOG_SIZE) {
+                queries.removeFirst();
+            }
+            queries.addLast(slowQuery);
+        }
+    }
+
+    /**
+     * план запроса H2 с теми же значениями параметров; выполняется в том же соединении (и транзакции), что и сам запрос
+     */
+    private static String explain(Connection connection, String sql, Map<Integer, Object> parameters) {
+        try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+            for (Map.Entry<Integer, Object> parameter : parameters.entrySet()) {
+                statement.setObject(parameter.getKey(), parameter.getValue());
+            }
+            try (ResultSet plan = statement.executeQuery()) {
+                return plan.next() ? plan.getString(1) : null;
+            }
+        } catch (SQLException e) {
+            return "EXPLAIN failed: " + e.getMessage();
+        }
+    }
+
+    private static String format(Object value) {
+        if (value instanceof byte[]) {
+            return "<" + ((byte[]) value).length + " bytes>";
+        }
+        String text = String.valueOf(value);
+        return text.length() > MAX_PARAMETER_LENGTH ? text.substring(0, MAX_PARAMETER_LENGTH) + "..." : text;
+    }
+
+    /**
+     * обёртка объекта JDBC, вызывающая handler; обёртка равна только самой себе (Hibernate хранит запросы и результаты в HashMap)
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(SlowQueryLog.class.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if ("equals".equals(method.getName()) && method.getDeclaringClass() == Object.class) {
+                return proxy == args[0];
+            }
+            if ("hashCode".equals(method.getName()) && method.getDeclaringClass() == Object.class) {
+                return System.identityHashCode(proxy);
+            }
+            return handler.invoke(proxy, method, args);
+        });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * одно выполнение запроса: завершается закрытием результата (или запроса), для изменений - сразу после выполнения
+     */
+    private static final class Execution {
+
+        private final String sql;
+        private final Map<Integer, Object> parameters;
+        private final long executionNanos;
+        /**
+         * время в {@link ResultSet#next()}: при ленивом выполнении запроса H2 (LAZY_QUERY_EXECUTION) строки ищутся при чтении
+         */
+        private long fetchNanos;
+        private long rows;
+        private boolean finished;
+
+        private Execution(String sql, Map<Integer, Object> parameters, long executionNanos) {
+            this.sql = sql;
+            this.parameters = parameters;
+            this.executionNanos = executionNanos;
+        }
+    }
+
+    private final class ConnectionHandler implements InvocationHandler {
+
+        private final Connection connection;
+
+        private ConnectionHandler(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = SlowQueryLog.invoke(connection, method, args);
+            if (result instanceof PreparedStatement) {
+                /**
+                 * prepareStatement(sql, ...) и prepareCall(sql, ...): текст запроса - первый аргумент
+                 */
+                Class<? extends PreparedStatement> type = result instanceof CallableStatement ? CallableStatement.class : PreparedStatement.class;
+                return SlowQueryLog.proxy(type, new StatementHandler((Statement) result, (String) args[0], connection, (Connection) proxy));
+            }
+            if (result instanceof Statement) {
+                return SlowQueryLog.proxy(Statement.class, new StatementHandler((Statement) result, null, connection, (Connection) proxy));
+            }
+            return result;
+        }
+    }
+
+    private final class StatementHandler implements InvocationHandler {
+
+        private final Statement statement;
+        private final String sql;
+        private final Connection connection;
+        private final Connection connectionProxy;
+        /**
+         * текущие значения параметров по номеру (PreparedStatement.setXxx(номер, значение, ...))
+         */
+        private final Map<Integer, Object> parameters = new TreeMap<>();
+        private Execution execution;
+
+        private StatementHandler(Statement statement, String sql, Connection connection, Connection connectionProxy) {
+            this.statement = statement;
+            this.sql = sql;
+            this.connection = connection;
+            this.connectionProxy = connectionProxy;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                parameters.put((Integer) args[0], "setNull".equals(name) ? null : args[1]);
+            } else if ("clearParameters".equals(name)) {
+                parameters.clear();
+            } else if (name.startsWith("execute")) {
+                finish(execution);
+                String executedSql = sql != null ? sql : (args != null && args.length > 0 ? (String) args[0] : null);
+                long start = System.nanoTime();
+                Object result = SlowQueryLog.invoke(statement, method, args);
+                Execution current = new Execution(executedSql, new TreeMap<>(parameters), System.nanoTime() - start);
+
+                if (result instanceof ResultSet) {
+                    execution = current;
+                    return resultSet((ResultSet) result, proxy, current);
+                }
+                if (result instanceof Boolean && (Boolean) result) {
+                    /**
+                     * execute() с результатом: строки считаются в getResultSet()
+                     */
+                    execution = current;
+                    return result;
+                }
+                current.rows = updatedRows(result);
+                execution = current;
+                finish(current);
+                return result;
+            } else if ("getResultSet".equals(name)) {
+                Object result = SlowQueryLog.invoke(statement, method, args);
+                return result instanceof ResultSet && execution != null ? resultSet((ResultSet) result, proxy, execution) : result;
+            } else if ("getConnection".equals(name)) {
+                return connectionProxy;
+            } else if ("close".equals(name)) {
+                finish(execution);
+            }
+            return SlowQueryLog.invoke(statement, method, args);
+        }
+
+        private ResultSet resultSet(ResultSet resultSet, Object statementProxy, Execution current) {
+            return SlowQueryLog.proxy(ResultSet.class, (proxy, method, args) -> {
+                String name = method.getName();
+                if ("getStatement".equals(name)) {
+                    return statementProxy;
+                }
+                if ("close".equals(name)) {
+                    finish(current);
+                }
+                if (!"next".equals(name)) {
+                    return SlowQueryLog.invoke(resultSet, method, args);
+                }
+                long start = System.nanoTime();
+                Object result = SlowQueryLog.invoke(resultSet, method, args);
+                current.fetchNanos += System.nanoTime() - start;
+                if (Boolean.TRUE.equals(result)) {
+                    current.rows++;
+                }
+                return result;
+            });
+        }
+
+        private void finish(Execution current) {
+            if (current == null || current.finished || current.sql == null) {
+                return;
+            }
+            current.finished = true;
+            long durationNanos = current.executionNanos + current.fetchNanos;
+            if (durationNanos >= thresholdMs * 1_000_000L) {
+                record(current, durationNanos, connection);
+            }
+        }
+
+        private long updatedRows(Object result) {
+            if (result instanceof Number) {
+                return ((Number) result).longValue();
+            }
+            long rows = 0;
+            if (result instanceof int[]) {
+                for (int count : (int[]) result) {
+                    rows += Math.max(count, 0);
+                }
+            } else if (result instanceof long[]) {
+                for (long count : (long[]) result) {
+                    rows += Math.max(count, 0);
+                }
+            }
+            return rows;
+        }
+    }
+
+}
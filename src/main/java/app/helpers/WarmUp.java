@@ -0,0 +1,209 @@
+package app.helpers;
+
+import app.model.Product;
+import app.model.Purchase;
+import app.model.Selling;
+import app.model.response.WarmUpResponseBody;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Прогрев приложения при запуске встроенного сервера (warmup.enabled=true, см. {@link app.RunServer}): после перезапуска
+ * первые запросы попадают в пустые кэши второго уровня и в ещё не скомпилированный JIT код.
+ * До запуска сервера в кэш загружаются все товары (product_region), кэш запросов по названию товара (productByName_query_region)
+ * и закупки/продажи товаров в наличии за последние {@link Constants#WARMUP_RECENT_DAYS} дней (purchase_region, selling_region);
+ * после запуска выполняются {@link Constants#WARMUP_REQUESTS} запросов отчётов о прибыли через HTTP (Jersey, Jackson, расчёт FIFO).
+ * Пока прогрев не завершён, метод /admin/ready отвечает 503. Прогревочные запросы учитываются в метриках HTTP-запросов.
+ * Ошибки прогрева записываются в лог и не мешают запуску приложения.
+ */
+public final class WarmUp {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WarmUp.class);
+
+    private static final WarmUp INSTANCE = new WarmUp();
+
+    /**
+     * без прогрева (например, при развёртывании .war архива в контейнере сервлетов) приложение готово сразу
+     */
+    private volatile boolean ready = true;
+    private volatile long products;
+    private volatile long purchases;
+    private volatile long sellings;
+    private volatile long requests;
+    private volatile long durationMs;
+
+    private WarmUp() {
+    }
+
+    public static WarmUp getInstance() {
+        return INSTANCE;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public WarmUpResponseBody getStats() {
+        return WarmUpResponseBody.builder()
+                .ready(ready)
+                .warmUpEnabled(Constants.WARMUP_ENABLED)
+                .products(products)
+                .purchases(purchases)
+                .sellings(sellings)
+                .requests(requests)
+                .durationMs(durationMs)
+                .build();
+    }
+
+    /**
+     * прогрев кэшей, запуск сервера и прогревочные запросы к нему; приложение считается готовым после завершения прогрева
+     */
+    public void run(Server server) throws Exception {
+        ready = false;
+        long start = System.nanoTime();
+        try {
+            List<String> productNames = loadCaches();
+            server.start();
+            sendRequests("http://localhost:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort() + "/app", productNames);
+        } finally {
+            durationMs = (System.nanoTime() - start) / 1_000_000;
+            ready = true;
+        }
+        LOGGER.info("Warm-up finished in {} ms: {} products, {} purchases, {} sellings, {} requests",
+                durationMs, products, purchases, sellings, requests);
+    }
+
+    /**
+     * загрузка товаров и движений товаров за последние дни в кэш второго уровня; возвращает названия товаров
+     */
+    private List<String> loadCaches() {
+        Transaction transaction = null;
+        try (Session session = HibernateHelper.getInstance().getFactory().openSession()) {
+            /**
+             * значения только записываются в кэш (в том числе заменяют устаревшие), но не читаются из него
+             */
+            session.setCacheMode(CacheMode.PUT);
+            transaction = session.beginTransaction();
+
+            List<String> productNames = session.createQuery("select p.name from Product p order by p.name", String.class)
+                    .list();
+            /**
+             * запрос должен совпадать с запросом rest-методов, иначе значения попадут в другие записи кэша запросов
+             */
+            for (String name : productNames) {
+                session.createQuery("from Product p where p.name=:product_name", Product.class)
+                        .setParameter("product_name", name)
+                        .setCacheable(true)
+                        .setCacheRegion("productByName_query_region")
+                        .uniqueResult();
+            }
+            products = productNames.size();
+            session.clear();
+
+            LocalDate from = LocalDate.now().minusDays(Constants.WARMUP_RECENT_DAYS);
+            purchases = load(session, session.createQuery("from Purchase p where p.purchaseDate >= :from and p.product.count > 0", Purchase.class)
+                    .setParameter("from", from)
+                    .setFetchSize(Constants.REPORT_FETCH_SIZE)
+                    .stream());
+            sellings = load(session, session.createQuery("from Selling s where s.sellingDate >= :from and s.product.count > 0", Selling.class)
+                    .setParameter("from", from)
+                    .setFetchSize(Constants.REPORT_FETCH_SIZE)
+                    .stream());
+
+            transaction.commit();
+            return productNames;
+        } catch (Exception e) {
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+            LOGGER.warn("Second-level cache warm-up failed", e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * сущности попадают в кэш при чтении; контекст сессии очищается порциями, чтобы не держать в памяти все строки
+     */
+    private static long load(Session session, Stream<?> rows) {
+        long count = 0;
+        try (Stream<?> stream = rows) {
+            Iterator<?> iterator = stream.iterator();
+            while (iterator.hasNext()) {
+                iterator.next();
+                if (++count % Constants.REPORT_FETCH_SIZE == 0) {
+                    session.clear();
+                }
+            }
+        }
+        session.clear();
+        return count;
+    }
+
+    /**
+     * отчёты о прибыли за сегодня и за последние дни по товарам по очереди; без товаров - список rest-методов
+     */
+    private void sendRequests(String baseUrl, List<String> productNames) {
+        LocalDate today = LocalDate.now();
+        LocalDate from = today.minusDays(Constants.WARMUP_RECENT_DAYS);
+        for (int i = 0; i < Constants.WARMUP_REQUESTS; i++) {
+            String url;
+            if (productNames.isEmpty()) {
+                url = baseUrl + "/api";
+            } else {
+                String name = pathSegment(productNames.get(i % productNames.size()));
+                url = i % 2 == 0
+                        ? baseUrl + "/api/salesreport/" + name + "/" + today
+                        : baseUrl + "/api/salesreport/" + name + "/" + from + "/" + today;
+            }
+            try {
+                get(url);
+                requests = i + 1;
+            } catch (IOException e) {
+                LOGGER.warn("Warm-up request [{}] failed: {}", url, e.toString());
+                return;
+            }
+        }
+    }
+
+    private static void get(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        int status = connection.getResponseCode();
+        InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        if (body != null) {
+            try (InputStream in = body) {
+                byte[] buffer = new byte[4096];
+                while (in.read(buffer) >= 0) {
+                    /**
+                     * тело ответа дочитывается, чтобы соединение вернулось в пул keep-alive
+                     */
+                }
+            }
+        }
+    }
+
+    private static String pathSegment(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8").replace("+", "%20");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,88 @@
+package app.model;
+
+import app.helpers.Constants;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.Check;
+
+import javax.persistence.*;
+import java.time.LocalDate;
+
+/**
+ * Итоги движений товара за день: закупки и продажи, сгруппированные по дате.
+ * Обновляются при каждой закупке/продаже (см. {@link app.helpers.FifoLedgerHelper}), поэтому расчёт FIFO и отчёты
+ * за период читают одну строку на день, а не каждое движение товара.
+ */
+@Entity
+@Table(name = "daily_movement",
+        uniqueConstraints = @UniqueConstraint(name = "daily_movement_product_date_uk", columnNames = {"product_id", "movement_date"})
+)
+@Check(constraints = "purchased_count >= 0 AND sold_count >= 0")
+public class DailyMovement {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "daily_movement_seq")
+    @SequenceGenerator(name = "daily_movement_seq", sequenceName = "daily_movement_seq", allocationSize = Constants.ID_ALLOCATION_SIZE)
+    @Column(name = "daily_movement_id")
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "product_id", nullable = false)
+    @Getter
+    @Setter
+    private Product product;
+
+    @Column(name = "movement_date", nullable = false)
+    @Getter
+    @Setter
+    private LocalDate movementDate;
+
+    /**
+     * количество закупленного за день товара
+     */
+    @Column(name = "purchased_count", nullable = false)
+    @Getter
+    @Setter
+    private long purchasedCount;
+
+    /**
+     * сумма закупок за день
+     */
+    @Column(name = "purchased_cost", nullable = false)
+    @Getter
+    @Setter
+    private double purchasedCost;
+
+    /**
+     * количество закупок за день
+     */
+    @Column(name = "purchase_movements", nullable = false)
+    @Getter
+    @Setter
+    private int purchaseMovements;
+
+    /**
+     * количество проданного за день товара
+     */
+    @Column(name = "sold_count", nullable = false)
+    @Getter
+    @Setter
+    private long soldCount;
+
+    /**
+     * выручка за день
+     */
+    @Column(name = "revenue", nullable = false)
+    @Getter
+    @Setter
+    private double revenue;
+
+    /**
+     * количество продаж за день
+     */
+    @Column(name = "selling_movements", nullable = false)
+    @Getter
+    @Setter
+    private int sellingMovements;
+
+}
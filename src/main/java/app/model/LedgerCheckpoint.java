@@ -0,0 +1,82 @@
+package app.model;
+
+import app.helpers.Constants;
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.time.LocalDate;
+
+/**
+ * Снимок FIFO-состояния товара на конец дня checkpointDate (учтены все движения с датой <= checkpointDate).
+ * Позволяет строить отчёт на прошедшую дату, начиная с ближайшего предшествующего снимка, а не с самой первой закупки.
+ * Позиция в очереди слоёв себестоимости задаётся последним слоем (закупкой), с которого списывался товар:
+ * layerId/layerDate и количеством списанных с него единиц layerConsumedCount.
+ */
+@Entity
+@Table(name = "ledger_checkpoint",
+        uniqueConstraints = @UniqueConstraint(name = "ledger_checkpoint_product_date_uk", columnNames = {"product_id", "checkpoint_date"})
+)
+public class LedgerCheckpoint {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ledger_checkpoint_seq")
+    @SequenceGenerator(name = "ledger_checkpoint_seq", sequenceName = "ledger_checkpoint_seq", allocationSize = Constants.ID_ALLOCATION_SIZE)
+    @Column(name = "checkpoint_id")
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "product_id", nullable = false)
+    @Getter
+    @Setter
+    private Product product;
+
+    @Column(name = "checkpoint_date", nullable = false)
+    @Getter
+    @Setter
+    private LocalDate checkpointDate;
+
+    @Column(name = "purchased_count", nullable = false)
+    @Getter
+    @Setter
+    private long purchasedCount;
+
+    @Column(name = "sold_count", nullable = false)
+    @Getter
+    @Setter
+    private long soldCount;
+
+    @Column(name = "consumed_count", nullable = false)
+    @Getter
+    @Setter
+    private long consumedCount;
+
+    @Column(name = "revenue", nullable = false)
+    @Getter
+    @Setter
+    private double revenue;
+
+    @Column(name = "cost_of_goods_sold", nullable = false)
+    @Getter
+    @Setter
+    private double costOfGoodsSold;
+
+    /**
+     * id последней закупки, с которой списывался товар (null - списаний ещё не было)
+     */
+    @Column(name = "layer_id")
+    @Getter
+    @Setter
+    private Long layerId;
+
+    @Column(name = "layer_date")
+    @Getter
+    @Setter
+    private LocalDate layerDate;
+
+    @Column(name = "layer_consumed_count", nullable = false)
+    @Getter
+    @Setter
+    private int layerConsumedCount;
+
+}
@@ -1,5 +1,7 @@
 package app.model;
 
+import app.helpers.Constants;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
 import lombok.Getter;
@@ -32,9 +34,13 @@ import java.util.Set;
 @org.hibernate.annotations.Cache(region = "product_region", usage = CacheConcurrencyStrategy.TRANSACTIONAL)
 public class Product {
 
+    @ApiModelProperty(hidden = true)
+    @JsonIgnore
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_seq")
+    @SequenceGenerator(name = "product_seq", sequenceName = "product_seq", allocationSize = Constants.ID_ALLOCATION_SIZE)
     @Column(name = "product_id")
+    @Getter
     private Long id;
 
     @ApiModelProperty(value = "Имя товара(уникальное значение)", required = true)
@@ -0,0 +1,131 @@
+package app.model;
+
+import app.helpers.Constants;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.Check;
+
+import javax.persistence.*;
+import java.time.LocalDate;
+
+/**
+ * Накопительный FIFO-журнал товара.
+ * Обновляется при каждой закупке/продаже (см. {@link app.helpers.FifoLedgerHelper}), поэтому отчёт о прибыли
+ * на дату, не меньшую даты последнего движения товара, не требует повторного прохода по всем закупкам:
+ * прибыль = revenue - costOfGoodsSold.
+ * Остаток по каждому слою себестоимости (закупке) хранится в поле {@link Purchase#getRemainingCount()}.
+ */
+@Entity
+@Table(name = "product_ledger")
+@Check(constraints = "purchased_count >= 0 AND sold_count >= 0 AND consumed_count >= 0")
+public class ProductLedger {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_ledger_seq")
+    @SequenceGenerator(name = "product_ledger_seq", sequenceName = "product_ledger_seq", allocationSize = Constants.ID_ALLOCATION_SIZE)
+    @Column(name = "ledger_id")
+    private Long id;
+
+    @OneToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "product_id", unique = true, nullable = false)
+    @Getter
+    @Setter
+    private Product product;
+
+    /**
+     * общее количество закупленного товара
+     */
+    @Column(name = "purchased_count", nullable = false)
+    @Getter
+    @Setter
+    private long purchasedCount;
+
+    /**
+     * общее количество проданного товара
+     */
+    @Column(name = "sold_count", nullable = false)
+    @Getter
+    @Setter
+    private long soldCount;
+
+    /**
+     * количество единиц товара, списанных со слоёв себестоимости (min(purchasedCount, soldCount))
+     */
+    @Column(name = "consumed_count", nullable = false)
+    @Getter
+    @Setter
+    private long consumedCount;
+
+    /**
+     * выручка по всем продажам
+     */
+    @Column(name = "revenue", nullable = false)
+    @Getter
+    @Setter
+    private double revenue;
+
+    /**
+     * себестоимость списанных (consumedCount) единиц товара
+     */
+    @Column(name = "cost_of_goods_sold", nullable = false)
+    @Getter
+    @Setter
+    private double costOfGoodsSold;
+
+    /**
+     * дата самого позднего движения (закупки или продажи) товара
+     */
+    @Column(name = "last_movement_date")
+    @Getter
+    @Setter
+    private LocalDate lastMovementDate;
+
+    /**
+     * "водяной знак" очереди FIFO: последний слой (закупка), с которого списывался товар.
+     * Все слои, стоящие в очереди перед ним, списаны полностью, поэтому списание и расчёт отчётов начинаются с него,
+     * а не с самой первой закупки. При закупке "задним числом" перед ним водяной знак переносится на новую закупку.
+     * null - списаний ещё не было
+     */
+    @Column(name = "watermark_layer_id")
+    @Getter
+    @Setter
+    private Long watermarkLayerId;
+
+    @Column(name = "watermark_layer_date")
+    @Getter
+    @Setter
+    private LocalDate watermarkLayerDate;
+
+    /**
+     * количество единиц товара в слоях, стоящих в очереди перед водяным знаком
+     */
+    @Column(name = "watermark_consumed_count", nullable = false)
+    @Getter
+    @Setter
+    private long watermarkConsumedCount;
+
+    /**
+     * себестоимость единиц товара в слоях, стоящих в очереди перед водяным знаком
+     */
+    @Column(name = "watermark_cost_of_goods_sold", nullable = false)
+    @Getter
+    @Setter
+    private double watermarkCostOfGoodsSold;
+
+    /**
+     * дата последнего снимка FIFO-состояния ({@link LedgerCheckpoint}) товара
+     */
+    @Column(name = "last_checkpoint_date")
+    @Getter
+    @Setter
+    private LocalDate lastCheckpointDate;
+
+    /**
+     * количество движений товара, учтённых после последнего снимка
+     */
+    @Column(name = "movements_since_checkpoint", nullable = false)
+    @Getter
+    @Setter
+    private int movementsSinceCheckpoint;
+
+}
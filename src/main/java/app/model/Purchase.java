@@ -1,6 +1,8 @@
 package app.model;
 
 
+import app.helpers.Constants;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.fasterxml.jackson.datatype.jsr310.deser.LocalDateDeserializer;
@@ -32,17 +34,27 @@ import java.time.LocalDate;
 )
 
 @Entity
+/**
+ * все запросы по закупкам (расчёт FIFO, отчёты) выбирают закупки одного товара в диапазоне дат,
+ * поэтому основной индекс - составной (product_id, purchase_date, purchase_id): его порядок совпадает с очередью FIFO,
+ * и H2 выдаёт слои себестоимости по индексу, без сортировки всего результата (запросы слоёв упорядочены по p.product, p.purchaseDate, p.id)
+ */
 @Table(name = "purchase", indexes = {
-        @Index(name = "purchase_date_idx", columnList = "purchase_date")
+        @Index(name = "purchase_date_idx", columnList = "purchase_date"),
+        @Index(name = "purchase_product_fifo_idx", columnList = "product_id, purchase_date, purchase_id")
 })
-@Check(constraints = "product_count > 0 AND product_price >= 0")
+@Check(constraints = "product_count > 0 AND product_price >= 0 AND remaining_count >= 0 AND remaining_count <= product_count")
 @Cacheable
 @org.hibernate.annotations.Cache(region = "purchase_region", usage = CacheConcurrencyStrategy.TRANSACTIONAL)
 public class Purchase {
 
+    @ApiModelProperty(hidden = true)
+    @JsonIgnore
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "purchase_seq")
+    @SequenceGenerator(name = "purchase_seq", sequenceName = "purchase_seq", allocationSize = Constants.ID_ALLOCATION_SIZE)
     @Column(name = "purchase_id")
+    @Getter
     private Long id;
 
     @ApiModelProperty(value = "Количество закупаемого товара", required = true)
@@ -67,6 +79,16 @@ public class Purchase {
     @Setter
     private LocalDate purchaseDate;
 
+    /**
+     * количество единиц товара из данной закупки (слоя себестоимости), ещё не списанных по методу FIFO
+     */
+    @ApiModelProperty(hidden = true)
+    @JsonIgnore
+    @Column(name = "remaining_count", nullable = false)
+    @Getter
+    @Setter
+    private int remainingCount;
+
     @ApiModelProperty(value = "Ссылка на объект товара", required = true)
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "product_id")
@@ -1,5 +1,6 @@
 package app.model;
 
+import app.helpers.Constants;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.fasterxml.jackson.datatype.jsr310.deser.LocalDateDeserializer;
@@ -25,8 +26,12 @@ import java.time.LocalDate;
         }
 )
 @Entity
+/**
+ * продажи, как и закупки, выбираются по товару и диапазону дат - см. индекс selling_product_date_idx
+ */
 @Table(name = "selling", indexes = {
-        @Index(name = "selling_date_idx", columnList = "selling_date")
+        @Index(name = "selling_date_idx", columnList = "selling_date"),
+        @Index(name = "selling_product_date_idx", columnList = "product_id, selling_date")
 })
 @Check(constraints = "product_count > 0 AND product_price >= 0")
 @Cacheable
@@ -34,7 +39,8 @@ import java.time.LocalDate;
 public class Selling {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "selling_seq")
+    @SequenceGenerator(name = "selling_seq", sequenceName = "selling_seq", allocationSize = Constants.ID_ALLOCATION_SIZE)
     @Column(name = "selling_id")
     private Long id;
 
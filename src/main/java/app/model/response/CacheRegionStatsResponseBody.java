@@ -0,0 +1,120 @@
+package app.model.response;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.*;
+
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "Состояние региона кэша второго уровня (ehcache)")
+public class CacheRegionStatsResponseBody {
+
+    @ApiModelProperty(value = "Название региона", required = true)
+    @Getter
+    @Setter
+    private String regionName;
+
+    @ApiModelProperty(value = "Количество попаданий в кэш (статистика Hibernate)", required = true)
+    @Getter
+    @Setter
+    private long hitCount;
+
+    @ApiModelProperty(value = "Количество промахов кэша (статистика Hibernate)", required = true)
+    @Getter
+    @Setter
+    private long missCount;
+
+    @ApiModelProperty(value = "Количество записей в кэш (статистика Hibernate)", required = true)
+    @Getter
+    @Setter
+    private long putCount;
+
+    @ApiModelProperty(value = "Доля попаданий среди обращений к кэшу (0 - обращений не было)", required = true)
+    @Getter
+    @Setter
+    private double hitRatio;
+
+    @ApiModelProperty(value = "Количество значений в памяти (ehcache)", required = true)
+    @Getter
+    @Setter
+    private long elementsInMemory;
+
+    @ApiModelProperty(value = "Максимальное количество значений в регионе (maxEntriesLocalHeap, 0 - без ограничения)", required = true)
+    @Getter
+    @Setter
+    private long maxElementsInMemory;
+
+    @ApiModelProperty(value = "Максимальный размер региона в памяти в байтах (maxBytesLocalHeap, 0 - ограничено количеством значений)", required = true)
+    @Getter
+    @Setter
+    private long maxBytesLocalHeap;
+
+    @ApiModelProperty(value = "Размер значений региона в памяти в байтах (ehcache)", required = true)
+    @Getter
+    @Setter
+    private long heapSizeBytes;
+
+    @ApiModelProperty(value = "Количество значений на диске (0 - дисковый уровень отключён)", required = true)
+    @Getter
+    @Setter
+    private long elementsOnDisk;
+
+    @ApiModelProperty(value = "Максимальный размер региона на диске в байтах (maxBytesLocalDisk)", required = true)
+    @Getter
+    @Setter
+    private long maxBytesLocalDisk;
+
+    @ApiModelProperty(value = "Количество значений, вытесненных из-за ограничения размера, с запуска приложения (ehcache)", required = true)
+    @Getter
+    @Setter
+    private long evictionCount;
+
+    @ApiModelProperty(value = "Количество значений, удалённых по истечении срока хранения, с запуска приложения (ehcache)", required = true)
+    @Getter
+    @Setter
+    private long expiredCount;
+
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        CacheRegionStatsResponseBody that = (CacheRegionStatsResponseBody) o;
+
+        if (getHitCount() != that.getHitCount()) return false;
+        if (getMissCount() != that.getMissCount()) return false;
+        if (getPutCount() != that.getPutCount()) return false;
+        if (getElementsInMemory() != that.getElementsInMemory()) return false;
+        if (getMaxElementsInMemory() != that.getMaxElementsInMemory()) return false;
+        if (getMaxBytesLocalHeap() != that.getMaxBytesLocalHeap()) return false;
+        if (getHeapSizeBytes() != that.getHeapSizeBytes()) return false;
+        if (getElementsOnDisk() != that.getElementsOnDisk()) return false;
+        if (getMaxBytesLocalDisk() != that.getMaxBytesLocalDisk()) return false;
+        if (getEvictionCount() != that.getEvictionCount()) return false;
+        if (getExpiredCount() != that.getExpiredCount()) return false;
+        if (Double.compare(that.getHitRatio(), getHitRatio()) != 0) return false;
+        return getRegionName() != null ? getRegionName().equals(that.getRegionName()) : that.getRegionName() == null;
+    }
+
+    @Override
+    public int hashCode() {
+        long temp;
+        int result = getRegionName() != null ? getRegionName().hashCode() : 0;
+        result = 31 * result + (int) (getHitCount() ^ (getHitCount() >>> 32));
+        result = 31 * result + (int) (getMissCount() ^ (getMissCount() >>> 32));
+        result = 31 * result + (int) (getPutCount() ^ (getPutCount() >>> 32));
+        temp = Double.doubleToLongBits(getHitRatio());
+        result = 31 * result + (int) (temp ^ (temp >>> 32));
+        result = 31 * result + (int) (getElementsInMemory() ^ (getElementsInMemory() >>> 32));
+        result = 31 * result + (int) (getMaxElementsInMemory() ^ (getMaxElementsInMemory() >>> 32));
+        result = 31 * result + (int) (getMaxBytesLocalHeap() ^ (getMaxBytesLocalHeap() >>> 32));
+        result = 31 * result + (int) (getHeapSizeBytes() ^ (getHeapSizeBytes() >>> 32));
+        result = 31 * result + (int) (getElementsOnDisk() ^ (getElementsOnDisk() >>> 32));
+        result = 31 * result + (int) (getMaxBytesLocalDisk() ^ (getMaxBytesLocalDisk() >>> 32));
+        result = 31 * result + (int) (getEvictionCount() ^ (getEvictionCount() >>> 32));
+        result = 31 * result + (int) (getExpiredCount() ^ (getExpiredCount() >>> 32));
+        return result;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,69 @@
+package app.model.response;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.*;
+
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "Состояние пула соединений с БД")
+public class ConnectionPoolStatsResponseBody {
+
+    @ApiModelProperty(value = "Название пула", required = true)
+    @Getter
+    @Setter
+    private String poolName;
+
+    @ApiModelProperty(value = "Количество соединений, занятых запросами", required = true)
+    @Getter
+    @Setter
+    private int activeConnections;
+
+    @ApiModelProperty(value = "Количество свободных соединений", required = true)
+    @Getter
+    @Setter
+    private int idleConnections;
+
+    @ApiModelProperty(value = "Общее количество открытых соединений", required = true)
+    @Getter
+    @Setter
+    private int totalConnections;
+
+    @ApiModelProperty(value = "Количество потоков, ожидающих свободное соединение", required = true)
+    @Getter
+    @Setter
+    private int threadsAwaitingConnection;
+
+    @ApiModelProperty(value = "Максимальный размер пула", required = true)
+    @Getter
+    @Setter
+    private int maximumPoolSize;
+
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        ConnectionPoolStatsResponseBody that = (ConnectionPoolStatsResponseBody) o;
+
+        if (getActiveConnections() != that.getActiveConnections()) return false;
+        if (getIdleConnections() != that.getIdleConnections()) return false;
+        if (getTotalConnections() != that.getTotalConnections()) return false;
+        if (getThreadsAwaitingConnection() != that.getThreadsAwaitingConnection()) return false;
+        if (getMaximumPoolSize() != that.getMaximumPoolSize()) return false;
+        return getPoolName() != null ? getPoolName().equals(that.getPoolName()) : that.getPoolName() == null;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = getPoolName() != null ? getPoolName().hashCode() : 0;
+        result = 31 * result + getActiveConnections();
+        result = 31 * result + getIdleConnections();
+        result = 31 * result + getTotalConnections();
+        result = 31 * result + getThreadsAwaitingConnection();
+        result = 31 * result + getMaximumPoolSize();
+        return result;
+    }
+}
@@ -0,0 +1,90 @@
+package app.model.response;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.*;
+
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "Состояние пула потоков, выполняющих запросы к БД")
+public class DatabaseExecutorStatsResponseBody {
+
+    @ApiModelProperty(value = "Запросы выполняются на виртуальных потоках", required = true)
+    @Getter
+    @Setter
+    private boolean virtualThreads;
+
+    @ApiModelProperty(value = "Количество потоков (для виртуальных потоков - по потоку на выполняющийся запрос)", required = true)
+    @Getter
+    @Setter
+    private int threads;
+
+    @ApiModelProperty(value = "Количество потоков, выполняющих запросы", required = true)
+    @Getter
+    @Setter
+    private int activeThreads;
+
+    @ApiModelProperty(value = "Количество запросов, ожидающих в очереди", required = true)
+    @Getter
+    @Setter
+    private int queueSize;
+
+    @ApiModelProperty(value = "Максимальная длина очереди", required = true)
+    @Getter
+    @Setter
+    private int queueCapacity;
+
+    @ApiModelProperty(value = "Количество запросов, одновременно работающих с БД (размер пула соединений)", required = true)
+    @Getter
+    @Setter
+    private int connectionPermits;
+
+    @ApiModelProperty(value = "Количество запросов, ожидающих разрешения на работу с БД (свободного соединения)", required = true)
+    @Getter
+    @Setter
+    private int connectionWaiters;
+
+    @ApiModelProperty(value = "Количество запросов, отклонённых из-за переполнения очереди (ответ 503)", required = true)
+    @Getter
+    @Setter
+    private long rejectedRequests;
+
+    @ApiModelProperty(value = "Количество запросов, завершённых по таймауту (ответ 503)", required = true)
+    @Getter
+    @Setter
+    private long timedOutRequests;
+
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        DatabaseExecutorStatsResponseBody that = (DatabaseExecutorStatsResponseBody) o;
+
+        if (isVirtualThreads() != that.isVirtualThreads()) return false;
+        if (getThreads() != that.getThreads()) return false;
+        if (getActiveThreads() != that.getActiveThreads()) return false;
+        if (getQueueSize() != that.getQueueSize()) return false;
+        if (getQueueCapacity() != that.getQueueCapacity()) return false;
+        if (getConnectionPermits() != that.getConnectionPermits()) return false;
+        if (getConnectionWaiters() != that.getConnectionWaiters()) return false;
+        if (getRejectedRequests() != that.getRejectedRequests()) return false;
+        return getTimedOutRequests() == that.getTimedOutRequests();
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (isVirtualThreads() ? 1 : 0);
+        result = 31 * result + getThreads();
+        result = 31 * result + getActiveThreads();
+        result = 31 * result + getQueueSize();
+        result = 31 * result + getQueueCapacity();
+        result = 31 * result + getConnectionPermits();
+        result = 31 * result + getConnectionWaiters();
+        result = 31 * result + (int) (getRejectedRequests() ^ (getRejectedRequests() >>> 32));
+        result = 31 * result + (int) (getTimedOutRequests() ^ (getTimedOutRequests() >>> 32));
+        return result;
+    }
+}
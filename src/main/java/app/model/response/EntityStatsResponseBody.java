@@ -0,0 +1,90 @@
+package app.model.response;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.*;
+
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "Статистика Hibernate по сущности")
+public class EntityStatsResponseBody {
+
+    @ApiModelProperty(value = "Название сущности", required = true)
+    @Getter
+    @Setter
+    private String entityName;
+
+    @ApiModelProperty(value = "Количество загрузок сущности (из БД или кэша)", required = true)
+    @Getter
+    @Setter
+    private long loadCount;
+
+    @ApiModelProperty(value = "Количество загрузок сущности отдельным запросом к БД (например, ленивой связи)", required = true)
+    @Getter
+    @Setter
+    private long fetchCount;
+
+    @ApiModelProperty(value = "Количество вставок", required = true)
+    @Getter
+    @Setter
+    private long insertCount;
+
+    @ApiModelProperty(value = "Количество обновлений", required = true)
+    @Getter
+    @Setter
+    private long updateCount;
+
+    @ApiModelProperty(value = "Количество удалений", required = true)
+    @Getter
+    @Setter
+    private long deleteCount;
+
+    @ApiModelProperty(value = "Количество попаданий в кэш второго уровня", required = true)
+    @Getter
+    @Setter
+    private long cacheHitCount;
+
+    @ApiModelProperty(value = "Количество промахов кэша второго уровня", required = true)
+    @Getter
+    @Setter
+    private long cacheMissCount;
+
+    @ApiModelProperty(value = "Количество записей в кэш второго уровня", required = true)
+    @Getter
+    @Setter
+    private long cachePutCount;
+
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        EntityStatsResponseBody that = (EntityStatsResponseBody) o;
+
+        if (getLoadCount() != that.getLoadCount()) return false;
+        if (getFetchCount() != that.getFetchCount()) return false;
+        if (getInsertCount() != that.getInsertCount()) return false;
+        if (getUpdateCount() != that.getUpdateCount()) return false;
+        if (getDeleteCount() != that.getDeleteCount()) return false;
+        if (getCacheHitCount() != that.getCacheHitCount()) return false;
+        if (getCacheMissCount() != that.getCacheMissCount()) return false;
+        if (getCachePutCount() != that.getCachePutCount()) return false;
+        return getEntityName() != null ? getEntityName().equals(that.getEntityName()) : that.getEntityName() == null;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = getEntityName() != null ? getEntityName().hashCode() : 0;
+        result = 31 * result + (int) (getLoadCount() ^ (getLoadCount() >>> 32));
+        result = 31 * result + (int) (getFetchCount() ^ (getFetchCount() >>> 32));
+        result = 31 * result + (int) (getInsertCount() ^ (getInsertCount() >>> 32));
+        result = 31 * result + (int) (getUpdateCount() ^ (getUpdateCount() >>> 32));
+        result = 31 * result + (int) (getDeleteCount() ^ (getDeleteCount() >>> 32));
+        result = 31 * result + (int) (getCacheHitCount() ^ (getCacheHitCount() >>> 32));
+        result = 31 * result + (int) (getCacheMissCount() ^ (getCacheMissCount() >>> 32));
+        result = 31 * result + (int) (getCachePutCount() ^ (getCachePutCount() >>> 32));
+        return result;
+    }
+}
\ No newline at end of file
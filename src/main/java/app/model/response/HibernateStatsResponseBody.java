@@ -0,0 +1,162 @@
+package app.model.response;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.*;
+
+import java.util.List;
+
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "Статистика Hibernate и кэша второго уровня")
+public class HibernateStatsResponseBody {
+
+    @ApiModelProperty(value = "Статистика Hibernate собирается (metrics.enabled=true и hibernate.generate_statistics=true)", required = true)
+    @Getter
+    @Setter
+    private boolean statisticsEnabled;
+
+    @ApiModelProperty(value = "Время начала сбора статистики (запуск приложения или последний сброс)", required = true)
+    @Getter
+    @Setter
+    private String statisticsSince;
+
+    @ApiModelProperty(value = "Количество открытых сессий", required = true)
+    @Getter
+    @Setter
+    private long sessionOpenCount;
+
+    @ApiModelProperty(value = "Количество завершённых транзакций", required = true)
+    @Getter
+    @Setter
+    private long transactionCount;
+
+    @ApiModelProperty(value = "Количество подготовленных JDBC-запросов", required = true)
+    @Getter
+    @Setter
+    private long prepareStatementCount;
+
+    @ApiModelProperty(value = "Количество загрузок сущностей", required = true)
+    @Getter
+    @Setter
+    private long entityLoadCount;
+
+    @ApiModelProperty(value = "Количество загрузок сущностей отдельным запросом к БД", required = true)
+    @Getter
+    @Setter
+    private long entityFetchCount;
+
+    @ApiModelProperty(value = "Количество выполненных запросов", required = true)
+    @Getter
+    @Setter
+    private long queryExecutionCount;
+
+    @ApiModelProperty(value = "Максимальное время выполнения запроса, мс", required = true)
+    @Getter
+    @Setter
+    private long queryExecutionMaxTime;
+
+    @ApiModelProperty(value = "Самый долгий запрос", required = true)
+    @Getter
+    @Setter
+    private String queryExecutionMaxTimeQuery;
+
+    @ApiModelProperty(value = "Количество попаданий в кэш второго уровня", required = true)
+    @Getter
+    @Setter
+    private long secondLevelCacheHitCount;
+
+    @ApiModelProperty(value = "Количество промахов кэша второго уровня", required = true)
+    @Getter
+    @Setter
+    private long secondLevelCacheMissCount;
+
+    @ApiModelProperty(value = "Количество записей в кэш второго уровня", required = true)
+    @Getter
+    @Setter
+    private long secondLevelCachePutCount;
+
+    @ApiModelProperty(value = "Количество попаданий в кэш запросов", required = true)
+    @Getter
+    @Setter
+    private long queryCacheHitCount;
+
+    @ApiModelProperty(value = "Количество промахов кэша запросов", required = true)
+    @Getter
+    @Setter
+    private long queryCacheMissCount;
+
+    @ApiModelProperty(value = "Количество записей в кэш запросов", required = true)
+    @Getter
+    @Setter
+    private long queryCachePutCount;
+
+    @ApiModelProperty(value = "Регионы кэша второго уровня и кэша запросов", required = true)
+    @Getter
+    @Setter
+    private List<CacheRegionStatsResponseBody> cacheRegions;
+
+    @ApiModelProperty(value = "Статистика по сущностям", required = true)
+    @Getter
+    @Setter
+    private List<EntityStatsResponseBody> entities;
+
+    @ApiModelProperty(value = "Статистика по запросам (по убыванию суммарного времени выполнения)", required = true)
+    @Getter
+    @Setter
+    private List<QueryStatsResponseBody> queries;
+
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        HibernateStatsResponseBody that = (HibernateStatsResponseBody) o;
+
+        if (isStatisticsEnabled() != that.isStatisticsEnabled()) return false;
+        if (getSessionOpenCount() != that.getSessionOpenCount()) return false;
+        if (getTransactionCount() != that.getTransactionCount()) return false;
+        if (getPrepareStatementCount() != that.getPrepareStatementCount()) return false;
+        if (getEntityLoadCount() != that.getEntityLoadCount()) return false;
+        if (getEntityFetchCount() != that.getEntityFetchCount()) return false;
+        if (getQueryExecutionCount() != that.getQueryExecutionCount()) return false;
+        if (getQueryExecutionMaxTime() != that.getQueryExecutionMaxTime()) return false;
+        if (getSecondLevelCacheHitCount() != that.getSecondLevelCacheHitCount()) return false;
+        if (getSecondLevelCacheMissCount() != that.getSecondLevelCacheMissCount()) return false;
+        if (getSecondLevelCachePutCount() != that.getSecondLevelCachePutCount()) return false;
+        if (getQueryCacheHitCount() != that.getQueryCacheHitCount()) return false;
+        if (getQueryCacheMissCount() != that.getQueryCacheMissCount()) return false;
+        if (getQueryCachePutCount() != that.getQueryCachePutCount()) return false;
+        if (getStatisticsSince() != null ? !getStatisticsSince().equals(that.getStatisticsSince()) : that.getStatisticsSince() != null) return false;
+        if (getQueryExecutionMaxTimeQuery() != null ? !getQueryExecutionMaxTimeQuery().equals(that.getQueryExecutionMaxTimeQuery()) : that.getQueryExecutionMaxTimeQuery() != null) return false;
+        if (getCacheRegions() != null ? !getCacheRegions().equals(that.getCacheRegions()) : that.getCacheRegions() != null) return false;
+        if (getEntities() != null ? !getEntities().equals(that.getEntities()) : that.getEntities() != null) return false;
+        return getQueries() != null ? getQueries().equals(that.getQueries()) : that.getQueries() == null;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (isStatisticsEnabled() ? 1 : 0);
+        result = 31 * result + (getStatisticsSince() != null ? getStatisticsSince().hashCode() : 0);
+        result = 31 * result + (int) (getSessionOpenCount() ^ (getSessionOpenCount() >>> 32));
+        result = 31 * result + (int) (getTransactionCount() ^ (getTransactionCount() >>> 32));
+        result = 31 * result + (int) (getPrepareStatementCount() ^ (getPrepareStatementCount() >>> 32));
+        result = 31 * result + (int) (getEntityLoadCount() ^ (getEntityLoadCount() >>> 32));
+        result = 31 * result + (int) (getEntityFetchCount() ^ (getEntityFetchCount() >>> 32));
+        result = 31 * result + (int) (getQueryExecutionCount() ^ (getQueryExecutionCount() >>> 32));
+        result = 31 * result + (int) (getQueryExecutionMaxTime() ^ (getQueryExecutionMaxTime() >>> 32));
+        result = 31 * result + (getQueryExecutionMaxTimeQuery() != null ? getQueryExecutionMaxTimeQuery().hashCode() : 0);
+        result = 31 * result + (int) (getSecondLevelCacheHitCount() ^ (getSecondLevelCacheHitCount() >>> 32));
+        result = 31 * result + (int) (getSecondLevelCacheMissCount() ^ (getSecondLevelCacheMissCount() >>> 32));
+        result = 31 * result + (int) (getSecondLevelCachePutCount() ^ (getSecondLevelCachePutCount() >>> 32));
+        result = 31 * result + (int) (getQueryCacheHitCount() ^ (getQueryCacheHitCount() >>> 32));
+        result = 31 * result + (int) (getQueryCacheMissCount() ^ (getQueryCacheMissCount() >>> 32));
+        result = 31 * result + (int) (getQueryCachePutCount() ^ (getQueryCachePutCount() >>> 32));
+        result = 31 * result + (getCacheRegions() != null ? getCacheRegions().hashCode() : 0);
+        result = 31 * result + (getEntities() != null ? getEntities().hashCode() : 0);
+        result = 31 * result + (getQueries() != null ? getQueries().hashCode() : 0);
+        return result;
+    }
+}
\ No newline at end of file
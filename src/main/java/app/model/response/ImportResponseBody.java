@@ -0,0 +1,57 @@
+package app.model.response;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.*;
+
+import java.util.List;
+
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "Объект ответа REST сервиса на запрос массовой загрузки закупок/продаж")
+public class ImportResponseBody {
+
+    @ApiModelProperty(value = "Ответ REST сервиса", required = true)
+    @Getter
+    @Setter
+    private String message;
+
+    @ApiModelProperty(value = "Код ответа", required = true)
+    @Getter
+    @Setter
+    private int code;
+
+    @ApiModelProperty(value = "Описание кода ответа", required = true)
+    @Getter
+    @Setter
+    private String codeMessage;
+
+    @ApiModelProperty(value = "Результаты по каждой порции записей (каждая порция сохраняется в отдельной транзакции)")
+    @Getter
+    @Setter
+    private List<HttpResponseBody> chunks;
+
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        ImportResponseBody that = (ImportResponseBody) o;
+
+        if (getCode() != that.getCode()) return false;
+        if (getMessage() != null ? !getMessage().equals(that.getMessage()) : that.getMessage() != null) return false;
+        if (getCodeMessage() != null ? !getCodeMessage().equals(that.getCodeMessage()) : that.getCodeMessage() != null) return false;
+        return getChunks() != null ? getChunks().equals(that.getChunks()) : that.getChunks() == null;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = getMessage() != null ? getMessage().hashCode() : 0;
+        result = 31 * result + getCode();
+        result = 31 * result + (getCodeMessage() != null ? getCodeMessage().hashCode() : 0);
+        result = 31 * result + (getChunks() != null ? getChunks().hashCode() : 0);
+        return result;
+    }
+}
@@ -0,0 +1,90 @@
+package app.model.response;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.*;
+
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "Статистика Hibernate по HQL/SQL запросу")
+public class QueryStatsResponseBody {
+
+    @ApiModelProperty(value = "Текст запроса", required = true)
+    @Getter
+    @Setter
+    private String query;
+
+    @ApiModelProperty(value = "Количество выполнений", required = true)
+    @Getter
+    @Setter
+    private long executionCount;
+
+    @ApiModelProperty(value = "Количество полученных строк", required = true)
+    @Getter
+    @Setter
+    private long executionRowCount;
+
+    @ApiModelProperty(value = "Суммарное время выполнения, мс", required = true)
+    @Getter
+    @Setter
+    private long executionTotalTime;
+
+    @ApiModelProperty(value = "Среднее время выполнения, мс", required = true)
+    @Getter
+    @Setter
+    private long executionAvgTime;
+
+    @ApiModelProperty(value = "Максимальное время выполнения, мс", required = true)
+    @Getter
+    @Setter
+    private long executionMaxTime;
+
+    @ApiModelProperty(value = "Количество попаданий в кэш запросов", required = true)
+    @Getter
+    @Setter
+    private long cacheHitCount;
+
+    @ApiModelProperty(value = "Количество промахов кэша запросов", required = true)
+    @Getter
+    @Setter
+    private long cacheMissCount;
+
+    @ApiModelProperty(value = "Количество записей в кэш запросов", required = true)
+    @Getter
+    @Setter
+    private long cachePutCount;
+
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        QueryStatsResponseBody that = (QueryStatsResponseBody) o;
+
+        if (getExecutionCount() != that.getExecutionCount()) return false;
+        if (getExecutionRowCount() != that.getExecutionRowCount()) return false;
+        if (getExecutionTotalTime() != that.getExecutionTotalTime()) return false;
+        if (getExecutionAvgTime() != that.getExecutionAvgTime()) return false;
+        if (getExecutionMaxTime() != that.getExecutionMaxTime()) return false;
+        if (getCacheHitCount() != that.getCacheHitCount()) return false;
+        if (getCacheMissCount() != that.getCacheMissCount()) return false;
+        if (getCachePutCount() != that.getCachePutCount()) return false;
+        return getQuery() != null ? getQuery().equals(that.getQuery()) : that.getQuery() == null;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = getQuery() != null ? getQuery().hashCode() : 0;
+        result = 31 * result + (int) (getExecutionCount() ^ (getExecutionCount() >>> 32));
+        result = 31 * result + (int) (getExecutionRowCount() ^ (getExecutionRowCount() >>> 32));
+        result = 31 * result + (int) (getExecutionTotalTime() ^ (getExecutionTotalTime() >>> 32));
+        result = 31 * result + (int) (getExecutionAvgTime() ^ (getExecutionAvgTime() >>> 32));
+        result = 31 * result + (int) (getExecutionMaxTime() ^ (getExecutionMaxTime() >>> 32));
+        result = 31 * result + (int) (getCacheHitCount() ^ (getCacheHitCount() >>> 32));
+        result = 31 * result + (int) (getCacheMissCount() ^ (getCacheMissCount() >>> 32));
+        result = 31 * result + (int) (getCachePutCount() ^ (getCachePutCount() >>> 32));
+        return result;
+    }
+}
\ No newline at end of file
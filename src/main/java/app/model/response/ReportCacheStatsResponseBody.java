@@ -0,0 +1,90 @@
+package app.model.response;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.*;
+
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "Состояние кэша отчётов о прибыли и объединения одновременных расчётов")
+public class ReportCacheStatsResponseBody {
+
+    @ApiModelProperty(value = "Количество значений в кэше", required = true)
+    @Getter
+    @Setter
+    private int size;
+
+    @ApiModelProperty(value = "Максимальное количество значений в кэше (0 - кэш отключён)", required = true)
+    @Getter
+    @Setter
+    private int maxSize;
+
+    @ApiModelProperty(value = "Количество отчётов, взятых из кэша", required = true)
+    @Getter
+    @Setter
+    private long hits;
+
+    @ApiModelProperty(value = "Количество отчётов, рассчитанных по БД", required = true)
+    @Getter
+    @Setter
+    private long misses;
+
+    @ApiModelProperty(value = "Количество значений, вытесненных из-за ограничения размера", required = true)
+    @Getter
+    @Setter
+    private long evictions;
+
+    @ApiModelProperty(value = "Количество значений, удалённых после изменения товара", required = true)
+    @Getter
+    @Setter
+    private long invalidations;
+
+    @ApiModelProperty(value = "Количество выполненных расчётов отчётов по БД", required = true)
+    @Getter
+    @Setter
+    private long calculations;
+
+    @ApiModelProperty(value = "Количество запросов, получивших результат одновременного расчёта того же отчёта другим запросом", required = true)
+    @Getter
+    @Setter
+    private long coalescedRequests;
+
+    @ApiModelProperty(value = "Количество выполняющихся в данный момент расчётов", required = true)
+    @Getter
+    @Setter
+    private int inFlightCalculations;
+
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        ReportCacheStatsResponseBody that = (ReportCacheStatsResponseBody) o;
+
+        if (getSize() != that.getSize()) return false;
+        if (getMaxSize() != that.getMaxSize()) return false;
+        if (getHits() != that.getHits()) return false;
+        if (getMisses() != that.getMisses()) return false;
+        if (getEvictions() != that.getEvictions()) return false;
+        if (getInvalidations() != that.getInvalidations()) return false;
+        if (getCalculations() != that.getCalculations()) return false;
+        if (getCoalescedRequests() != that.getCoalescedRequests()) return false;
+        return getInFlightCalculations() == that.getInFlightCalculations();
+    }
+
+    @Override
+    public int hashCode() {
+        int result = getSize();
+        result = 31 * result + getMaxSize();
+        result = 31 * result + (int) (getHits() ^ (getHits() >>> 32));
+        result = 31 * result + (int) (getMisses() ^ (getMisses() >>> 32));
+        result = 31 * result + (int) (getEvictions() ^ (getEvictions() >>> 32));
+        result = 31 * result + (int) (getInvalidations() ^ (getInvalidations() >>> 32));
+        result = 31 * result + (int) (getCalculations() ^ (getCalculations() >>> 32));
+        result = 31 * result + (int) (getCoalescedRequests() ^ (getCoalescedRequests() >>> 32));
+        result = 31 * result + getInFlightCalculations();
+        return result;
+    }
+}
@@ -0,0 +1,64 @@
+package app.model.response;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.*;
+
+import java.util.Map;
+
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "Объект ответа REST сервиса на запрос отчёта о прибыли по нескольким товарам")
+public class SalesReportsResponseBody {
+
+    @ApiModelProperty(value = "Ответ REST сервиса (ошибки по отдельным товарам)", required = true)
+    @Getter
+    @Setter
+    private String message;
+
+    @ApiModelProperty(value = "Код ответа", required = true)
+    @Getter
+    @Setter
+    private int code;
+
+    @ApiModelProperty(value = "Описание кода ответа", required = true)
+    @Getter
+    @Setter
+    private String codeMessage;
+
+    @ApiModelProperty(value = "Дата отчёта")
+    @Getter
+    @Setter
+    private String date;
+
+    @ApiModelProperty(value = "Прибыль по каждому товару (ключ - название товара)")
+    @Getter
+    @Setter
+    private Map<String, Double> incomes;
+
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        SalesReportsResponseBody that = (SalesReportsResponseBody) o;
+
+        if (getCode() != that.getCode()) return false;
+        if (getMessage() != null ? !getMessage().equals(that.getMessage()) : that.getMessage() != null) return false;
+        if (getCodeMessage() != null ? !getCodeMessage().equals(that.getCodeMessage()) : that.getCodeMessage() != null) return false;
+        if (getDate() != null ? !getDate().equals(that.getDate()) : that.getDate() != null) return false;
+        return getIncomes() != null ? getIncomes().equals(that.getIncomes()) : that.getIncomes() == null;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = getMessage() != null ? getMessage().hashCode() : 0;
+        result = 31 * result + getCode();
+        result = 31 * result + (getCodeMessage() != null ? getCodeMessage().hashCode() : 0);
+        result = 31 * result + (getDate() != null ? getDate().hashCode() : 0);
+        result = 31 * result + (getIncomes() != null ? getIncomes().hashCode() : 0);
+        return result;
+    }
+}
@@ -0,0 +1,90 @@
+package app.model.response;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.*;
+
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "Состояние пула потоков встроенного сервера Jetty")
+public class ServerStatsResponseBody {
+
+    @ApiModelProperty(value = "Количество потоков пула", required = true)
+    @Getter
+    @Setter
+    private int threads;
+
+    @ApiModelProperty(value = "Количество занятых потоков", required = true)
+    @Getter
+    @Setter
+    private int busyThreads;
+
+    @ApiModelProperty(value = "Количество свободных потоков", required = true)
+    @Getter
+    @Setter
+    private int idleThreads;
+
+    @ApiModelProperty(value = "Минимальное количество потоков", required = true)
+    @Getter
+    @Setter
+    private int minThreads;
+
+    @ApiModelProperty(value = "Максимальное количество потоков", required = true)
+    @Getter
+    @Setter
+    private int maxThreads;
+
+    @ApiModelProperty(value = "Количество задач, ожидающих в очереди", required = true)
+    @Getter
+    @Setter
+    private int queueSize;
+
+    @ApiModelProperty(value = "Максимальная длина очереди", required = true)
+    @Getter
+    @Setter
+    private int queueCapacity;
+
+    @ApiModelProperty(value = "Количество задач, отклонённых из-за переполнения очереди (соединение закрыто)", required = true)
+    @Getter
+    @Setter
+    private long rejectedTasks;
+
+    @ApiModelProperty(value = "Потоков не хватает: новые задачи будут ждать в очереди", required = true)
+    @Getter
+    @Setter
+    private boolean lowOnThreads;
+
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        ServerStatsResponseBody that = (ServerStatsResponseBody) o;
+
+        if (getThreads() != that.getThreads()) return false;
+        if (getBusyThreads() != that.getBusyThreads()) return false;
+        if (getIdleThreads() != that.getIdleThreads()) return false;
+        if (getMinThreads() != that.getMinThreads()) return false;
+        if (getMaxThreads() != that.getMaxThreads()) return false;
+        if (getQueueSize() != that.getQueueSize()) return false;
+        if (getQueueCapacity() != that.getQueueCapacity()) return false;
+        if (getRejectedTasks() != that.getRejectedTasks()) return false;
+        return isLowOnThreads() == that.isLowOnThreads();
+    }
+
+    @Override
+    public int hashCode() {
+        int result = getThreads();
+        result = 31 * result + getBusyThreads();
+        result = 31 * result + getIdleThreads();
+        result = 31 * result + getMinThreads();
+        result = 31 * result + getMaxThreads();
+        result = 31 * result + getQueueSize();
+        result = 31 * result + getQueueCapacity();
+        result = 31 * result + (int) (getRejectedTasks() ^ (getRejectedTasks() >>> 32));
+        result = 31 * result + (isLowOnThreads() ? 1 : 0);
+        return result;
+    }
+}
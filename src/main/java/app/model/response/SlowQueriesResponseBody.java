@@ -0,0 +1,57 @@
+package app.model.response;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.*;
+
+import java.util.List;
+
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "Журнал медленных запросов к БД")
+public class SlowQueriesResponseBody {
+
+    @ApiModelProperty(value = "Порог времени запроса, мс (-1 - журнал отключён)", required = true)
+    @Getter
+    @Setter
+    private long thresholdMs;
+
+    @ApiModelProperty(value = "Максимальное количество запросов в журнале (более старые вытесняются)", required = true)
+    @Getter
+    @Setter
+    private int capacity;
+
+    @ApiModelProperty(value = "Количество медленных запросов с запуска приложения или последней очистки журнала", required = true)
+    @Getter
+    @Setter
+    private long slowQueryCount;
+
+    @ApiModelProperty(value = "Медленные запросы, начиная с последнего", required = true)
+    @Getter
+    @Setter
+    private List<SlowQueryResponseBody> queries;
+
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        SlowQueriesResponseBody that = (SlowQueriesResponseBody) o;
+
+        if (getThresholdMs() != that.getThresholdMs()) return false;
+        if (getCapacity() != that.getCapacity()) return false;
+        if (getSlowQueryCount() != that.getSlowQueryCount()) return false;
+        return getQueries() != null ? getQueries().equals(that.getQueries()) : that.getQueries() == null;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int) (getThresholdMs() ^ (getThresholdMs() >>> 32));
+        result = 31 * result + getCapacity();
+        result = 31 * result + (int) (getSlowQueryCount() ^ (getSlowQueryCount() >>> 32));
+        result = 31 * result + (getQueries() != null ? getQueries().hashCode() : 0);
+        return result;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,88 @@
+package app.model.response;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.*;
+
+import java.util.List;
+
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "Медленный запрос к БД")
+public class SlowQueryResponseBody {
+
+    @ApiModelProperty(value = "Время выполнения запроса", required = true)
+    @Getter
+    @Setter
+    private String timestamp;
+
+    @ApiModelProperty(value = "Поток, выполнявший запрос", required = true)
+    @Getter
+    @Setter
+    private String thread;
+
+    @ApiModelProperty(value = "Текст SQL запроса", required = true)
+    @Getter
+    @Setter
+    private String sql;
+
+    @ApiModelProperty(value = "Значения параметров запроса (по порядку)", required = true)
+    @Getter
+    @Setter
+    private List<String> parameters;
+
+    @ApiModelProperty(value = "Время выполнения запроса и чтения строк результата (без обработки строк приложением), мс", required = true)
+    @Getter
+    @Setter
+    private double durationMs;
+
+    @ApiModelProperty(value = "Время выполнения запроса (без чтения строк), мс", required = true)
+    @Getter
+    @Setter
+    private double executionMs;
+
+    @ApiModelProperty(value = "Количество прочитанных строк результата или изменённых строк", required = true)
+    @Getter
+    @Setter
+    private long rows;
+
+    @ApiModelProperty(value = "План выполнения запроса (H2 EXPLAIN), только для SELECT")
+    @Getter
+    @Setter
+    private String plan;
+
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        SlowQueryResponseBody that = (SlowQueryResponseBody) o;
+
+        if (getRows() != that.getRows()) return false;
+        if (Double.compare(that.getDurationMs(), getDurationMs()) != 0) return false;
+        if (Double.compare(that.getExecutionMs(), getExecutionMs()) != 0) return false;
+        if (getTimestamp() != null ? !getTimestamp().equals(that.getTimestamp()) : that.getTimestamp() != null) return false;
+        if (getThread() != null ? !getThread().equals(that.getThread()) : that.getThread() != null) return false;
+        if (getSql() != null ? !getSql().equals(that.getSql()) : that.getSql() != null) return false;
+        if (getParameters() != null ? !getParameters().equals(that.getParameters()) : that.getParameters() != null) return false;
+        return getPlan() != null ? getPlan().equals(that.getPlan()) : that.getPlan() == null;
+    }
+
+    @Override
+    public int hashCode() {
+        long temp;
+        int result = getTimestamp() != null ? getTimestamp().hashCode() : 0;
+        result = 31 * result + (getThread() != null ? getThread().hashCode() : 0);
+        result = 31 * result + (getSql() != null ? getSql().hashCode() : 0);
+        result = 31 * result + (getParameters() != null ? getParameters().hashCode() : 0);
+        temp = Double.doubleToLongBits(getDurationMs());
+        result = 31 * result + (int) (temp ^ (temp >>> 32));
+        temp = Double.doubleToLongBits(getExecutionMs());
+        result = 31 * result + (int) (temp ^ (temp >>> 32));
+        result = 31 * result + (int) (getRows() ^ (getRows() >>> 32));
+        result = 31 * result + (getPlan() != null ? getPlan().hashCode() : 0);
+        return result;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,76 @@
+package app.model.response;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.*;
+
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "Прогрев приложения при запуске и готовность к работе")
+public class WarmUpResponseBody {
+
+    @ApiModelProperty(value = "Готово ли приложение к работе (прогрев завершён или не требуется)", required = true)
+    @Getter
+    @Setter
+    private boolean ready;
+
+    @ApiModelProperty(value = "Включён ли прогрев при запуске (warmup.enabled)", required = true)
+    @Getter
+    @Setter
+    private boolean warmUpEnabled;
+
+    @ApiModelProperty(value = "Количество товаров, загруженных в кэш", required = true)
+    @Getter
+    @Setter
+    private long products;
+
+    @ApiModelProperty(value = "Количество закупок за последние warmup.recent_days дней, загруженных в кэш", required = true)
+    @Getter
+    @Setter
+    private long purchases;
+
+    @ApiModelProperty(value = "Количество продаж за последние warmup.recent_days дней, загруженных в кэш", required = true)
+    @Getter
+    @Setter
+    private long sellings;
+
+    @ApiModelProperty(value = "Количество выполненных прогревочных запросов", required = true)
+    @Getter
+    @Setter
+    private long requests;
+
+    @ApiModelProperty(value = "Продолжительность прогрева (мс)", required = true)
+    @Getter
+    @Setter
+    private long durationMs;
+
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        WarmUpResponseBody that = (WarmUpResponseBody) o;
+
+        if (isReady() != that.isReady()) return false;
+        if (isWarmUpEnabled() != that.isWarmUpEnabled()) return false;
+        if (getProducts() != that.getProducts()) return false;
+        if (getPurchases() != that.getPurchases()) return false;
+        if (getSellings() != that.getSellings()) return false;
+        if (getRequests() != that.getRequests()) return false;
+        return getDurationMs() == that.getDurationMs();
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (isReady() ? 1 : 0);
+        result = 31 * result + (isWarmUpEnabled() ? 1 : 0);
+        result = 31 * result + (int) (getProducts() ^ (getProducts() >>> 32));
+        result = 31 * result + (int) (getPurchases() ^ (getPurchases() >>> 32));
+        result = 31 * result + (int) (getSellings() ^ (getSellings() >>> 32));
+        result = 31 * result + (int) (getRequests() ^ (getRequests() >>> 32));
+        result = 31 * result + (int) (getDurationMs() ^ (getDurationMs() >>> 32));
+        return result;
+    }
+}
\ No newline at end of file
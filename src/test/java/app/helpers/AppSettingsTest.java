@@ -0,0 +1,88 @@
+package app.helpers;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Properties;
+
+/**
+ * порядок загрузки настроек {@link AppSettings}: application.properties, профиль, внешний файл, системные свойства
+ */
+public class AppSettingsTest {
+
+    @Test
+    public void testProfiles() {
+
+        Properties dev = AppSettings.load("dev", new Properties());
+        Assert.assertEquals("create", dev.getProperty("hibernate.hbm2ddl.auto"));
+        Assert.assertEquals("true", dev.getProperty("metrics.enabled"));
+        Assert.assertEquals("false", dev.getProperty("warmup.enabled"));
+        Assert.assertEquals("500", dev.getProperty("slow_query.threshold_ms"));
+
+        Properties prod = AppSettings.load("prod", new Properties());
+        Assert.assertEquals("validate", prod.getProperty("hibernate.hbm2ddl.auto"));
+        Assert.assertEquals("false", prod.getProperty("metrics.enabled"));
+        Assert.assertEquals("true", prod.getProperty("warmup.enabled"));
+        Assert.assertEquals("-1", prod.getProperty("slow_query.threshold_ms"));
+        Assert.assertEquals("100", prod.getProperty("slow_query.min_threshold_ms"));
+
+        Properties bench = AppSettings.load("bench", new Properties());
+        Assert.assertEquals("create", bench.getProperty("hibernate.hbm2ddl.auto"));
+        Assert.assertEquals("-1", bench.getProperty("slow_query.threshold_ms"));
+
+        /**
+         * значения, не заданные профилем, берутся из application.properties
+         */
+        Assert.assertEquals("10", dev.getProperty("pool.max_size"));
+        Assert.assertEquals("10", prod.getProperty("pool.max_size"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUnknownProfile() {
+        AppSettings.load("unknown", new Properties());
+    }
+
+    /**
+     * внешний файл переопределяет профиль, а системные свойства mysklad.* - и профиль, и внешний файл
+     */
+    @Test
+    public void testConfigFileAndSystemPropertyOverrides() throws Exception {
+
+        File configFile = File.createTempFile("my_sklad", ".properties");
+        try {
+            try (Writer writer = new OutputStreamWriter(Files.newOutputStream(configFile.toPath()), StandardCharsets.UTF_8)) {
+                writer.write("hibernate.hbm2ddl.auto=update\npool.max_size=20\n");
+            }
+
+            Properties systemProperties = new Properties();
+            systemProperties.setProperty(AppSettings.CONFIG_PROPERTY, configFile.getAbsolutePath());
+            systemProperties.setProperty(AppSettings.PROFILE_PROPERTY, "prod");
+            systemProperties.setProperty("mysklad.pool.max_size", "42");
+            systemProperties.setProperty("other.pool.max_size", "1");
+
+            Properties properties = AppSettings.load("dev", systemProperties);
+
+            Assert.assertEquals("update", properties.getProperty("hibernate.hbm2ddl.auto"));
+            Assert.assertEquals("42", properties.getProperty("pool.max_size"));
+            Assert.assertEquals("true", properties.getProperty("metrics.enabled"));
+            Assert.assertNull(properties.getProperty("profile"));
+            Assert.assertNull(properties.getProperty("config"));
+        } finally {
+            Files.delete(configFile.toPath());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testMissingConfigFile() {
+
+        Properties systemProperties = new Properties();
+        systemProperties.setProperty(AppSettings.CONFIG_PROPERTY, "./does_not_exist/my_sklad.properties");
+        AppSettings.load("dev", systemProperties);
+    }
+
+}
@@ -0,0 +1,269 @@
+package app.helpers;
+
+import app.model.response.HttpResponseBody;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.TimeoutHandler;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * ответы {@link DatabaseExecutor} по таймауту и при переполнении очереди; таймаут, который обычно наступает в контейнере
+ * сервлетов, здесь вызывается из теста
+ */
+public class DatabaseExecutorTest {
+
+    private final DatabaseExecutor executor = new DatabaseExecutor(1, 1, 1);
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void shutdown() {
+        release.countDown();
+        executor.shutdown();
+    }
+
+    /**
+     * изменяющий данные запрос, уже начавший выполняться, по таймауту не завершается, а дожидается результата
+     */
+    @Test
+    public void testTimedOutStartedWriteWaitsForResult() throws Exception {
+
+        TestAsyncResponse asyncResponse = new TestAsyncResponse();
+        executor.submitWrite(asyncResponse, this::blockingTask);
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        asyncResponse.timeout();
+        Assert.assertNull(asyncResponse.response);
+        Assert.assertEquals(2, asyncResponse.timeouts);
+
+        release.countDown();
+        Assert.assertTrue(asyncResponse.resumed.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(200, asyncResponse.response.getStatus());
+        Assert.assertEquals(0, executor.getTimedOut());
+    }
+
+    /**
+     * изменяющий данные запрос, ждущий в очереди, по таймауту завершается ответом 503 без Retry-After и не выполняется
+     */
+    @Test
+    public void testTimedOutQueuedWriteIsNotExecuted() throws Exception {
+
+        executor.submit(new TestAsyncResponse(), this::blockingTask);
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        AtomicBoolean executed = new AtomicBoolean();
+        TestAsyncResponse asyncResponse = new TestAsyncResponse();
+        executor.submitWrite(asyncResponse, () -> {
+            executed.set(true);
+            return Response.ok().build();
+        });
+
+        asyncResponse.timeout();
+        assertUnavailable(asyncResponse.response, "Request timed out before it was started", null);
+        Assert.assertEquals(1, executor.getTimedOut());
+
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 10000;
+        while ((executor.getQueueSize() > 0 || executor.getActiveThreads() > 0) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(0, executor.getQueueSize());
+        Assert.assertEquals(0, executor.getActiveThreads());
+        Assert.assertFalse(executed.get());
+    }
+
+    /**
+     * читающий запрос по таймауту завершается ответом 503, даже если уже выполняется
+     */
+    @Test
+    public void testTimedOutStartedRead() throws Exception {
+
+        TestAsyncResponse asyncResponse = new TestAsyncResponse();
+        executor.submit(asyncResponse, this::blockingTask);
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        asyncResponse.timeout();
+        assertUnavailable(asyncResponse.response, "Request timed out", null);
+        Assert.assertEquals(1, executor.getTimedOut());
+    }
+
+    /**
+     * запрос, не поместившийся в очередь, отклоняется до начала выполнения, поэтому его можно повторить (Retry-After)
+     */
+    @Test
+    public void testRejectedWrite() throws Exception {
+
+        executor.submit(new TestAsyncResponse(), this::blockingTask);
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+        executor.submitWrite(new TestAsyncResponse(), () -> Response.ok().build());
+
+        TestAsyncResponse asyncResponse = new TestAsyncResponse();
+        executor.submitWrite(asyncResponse, () -> Response.ok().build());
+
+        assertUnavailable(asyncResponse.response, "Server is busy, try again later", "1");
+        Assert.assertEquals(1, executor.getRejected());
+    }
+
+    /**
+     * потоков больше, чем соединений (как на виртуальных потоках): запрос сверх размера пула соединений ждёт разрешения,
+     * не начинаясь, поэтому изменяющий данные запрос по таймауту завершается ответом 503 и не выполняется
+     */
+    @Test
+    public void testTaskWaitsForConnectionPermit() throws Exception {
+
+        DatabaseExecutor executor = new DatabaseExecutor(2, 1, 1);
+        try {
+            executor.submit(new TestAsyncResponse(), this::blockingTask);
+            Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+
+            AtomicBoolean executed = new AtomicBoolean();
+            TestAsyncResponse asyncResponse = new TestAsyncResponse();
+            executor.submitWrite(asyncResponse, () -> {
+                executed.set(true);
+                return Response.ok().build();
+            });
+
+            long deadline = System.currentTimeMillis() + 10000;
+            while (executor.getConnectionWaiters() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(1, executor.getConnectionWaiters());
+            Assert.assertEquals(2, executor.getActiveThreads());
+
+            asyncResponse.timeout();
+            assertUnavailable(asyncResponse.response, "Request timed out before it was started", null);
+
+            release.countDown();
+            deadline = System.currentTimeMillis() + 10000;
+            while (executor.getActiveThreads() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(0, executor.getActiveThreads());
+            Assert.assertEquals(0, executor.getConnectionWaiters());
+            Assert.assertFalse(executed.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private Response blockingTask() {
+        started.countDown();
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return Response.ok().build();
+    }
+
+    private static void assertUnavailable(Response response, String message, String retryAfter) {
+        Assert.assertNotNull(response);
+        Assert.assertEquals(503, response.getStatus());
+        Assert.assertEquals(message, ((HttpResponseBody) response.getEntity()).getMessage());
+        Assert.assertEquals(retryAfter, response.getHeaderString(HttpHeaders.RETRY_AFTER));
+    }
+
+    /**
+     * асинхронный ответ, запоминающий первый результат, как контейнер сервлетов
+     */
+    private static class TestAsyncResponse implements AsyncResponse {
+
+        private final CountDownLatch resumed = new CountDownLatch(1);
+        private volatile Response response;
+        private volatile TimeoutHandler timeoutHandler;
+        private volatile int timeouts;
+
+        void timeout() {
+            timeoutHandler.handleTimeout(this);
+        }
+
+        @Override
+        public synchronized boolean resume(Object response) {
+            if (!isSuspended()) {
+                return false;
+            }
+            this.response = (Response) response;
+            resumed.countDown();
+            return true;
+        }
+
+        @Override
+        public boolean resume(Throwable response) {
+            throw new IllegalStateException(response);
+        }
+
+        @Override
+        public boolean cancel() {
+            return false;
+        }
+
+        @Override
+        public boolean cancel(int retryAfter) {
+            return false;
+        }
+
+        @Override
+        public boolean cancel(Date retryAfter) {
+            return false;
+        }
+
+        @Override
+        public boolean isSuspended() {
+            return response == null;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public boolean isDone() {
+            return response != null;
+        }
+
+        @Override
+        public boolean setTimeout(long time, TimeUnit unit) {
+            timeouts++;
+            return true;
+        }
+
+        @Override
+        public void setTimeoutHandler(TimeoutHandler handler) {
+            timeoutHandler = handler;
+        }
+
+        @Override
+        public Collection<Class<?>> register(Class<?> callback) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Map<Class<?>, Collection<Class<?>>> register(Class<?> callback, Class<?>... callbacks) {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public Collection<Class<?>> register(Object callback) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Map<Class<?>, Collection<Class<?>>> register(Object callback, Object... callbacks) {
+            return Collections.emptyMap();
+        }
+
+    }
+
+}
@@ -0,0 +1,108 @@
+package app.helpers;
+
+import app.model.DailyMovement;
+import app.model.Product;
+import app.model.Purchase;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * потоковое чтение движений товара в отчётах ({@link FifoLedgerHelper#replay}): H2 выдаёт строки по мере чтения,
+ * а не строит результат целиком при выполнении запроса
+ */
+public class FifoLedgerHelperTest {
+
+    /**
+     * оба потока, открытые одновременно (как в replay), читаются лениво: изменения строк, ещё не прочитанных из потоков,
+     * сделанные в той же транзакции уже после начала чтения, видны в потоках. Если бы H2 строила результат целиком,
+     * потоки вернули бы прежние значения - и слои после последнего списанного читались бы из БД в любом случае
+     */
+    @Test
+    public void testReplayQueriesAreExecutedLazily() {
+
+        int layerCount = 3 * Constants.REPORT_FETCH_SIZE;
+        LocalDate firstDate = LocalDate.parse("2019-01-01");
+        LocalDate endDate = firstDate.plusDays(layerCount);
+        int changedFrom = 2 * Constants.REPORT_FETCH_SIZE;
+
+        try (Session session = HibernateHelper.getInstance().getFactory().openSession()) {
+            Transaction transaction = session.beginTransaction();
+            try {
+                Product product = new Product();
+                product.setName("lazy_replay");
+                session.save(product);
+
+                List<Purchase> purchases = new ArrayList<>();
+                for (int i = 0; i < layerCount; i++) {
+                    Purchase purchase = new Purchase();
+                    purchase.setProduct(product);
+                    purchase.setProductCount(1);
+                    purchase.setRemainingCount(1);
+                    purchase.setProductPrice(1);
+                    purchase.setPurchaseDate(firstDate.plusDays(i));
+                    session.save(purchase);
+                    purchases.add(purchase);
+
+                    DailyMovement day = new DailyMovement();
+                    day.setProduct(product);
+                    day.setMovementDate(purchase.getPurchaseDate());
+                    day.setPurchasedCount(1);
+                    day.setPurchasedCost(1);
+                    day.setPurchaseMovements(1);
+                    day.setRevenue(1);
+                    session.save(day);
+                }
+                session.flush();
+
+                try (Stream<Object[]> layerStream = FifoLedgerHelper.layerQuery(session, product, endDate, null, null)
+                        .setFetchSize(Constants.REPORT_FETCH_SIZE).stream();
+                     Stream<Object[]> dayStream = FifoLedgerHelper.dayQuery(session, product, null, endDate)
+                             .setFetchSize(Constants.REPORT_FETCH_SIZE).stream()) {
+
+                    Iterator<Object[]> layers = layerStream.iterator();
+                    Iterator<Object[]> days = dayStream.iterator();
+                    Assert.assertEquals(purchases.get(0).getId(), layers.next()[0]);
+                    Assert.assertEquals(firstDate, days.next()[0]);
+
+                    LocalDate changedDate = purchases.get(changedFrom).getPurchaseDate();
+                    session.createQuery("update Purchase p set p.productPrice = 2 where p.product = :product and p.purchaseDate >= :date")
+                            .setParameter("product", product)
+                            .setParameter("date", changedDate)
+                            .executeUpdate();
+                    session.createQuery("update DailyMovement d set d.revenue = 2 where d.product = :product and d.movementDate >= :date")
+                            .setParameter("product", product)
+                            .setParameter("date", changedDate)
+                            .executeUpdate();
+
+                    for (int i = 1; i < layerCount; i++) {
+                        double expected = i < changedFrom ? 1 : 2;
+                        Object[] layer = layers.next();
+                        Assert.assertEquals(purchases.get(i).getId(), layer[0]);
+                        Assert.assertEquals(expected, ((Number) layer[3]).doubleValue(), 0);
+                    }
+                    Assert.assertFalse(layers.hasNext());
+
+                    int dayCount = 1;
+                    while (days.hasNext()) {
+                        Object[] day = days.next();
+                        double expected = ((LocalDate) day[0]).isBefore(changedDate) ? 1 : 2;
+                        Assert.assertEquals(day[0].toString(), expected, ((Number) day[4]).doubleValue(), 0);
+                        dayCount++;
+                    }
+                    Assert.assertEquals(layerCount, dayCount);
+                }
+            } finally {
+                transaction.rollback();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,116 @@
+package app.helpers;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * объединение одновременных вычислений {@link SingleFlight}: вычисление удерживается на защёлке, пока все остальные
+ * запросы с тем же ключом не присоединятся к нему, поэтому результат не зависит от планирования потоков
+ */
+public class SingleFlightTest {
+
+    private static final int REQUEST_COUNT = 16;
+
+    private final SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+    private final ExecutorService executor = Executors.newFixedThreadPool(REQUEST_COUNT);
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger calculations = new AtomicInteger();
+
+    @After
+    public void shutdown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    /**
+     * одновременные запросы с одним ключом выполняют вычисление один раз, остальные N-1 получают его результат
+     */
+    @Test
+    public void testConcurrentCallsAreCoalesced() throws Exception {
+
+        List<Future<Integer>> results = new ArrayList<>();
+        results.add(executor.submit(() -> singleFlight.execute("key", this::blockingCalculation)));
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+        for (int i = 1; i < REQUEST_COUNT; i++) {
+            results.add(executor.submit(() -> singleFlight.execute("key", this::blockingCalculation)));
+        }
+
+        awaitCoalesced(REQUEST_COUNT - 1);
+        Assert.assertEquals(1, singleFlight.getInFlight());
+        release.countDown();
+
+        for (Future<Integer> result : results) {
+            Assert.assertEquals(Integer.valueOf(1), result.get(10, TimeUnit.SECONDS));
+        }
+        Assert.assertEquals(1, calculations.get());
+        Assert.assertEquals(1, singleFlight.getExecutions());
+        Assert.assertEquals(REQUEST_COUNT - 1, singleFlight.getCoalesced());
+        Assert.assertEquals(0, singleFlight.getInFlight());
+    }
+
+    /**
+     * исключение вычисления получают все присоединившиеся запросы, а следующий запрос после завершения вычисляет заново
+     */
+    @Test
+    public void testFailureIsSharedAndNotRemembered() throws Exception {
+
+        Future<Integer> first = executor.submit(() -> singleFlight.execute("key", () -> {
+            blockingCalculation();
+            throw new IllegalStateException("failed");
+        }));
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+        Future<Integer> second = executor.submit(() -> singleFlight.execute("key", this::blockingCalculation));
+
+        awaitCoalesced(1);
+        release.countDown();
+
+        for (Future<Integer> result : new Future[]{first, second}) {
+            try {
+                result.get(10, TimeUnit.SECONDS);
+                Assert.fail();
+            } catch (ExecutionException e) {
+                Assert.assertEquals("failed", e.getCause().getMessage());
+            }
+        }
+
+        Assert.assertEquals(Integer.valueOf(2), singleFlight.execute("key", this::blockingCalculation));
+        Assert.assertEquals(2, singleFlight.getExecutions());
+        Assert.assertEquals(1, singleFlight.getCoalesced());
+        Assert.assertEquals(0, singleFlight.getInFlight());
+    }
+
+    private Integer blockingCalculation() {
+        int calculation = calculations.incrementAndGet();
+        started.countDown();
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return calculation;
+    }
+
+    /**
+     * запрос учитывается как объединённый до того, как начинает ждать результат
+     */
+    private void awaitCoalesced(long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (singleFlight.getCoalesced() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(count, singleFlight.getCoalesced());
+    }
+
+}
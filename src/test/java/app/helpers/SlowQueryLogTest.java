@@ -0,0 +1,56 @@
+package app.helpers;
+
+import app.model.response.SlowQueryResponseBody;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+/**
+ * время запроса в журнале медленных запросов {@link SlowQueryLog} - это время работы драйвера: обработка строк приложением
+ * между чтениями в него не входит
+ */
+public class SlowQueryLogTest {
+
+    private final SlowQueryLog slowQueryLog = SlowQueryLog.getInstance();
+
+    @After
+    public void restoreThreshold() {
+        slowQueryLog.setThresholdMs(Constants.SLOW_QUERY_THRESHOLD_MS);
+        slowQueryLog.clear();
+    }
+
+    @Test
+    public void testRowProcessingIsNotCounted() throws Exception {
+
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:slow_query_log");
+        DataSource dataSource = slowQueryLog.wrap(h2);
+
+        slowQueryLog.clear();
+        slowQueryLog.setThresholdMs(0);
+        long processingMs = 300;
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("select x from system_range(1, ?)")) {
+            statement.setInt(1, 3);
+            try (ResultSet rows = statement.executeQuery()) {
+                while (rows.next()) {
+                    Thread.sleep(processingMs / 3);
+                }
+            }
+        }
+
+        Assert.assertEquals(1, slowQueryLog.getQueries().size());
+        SlowQueryResponseBody query = slowQueryLog.getQueries().get(0);
+        Assert.assertEquals(3, query.getRows());
+        Assert.assertTrue(String.valueOf(query.getDurationMs()), query.getDurationMs() < processingMs);
+        Assert.assertTrue(query.getDurationMs() >= query.getExecutionMs());
+    }
+
+}
@@ -1,12 +1,36 @@
 package rest;
 
 import app.RestConfig;
+import app.RunServer;
+import app.filters.RequestTimingFilter;
+import app.helpers.Constants;
+import app.helpers.HibernateHelper;
+import app.helpers.ReportCache;
+import app.helpers.WarmUp;
+import app.model.DailyMovement;
+import app.model.LedgerCheckpoint;
 import app.model.Product;
+import app.model.ProductLedger;
 import app.model.Purchase;
 import app.model.Selling;
 import app.model.request.PurchasesRequestModel;
 import app.model.request.SellingsRequestModel;
+import app.model.response.CacheRegionStatsResponseBody;
+import app.model.response.ConnectionPoolStatsResponseBody;
+import app.model.response.DatabaseExecutorStatsResponseBody;
+import app.model.response.HibernateStatsResponseBody;
 import app.model.response.HttpResponseBody;
+import app.model.response.ImportResponseBody;
+import app.model.response.ReportCacheStatsResponseBody;
+import app.model.response.SalesReportSeriesResponseBody;
+import app.model.response.SalesReportsResponseBody;
+import app.model.response.ServerStatsResponseBody;
+import app.model.response.SlowQueriesResponseBody;
+import app.model.response.SlowQueryResponseBody;
+import app.model.response.WarmUpResponseBody;
+import net.sf.ehcache.config.MemoryUnit;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
 import org.glassfish.jersey.test.JerseyTest;
 import org.glassfish.jersey.test.TestProperties;
 import org.hibernate.Hibernate;
@@ -15,6 +39,7 @@ import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
 import org.hibernate.cfg.Configuration;
 import org.hibernate.cfg.Environment;
+import org.hibernate.stat.Statistics;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -28,8 +53,18 @@ import javax.ws.rs.core.Response;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
  * https://memorynotfound.com/test-jersey-rest-service-with-junit/
@@ -77,15 +112,31 @@ public class RestServiceTest extends JerseyTest {
         hbnProperties.put(Environment.PASS, "pass");
         hbnProperties.put(Environment.SHOW_SQL, true);
         hbnProperties.put(Environment.FORMAT_SQL, true);
-        hbnProperties.put(Environment.HBM2DDL_AUTO, "create-drop");
+        /**
+         * схема не пересоздаётся, а только очищается от данных: иначе последовательности, из которых приложение
+         * получает id блоками (см. {@link app.helpers.Constants#ID_ALLOCATION_SIZE}), начинались бы заново
+         * и выдавали уже использованные в текущем тесте значения
+         */
+        hbnProperties.put(Environment.HBM2DDL_AUTO, "update");
 
         factory = new Configuration()
                 .setProperties(hbnProperties)
                 .addAnnotatedClass(Product.class)
                 .addAnnotatedClass(Purchase.class)
                 .addAnnotatedClass(Selling.class)
+                .addAnnotatedClass(ProductLedger.class)
+                .addAnnotatedClass(LedgerCheckpoint.class)
+                .addAnnotatedClass(DailyMovement.class)
                 .buildSessionFactory();
 
+        try (Session session = factory.openSession()) {
+            Transaction transaction = session.beginTransaction();
+            for (String entityName : new String[]{"LedgerCheckpoint", "ProductLedger", "DailyMovement", "Selling", "Purchase", "Product"}) {
+                session.createQuery("delete from " + entityName).executeUpdate();
+            }
+            transaction.commit();
+        }
+
     }
 
     @Test
@@ -102,6 +153,28 @@ public class RestServiceTest extends JerseyTest {
         Assert.assertEquals(expected, actual);
     }
 
+    @Test
+    public void testGetConnectionPoolStats() {
+
+        target("/api/newproduct")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(product, MediaType.APPLICATION_JSON));
+
+        Response serviceResponse = target("/admin/pool")
+                .request(MediaType.APPLICATION_JSON_TYPE)
+                .get();
+
+        Assert.assertEquals(200, serviceResponse.getStatus());
+
+        ConnectionPoolStatsResponseBody actual = serviceResponse.readEntity(ConnectionPoolStatsResponseBody.class);
+
+        Assert.assertEquals(Constants.POOL_NAME, actual.getPoolName());
+        Assert.assertEquals(Constants.POOL_MAX_SIZE, actual.getMaximumPoolSize());
+        Assert.assertTrue(actual.getTotalConnections() > 0);
+        Assert.assertTrue(actual.getTotalConnections() <= Constants.POOL_MAX_SIZE);
+        Assert.assertEquals(actual.getTotalConnections(), actual.getActiveConnections() + actual.getIdleConnections());
+    }
+
     @Test
     public void testCreateProduct() {
 
@@ -236,6 +309,126 @@ public class RestServiceTest extends JerseyTest {
 
     }
 
+    /**
+     * вставки закупок одного запроса уходят в БД пакетами (JDBC batch): запрос вставки подготавливается на пакет
+     * из {@link Constants#JDBC_BATCH_SIZE} строк, а не на каждую строку, а id выдаются блоками из последовательности
+     */
+    @Test
+    public void testPurchasesAreInsertedInBatches() {
+
+        target("/api/newproduct")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(product, MediaType.APPLICATION_JSON));
+
+        int purchaseCount = 4 * Constants.JDBC_BATCH_SIZE;
+        List<Purchase> purchases = new ArrayList<>();
+        for (int i = 0; i < purchaseCount; i++) {
+            purchases.add(createPurchase(1, i, "2019-08-24"));
+        }
+        PurchasesRequestModel purchaseRequestModel = new PurchasesRequestModel();
+        purchaseRequestModel.setPurchases(purchases);
+
+        Statistics statistics = HibernateHelper.getInstance().getFactory().getStatistics();
+        Assert.assertTrue(statistics.isStatisticsEnabled());
+        statistics.clear();
+
+        HttpResponseBody response = target("/api/purchase")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(purchaseRequestModel, MediaType.APPLICATION_JSON), HttpResponseBody.class);
+
+        Assert.assertEquals(200, response.getCode());
+        Assert.assertEquals(purchaseCount, statistics.getEntityStatistics(Purchase.class.getName()).getInsertCount());
+        Assert.assertTrue("prepared statements: " + statistics.getPrepareStatementCount(),
+                statistics.getPrepareStatementCount() < purchaseCount / 4);
+    }
+
+    /**
+     * закупки и продажи существующего и несуществующего товара в одном запросе: движения существующего товара сохраняются,
+     * для несуществующего возвращается ошибка
+     */
+    @Test
+    public void testBuyAndSellExistingAndMissingProducts() {
+
+        target("/api/newproduct")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(product, MediaType.APPLICATION_JSON));
+
+        Product missingProduct = new Product();
+        missingProduct.setName("missing");
+
+        Purchase missingPurchase = createPurchase(1, 1, "2019-08-24");
+        missingPurchase.setProduct(missingProduct);
+        PurchasesRequestModel purchaseRequestModel = new PurchasesRequestModel();
+        purchaseRequestModel.setPurchases(Arrays.asList(missingPurchase, purchase));
+
+        HttpResponseBody purchaseResponse = target("/api/purchase")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(purchaseRequestModel, MediaType.APPLICATION_JSON), HttpResponseBody.class);
+
+        Assert.assertEquals(200, purchaseResponse.getCode());
+        Assert.assertEquals("Error: product [missing] does not exist. Purchase for product [test] saved.", purchaseResponse.getMessage());
+
+        Selling missingSelling = createSelling(1, 1, "2019-08-24");
+        missingSelling.setProduct(missingProduct);
+        SellingsRequestModel sellingRequestModel = new SellingsRequestModel();
+        sellingRequestModel.setSellings(Arrays.asList(selling, missingSelling));
+
+        HttpResponseBody sellingResponse = target("/api/demand")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(sellingRequestModel, MediaType.APPLICATION_JSON), HttpResponseBody.class);
+
+        Assert.assertEquals(200, sellingResponse.getCode());
+        Assert.assertEquals("Selling for product [test] saved. Error: product [missing] does not exist.", sellingResponse.getMessage());
+
+        try (Session session = factory.openSession()) {
+            Assert.assertEquals(Long.valueOf(1), session.createQuery("select count(p) from Purchase p", Long.class).uniqueResult());
+            Assert.assertEquals(Long.valueOf(1), session.createQuery("select count(s) from Selling s", Long.class).uniqueResult());
+            Assert.assertEquals(Long.valueOf(0), session.createQuery("select count(p) from Product p where p.name = 'missing'", Long.class)
+                    .uniqueResult());
+        }
+        Assert.assertEquals(incomeMessage("2019-08-24", 3 * (7.2 - 3.2)), getSalesReportMessage("2019-08-24"));
+    }
+
+    /**
+     * несколько движений одного товара в одном запросе изменяют один и тот же остаток товара:
+     * продажа, для которой не хватает остатка после предыдущих продаж запроса, не сохраняется
+     */
+    @Test
+    public void testBuyAndSellSameProductSeveralTimesInOneRequest() {
+
+        target("/api/newproduct")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(product, MediaType.APPLICATION_JSON));
+
+        PurchasesRequestModel purchaseRequestModel = new PurchasesRequestModel();
+        purchaseRequestModel.setPurchases(Arrays.asList(createPurchase(5, 3, "2019-08-24"), createPurchase(2, 4, "2019-08-24")));
+
+        HttpResponseBody purchaseResponse = target("/api/purchase")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(purchaseRequestModel, MediaType.APPLICATION_JSON), HttpResponseBody.class);
+
+        Assert.assertEquals("Purchase for product [test] saved. Purchase for product [test] saved.", purchaseResponse.getMessage());
+
+        SellingsRequestModel sellingRequestModel = new SellingsRequestModel();
+        sellingRequestModel.setSellings(Arrays.asList(createSelling(4, 10, "2019-08-25"), createSelling(4, 10, "2019-08-25"),
+                createSelling(3, 10, "2019-08-25")));
+
+        HttpResponseBody sellingResponse = target("/api/demand")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(sellingRequestModel, MediaType.APPLICATION_JSON), HttpResponseBody.class);
+
+        Assert.assertEquals("Selling for product [test] saved. " +
+                "Error: in product [test] - actual product count must be equal or greater productCount in selling" +
+                "Selling for product [test] saved.", sellingResponse.getMessage());
+
+        try (Session session = factory.openSession()) {
+            Assert.assertEquals(Integer.valueOf(0), session.createQuery("select p.count from Product p where p.name = :name", Integer.class)
+                    .setParameter("name", product.getName())
+                    .uniqueResult());
+        }
+        Assert.assertEquals(incomeMessage("2019-08-25", 7 * 10 - 5 * 3 - 2 * 4), getSalesReportMessage("2019-08-25"));
+    }
+
     @Test
     public void testGetSalesReport() {
 
@@ -279,6 +472,1072 @@ public class RestServiceTest extends JerseyTest {
 
     }
 
+    @Test
+    public void testGetSalesReportOnPastDateAfterBackDatedPurchase() {
+
+        target("/api/newproduct")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(product, MediaType.APPLICATION_JSON));
+
+        PurchasesRequestModel purchaseRequestModel = new PurchasesRequestModel();
+        purchaseRequestModel.setPurchases(Arrays.asList(
+                createPurchase(1, 1000, "2019-08-01"),
+                createPurchase(2, 2000, "2019-08-10")
+        ));
+        target("/api/purchase")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(purchaseRequestModel, MediaType.APPLICATION_JSON));
+
+        SellingsRequestModel sellingRequestModel = new SellingsRequestModel();
+        sellingRequestModel.setSellings(Arrays.asList(
+                createSelling(2, 5000, "2019-08-15"),
+                createSelling(1, 5000, "2019-08-20")
+        ));
+        target("/api/demand")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(sellingRequestModel, MediaType.APPLICATION_JSON));
+
+        Assert.assertEquals(incomeMessage("2019-08-15", 7000), getSalesReportMessage("2019-08-15"));
+        Assert.assertEquals(incomeMessage("2019-08-20", 10000), getSalesReportMessage("2019-08-20"));
+
+        /**
+         * закупка "задним числом" меняет очередь FIFO для уже рассчитанных продаж
+         */
+        purchaseRequestModel.setPurchases(Arrays.asList(createPurchase(1, 500, "2019-08-05")));
+        target("/api/purchase")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(purchaseRequestModel, MediaType.APPLICATION_JSON));
+
+        Assert.assertEquals(incomeMessage("2019-08-04", 0), getSalesReportMessage("2019-08-04"));
+        Assert.assertEquals(incomeMessage("2019-08-15", 8500), getSalesReportMessage("2019-08-15"));
+        Assert.assertEquals(incomeMessage("2019-08-20", 11500), getSalesReportMessage("2019-08-20"));
+    }
+
+    @Test
+    public void testGetSalesReportFromCheckpoints() {
+
+        target("/api/newproduct")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(product, MediaType.APPLICATION_JSON));
+
+        LocalDate startDate = LocalDate.parse("2019-01-01");
+        List<Purchase> purchases = new ArrayList<>();
+        List<Selling> sellings = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            purchases.add(createPurchase(2, 10 + i % 7, startDate.plusDays(i).toString()));
+            sellings.add(createSelling(1, 50, startDate.plusDays(i).toString()));
+        }
+
+        PurchasesRequestModel purchaseRequestModel = new PurchasesRequestModel();
+        purchaseRequestModel.setPurchases(purchases);
+        target("/api/purchase")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(purchaseRequestModel, MediaType.APPLICATION_JSON));
+
+        SellingsRequestModel sellingRequestModel = new SellingsRequestModel();
+        sellingRequestModel.setSellings(sellings);
+        target("/api/demand")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(sellingRequestModel, MediaType.APPLICATION_JSON));
+
+        Purchase backDatedPurchase = createPurchase(1, 1, startDate.plusDays(20).toString());
+        purchaseRequestModel.setPurchases(Arrays.asList(backDatedPurchase));
+        target("/api/purchase")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(purchaseRequestModel, MediaType.APPLICATION_JSON));
+        purchases.add(backDatedPurchase);
+
+        long checkpointCount;
+        try (Session session = factory.openSession()) {
+            checkpointCount = session.createQuery("select count(c) from LedgerCheckpoint c", Long.class).getSingleResult();
+        }
+        Assert.assertTrue(checkpointCount > 0);
+
+        for (int day : new int[]{10, 20, 60, 99, 100, 120, 149, 200}) {
+            String date = startDate.plusDays(day).toString();
+            Assert.assertEquals(incomeMessage(date, expectedIncome(purchases, sellings, LocalDate.parse(date))),
+                    getSalesReportMessage(date));
+        }
+
+        SalesReportSeriesResponseBody dailySeries = target("/api/salesreport/test/" + startDate.plusDays(95) + "/" + startDate.plusDays(125))
+                .request(MediaType.APPLICATION_JSON)
+                .get(SalesReportSeriesResponseBody.class);
+        Assert.assertEquals(31, dailySeries.getIncomes().size());
+        for (int day = 95; day <= 125; day++) {
+            LocalDate date = startDate.plusDays(day);
+            Assert.assertEquals(Math.round(expectedIncome(purchases, sellings, date) * 100) / 100.0,
+                    dailySeries.getIncomes().get(date.toString()), 0);
+        }
+
+        SalesReportSeriesResponseBody monthlySeries = target("/api/salesreport/test/2018-12-15/2019-07-10")
+                .queryParam("granularity", "month")
+                .request(MediaType.APPLICATION_JSON)
+                .get(SalesReportSeriesResponseBody.class);
+        Assert.assertEquals(Arrays.asList("2018-12-31", "2019-01-31", "2019-02-28", "2019-03-31", "2019-04-30",
+                "2019-05-31", "2019-06-30", "2019-07-10"), new ArrayList<>(monthlySeries.getIncomes().keySet()));
+        monthlySeries.getIncomes().forEach((date, income) -> Assert.assertEquals(
+                Math.round(expectedIncome(purchases, sellings, LocalDate.parse(date)) * 100) / 100.0, income, 0));
+    }
+
+    /**
+     * отчёты на прошедшие даты, для которых слоёв себестоимости больше, чем строк в одном обращении драйвера JDBC
+     * ({@link Constants#REPORT_FETCH_SIZE}): слои читаются потоково (FifoReplay) через границу порций
+     */
+    @Test
+    public void testGetSalesReportsOverMoreLayersThanFetchSize() {
+
+        target("/api/newproduct")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(product, MediaType.APPLICATION_JSON));
+
+        int layerCount = 2 * Constants.REPORT_FETCH_SIZE + Constants.REPORT_FETCH_SIZE / 2;
+        List<Purchase> purchases = new ArrayList<>();
+        for (int i = 0; i < layerCount; i++) {
+            purchases.add(createPurchase(1, 10 + i % 7, "2019-01-01"));
+        }
+        List<Selling> sellings = new ArrayList<>(Arrays.asList(createSelling(layerCount - 100, 50, "2019-01-02")));
+
+        PurchasesRequestModel purchaseRequestModel = new PurchasesRequestModel();
+        purchaseRequestModel.setPurchases(purchases);
+        target("/api/purchase")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(purchaseRequestModel, MediaType.APPLICATION_JSON));
+
+        SellingsRequestModel sellingRequestModel = new SellingsRequestModel();
+        sellingRequestModel.setSellings(sellings);
+        target("/api/demand")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(sellingRequestModel, MediaType.APPLICATION_JSON));
+
+        /**
+         * более поздние движения: отчёты на 2019-01-02 рассчитываются по слоям, а не берутся из журнала,
+         * и водяной знак журнала уходит дальше даты отчёта
+         */
+        Purchase laterPurchase = createPurchase(1, 5, "2019-01-03");
+        purchaseRequestModel.setPurchases(Arrays.asList(laterPurchase));
+        target("/api/purchase")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(purchaseRequestModel, MediaType.APPLICATION_JSON));
+        purchases.add(laterPurchase);
+
+        Selling laterSelling = createSelling(50, 60, "2019-01-03");
+        sellingRequestModel.setSellings(Arrays.asList(laterSelling));
+        target("/api/demand")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(sellingRequestModel, MediaType.APPLICATION_JSON));
+        sellings.add(laterSelling);
+
+        for (String date : new String[]{"2019-01-01", "2019-01-02", "2019-01-03"}) {
+            double expected = expectedIncome(purchases, sellings, LocalDate.parse(date));
+            Assert.assertEquals(incomeMessage(date, expected), getSalesReportMessage(date));
+
+            SalesReportsResponseBody reports = target("/api/salesreports/" + date)
+                    .queryParam("name", product.getName())
+                    .request(MediaType.APPLICATION_JSON)
+                    .get(SalesReportsResponseBody.class);
+            Assert.assertEquals(Math.round(expected * 100) / 100.0, reports.getIncomes().get(product.getName()), 0);
+        }
+
+        SalesReportSeriesResponseBody series = target("/api/salesreport/test/2019-01-01/2019-01-03")
+                .request(MediaType.APPLICATION_JSON)
+                .get(SalesReportSeriesResponseBody.class);
+        series.getIncomes().forEach((date, income) -> Assert.assertEquals(
+                Math.round(expectedIncome(purchases, sellings, LocalDate.parse(date)) * 100) / 100.0, income, 0));
+    }
+
+    @Test
+    public void testGetSalesReports() {
+
+        Product secondProduct = new Product();
+        secondProduct.setName("test2");
+
+        target("/api/newproduct")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(product, MediaType.APPLICATION_JSON));
+        target("/api/newproduct")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(secondProduct, MediaType.APPLICATION_JSON));
+
+        Purchase secondPurchase = createPurchase(4, 10, "2019-08-20");
+        secondPurchase.setProduct(secondProduct);
+        Selling secondSelling = createSelling(2, 15, "2019-08-25");
+        secondSelling.setProduct(secondProduct);
+
+        PurchasesRequestModel purchaseRequestModel = new PurchasesRequestModel();
+        purchaseRequestModel.setPurchases(Arrays.asList(purchase, secondPurchase));
+        target("/api/purchase")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(purchaseRequestModel, MediaType.APPLICATION_JSON));
+
+        SellingsRequestModel sellingRequestModel = new SellingsRequestModel();
+        sellingRequestModel.setSellings(Arrays.asList(selling, secondSelling));
+        target("/api/demand")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(sellingRequestModel, MediaType.APPLICATION_JSON));
+
+        SalesReportsResponseBody actual = target("/api/salesreports/2019-08-24")
+                .queryParam("name", "test", "test2", "unknown")
+                .request(MediaType.APPLICATION_JSON)
+                .get(SalesReportsResponseBody.class);
+
+        Map<String, Double> expectedIncomes = new TreeMap<>();
+        expectedIncomes.put("test", Math.round(selling.getProductCount() * (selling.getProductPrice() - purchase.getProductPrice()) * 100) / 100.0);
+        expectedIncomes.put("test2", 0.0);
+
+        Assert.assertEquals(200, actual.getCode());
+        Assert.assertEquals("Error: product [unknown] does not exist.", actual.getMessage());
+        Assert.assertEquals(expectedIncomes, actual.getIncomes());
+
+        actual = target("/api/salesreports/2019-08-25")
+                .request(MediaType.APPLICATION_JSON)
+                .get(SalesReportsResponseBody.class);
+        expectedIncomes.put("test2", 10.0);
+
+        Assert.assertEquals(expectedIncomes, actual.getIncomes());
+    }
+
+    @Test
+    public void testImportPurchasesAndSellings() {
+
+        target("/api/newproduct")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(product, MediaType.APPLICATION_JSON));
+
+        String purchasesCsv = "name,count,price,date\n" +
+                "test,1,1000,2019-01-01\n" +
+                "test,2,2000,2019-02-01\n" +
+                "unknown,1,1,2019-02-01\n" +
+                "test,1,3000,2019-02-02\n";
+
+        ImportResponseBody purchasesResponse = target("/api/import/purchases")
+                .queryParam("chunkSize", 2)
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(purchasesCsv, "text/csv"), ImportResponseBody.class);
+
+        Assert.assertEquals(200, purchasesResponse.getCode());
+        Assert.assertEquals("Imported 3 of 4 purchases", purchasesResponse.getMessage());
+        Assert.assertEquals(2, purchasesResponse.getChunks().size());
+        Assert.assertEquals("Saved 1 of records 3-4. Error: product [unknown] does not exist.", purchasesResponse.getChunks().get(1).getMessage());
+
+        String sellingsNdjson = "{\"productCount\":2,\"productPrice\":5000,\"sellingDate\":\"2019-03-01\",\"product\":{\"name\":\"test\"}}\n" +
+                "{\"productCount\":1,\"productPrice\":5000,\"sellingDate\":\"2019-03-02\",\"product\":{\"name\":\"test\"}}\n";
+
+        ImportResponseBody sellingsResponse = target("/api/import/sellings")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(sellingsNdjson, "application/x-ndjson"), ImportResponseBody.class);
+
+        Assert.assertEquals("Imported 2 of 2 sellings", sellingsResponse.getMessage());
+        Assert.assertEquals(incomeMessage("2019-03-01", 7000), getSalesReportMessage("2019-03-01"));
+        Assert.assertEquals(incomeMessage("2019-03-02", 10000), getSalesReportMessage("2019-03-02"));
+
+        Response malformedResponse = target("/api/import/purchases")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity("test,1,1000,2019-04-01\ntest,one,1000,2019-04-02\n", "text/csv"));
+
+        Assert.assertEquals(400, malformedResponse.getStatus());
+        Assert.assertEquals(1, malformedResponse.readEntity(ImportResponseBody.class).getChunks().size());
+    }
+
+    /**
+     * размер порции загрузки ограничен настройкой import.max_chunk_size: больший размер отклоняется до чтения записей
+     */
+    @Test
+    public void testImportChunkSizeLimits() {
+
+        target("/api/newproduct")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(product, MediaType.APPLICATION_JSON));
+
+        String purchasesCsv = "test,1,1000,2019-01-01\n";
+
+        for (int chunkSize : new int[]{0, Constants.IMPORT_MAX_CHUNK_SIZE + 1, Integer.MAX_VALUE}) {
+            Response response = target("/api/import/purchases")
+                    .queryParam("chunkSize", chunkSize)
+                    .request(MediaType.APPLICATION_JSON)
+                    .post(Entity.entity(purchasesCsv, "text/csv"));
+
+            Assert.assertEquals(400, response.getStatus());
+            Assert.assertEquals("chunkSize must be > 0 and <= " + Constants.IMPORT_MAX_CHUNK_SIZE,
+                    response.readEntity(ImportResponseBody.class).getMessage());
+        }
+
+        ImportResponseBody response = target("/api/import/purchases")
+                .queryParam("chunkSize", Constants.IMPORT_MAX_CHUNK_SIZE)
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(purchasesCsv, "text/csv"), ImportResponseBody.class);
+
+        Assert.assertEquals("Imported 1 of 1 purchases", response.getMessage());
+    }
+
+    /**
+     * дневные итоги движений обновляются при закупках/продажах и восстанавливаются служебным методом перестроения
+     */
+    @Test
+    public void testDailyMovementsAndRebuild() {
+
+        target("/api/newproduct")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(product, MediaType.APPLICATION_JSON));
+
+        PurchasesRequestModel purchaseRequestModel = new PurchasesRequestModel();
+        purchaseRequestModel.setPurchases(Arrays.asList(createPurchase(1, 1000, "2019-01-01"),
+                createPurchase(2, 2000, "2019-01-01"), createPurchase(4, 500, "2019-01-02")));
+        target("/api/purchase")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(purchaseRequestModel, MediaType.APPLICATION_JSON));
+
+        SellingsRequestModel sellingRequestModel = new SellingsRequestModel();
+        sellingRequestModel.setSellings(Arrays.asList(createSelling(1, 5000, "2019-01-02"), createSelling(1, 4000, "2019-01-02")));
+        target("/api/demand")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(sellingRequestModel, MediaType.APPLICATION_JSON));
+
+        String expectedDays = "2019-01-01: 3, 5000.0, 2, 0, 0.0, 0; 2019-01-02: 4, 2000.0, 1, 2, 9000.0, 2";
+        Assert.assertEquals(expectedDays, dailyMovements());
+
+        try (Session session = factory.openSession()) {
+            Transaction transaction = session.beginTransaction();
+            for (String entityName : new String[]{"LedgerCheckpoint", "ProductLedger", "DailyMovement"}) {
+                session.createQuery("delete from " + entityName).executeUpdate();
+            }
+            transaction.commit();
+        }
+
+        HttpResponseBody rebuildResponse = target("/admin/rebuild")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity("", MediaType.APPLICATION_JSON), HttpResponseBody.class);
+
+        Assert.assertEquals(200, rebuildResponse.getCode());
+        Assert.assertEquals("Rebuilt 1 products.", rebuildResponse.getMessage());
+        Assert.assertEquals(expectedDays, dailyMovements());
+        Assert.assertEquals(incomeMessage("2019-01-01", 0), getSalesReportMessage("2019-01-01"));
+        Assert.assertEquals(incomeMessage("2019-01-02", 9000 - 1000 - 2000), getSalesReportMessage("2019-01-02"));
+    }
+
+    /**
+     * ошибка при перестроении одного товара не прерывает перестроение остальных: товары перестраиваются в отдельных
+     * транзакциях, а ответ с кодом 500 перечисляет товары с ошибками
+     */
+    @Test
+    public void testRebuildContinuesAfterFailedProduct() {
+
+        Product lockedProduct = new Product();
+        lockedProduct.setName("locked");
+        for (Product newProduct : new Product[]{lockedProduct, product}) {
+            target("/api/newproduct")
+                    .request(MediaType.APPLICATION_JSON)
+                    .post(Entity.entity(newProduct, MediaType.APPLICATION_JSON));
+        }
+
+        Purchase lockedPurchase = createPurchase(1, 1000, "2019-01-01");
+        lockedPurchase.setProduct(lockedProduct);
+        PurchasesRequestModel purchaseRequestModel = new PurchasesRequestModel();
+        purchaseRequestModel.setPurchases(Arrays.asList(lockedPurchase, createPurchase(2, 500, "2019-01-02")));
+        target("/api/purchase")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(purchaseRequestModel, MediaType.APPLICATION_JSON));
+
+        try (Session session = factory.openSession()) {
+            Transaction transaction = session.beginTransaction();
+            session.createQuery("delete from DailyMovement d where d.product.id in (select p.id from Product p where p.name = :name)")
+                    .setParameter("name", product.getName())
+                    .executeUpdate();
+            transaction.commit();
+        }
+        Assert.assertEquals("2019-01-01: 1, 1000.0, 1, 0, 0.0, 0", dailyMovements());
+
+        HttpResponseBody rebuildResponse;
+        /**
+         * дневные итоги товара "locked" заблокированы незавершённой транзакцией, поэтому его перестроение завершается ошибкой
+         * по таймауту блокировки
+         */
+        try (Session session = factory.openSession()) {
+            Transaction transaction = session.beginTransaction();
+            int lockedDays = session.createQuery("update DailyMovement d set d.revenue = d.revenue + 1 " +
+                    "where d.product.id in (select p.id from Product p where p.name = :name)")
+                    .setParameter("name", lockedProduct.getName())
+                    .executeUpdate();
+            Assert.assertEquals(1, lockedDays);
+
+            Response response = target("/admin/rebuild")
+                    .queryParam("name", lockedProduct.getName(), "missing", product.getName())
+                    .request(MediaType.APPLICATION_JSON)
+                    .post(Entity.entity("", MediaType.APPLICATION_JSON));
+            Assert.assertEquals(500, response.getStatus());
+            rebuildResponse = response.readEntity(HttpResponseBody.class);
+
+            transaction.rollback();
+        }
+
+        Assert.assertEquals(500, rebuildResponse.getCode());
+        Assert.assertEquals("Rebuilt 1 products. Error: exception occurred while rebuilding product [locked]. " +
+                "Error: product [missing] does not exist.", rebuildResponse.getMessage());
+        Assert.assertEquals("2019-01-01: 1, 1000.0, 1, 0, 0.0, 0; 2019-01-02: 2, 1000.0, 1, 0, 0.0, 0", dailyMovements());
+    }
+
+    /**
+     * водяной знак журнала сдвигается по мере списания и переносится назад при закупке "задним числом",
+     * а отчёт по нескольким товарам на прошедшую дату, рассчитанный от водяного знака, совпадает с расчётом "в лоб"
+     */
+    @Test
+    public void testConsumedLayerWatermark() {
+
+        target("/api/newproduct")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(product, MediaType.APPLICATION_JSON));
+
+        List<Purchase> purchases = new ArrayList<>(Arrays.asList(createPurchase(2, 10, "2019-01-01"),
+                createPurchase(2, 20, "2019-01-02"), createPurchase(2, 30, "2019-01-03")));
+        List<Selling> sellings = new ArrayList<>(Arrays.asList(createSelling(3, 100, "2019-01-03")));
+
+        PurchasesRequestModel purchaseRequestModel = new PurchasesRequestModel();
+        purchaseRequestModel.setPurchases(purchases);
+        target("/api/purchase")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(purchaseRequestModel, MediaType.APPLICATION_JSON));
+
+        SellingsRequestModel sellingRequestModel = new SellingsRequestModel();
+        sellingRequestModel.setSellings(sellings);
+        target("/api/demand")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(sellingRequestModel, MediaType.APPLICATION_JSON));
+        Assert.assertEquals("2019-01-02, 2, 20.0", watermark());
+
+        Purchase backDatedPurchase = createPurchase(1, 5, "2018-12-31");
+        purchaseRequestModel.setPurchases(Arrays.asList(backDatedPurchase));
+        target("/api/purchase")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(purchaseRequestModel, MediaType.APPLICATION_JSON));
+        purchases.add(backDatedPurchase);
+        Assert.assertEquals("2019-01-01, 1, 5.0", watermark());
+
+        Selling lastSelling = createSelling(1, 100, "2019-01-04");
+        sellingRequestModel.setSellings(Arrays.asList(lastSelling));
+        target("/api/demand")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(sellingRequestModel, MediaType.APPLICATION_JSON));
+        sellings.add(lastSelling);
+        Assert.assertEquals("2019-01-02, 3, 25.0", watermark());
+
+        for (String date : new String[]{"2019-01-01", "2019-01-03", "2019-01-04"}) {
+            SalesReportsResponseBody report = target("/api/salesreports/" + date)
+                    .request(MediaType.APPLICATION_JSON)
+                    .get(SalesReportsResponseBody.class);
+            Assert.assertEquals(Math.round(expectedIncome(purchases, sellings, LocalDate.parse(date)) * 100) / 100.0,
+                    report.getIncomes().get(product.getName()), 0);
+            Assert.assertEquals(incomeMessage(date, expectedIncome(purchases, sellings, LocalDate.parse(date))),
+                    getSalesReportMessage(date));
+        }
+    }
+
+    /**
+     * повторный отчёт берётся из кэша; продажа позже даты отчёта не затрагивает кэш, а продажа "задним числом" удаляет отчёт из кэша
+     */
+    @Test
+    public void testSalesReportCache() {
+
+        target("/api/newproduct")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(product, MediaType.APPLICATION_JSON));
+
+        PurchasesRequestModel purchaseRequestModel = new PurchasesRequestModel();
+        purchaseRequestModel.setPurchases(Arrays.asList(purchase));
+        target("/api/purchase")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(purchaseRequestModel, MediaType.APPLICATION_JSON));
+
+        SellingsRequestModel sellingRequestModel = new SellingsRequestModel();
+        sellingRequestModel.setSellings(Arrays.asList(selling));
+        target("/api/demand")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(sellingRequestModel, MediaType.APPLICATION_JSON));
+
+        ReportCacheStatsResponseBody initialStats = reportCacheStats();
+        String expected = incomeMessage("2019-08-24", 3 * (7.2 - 3.2));
+        Assert.assertEquals(expected, getSalesReportMessage("2019-08-24"));
+        Assert.assertEquals(expected, getSalesReportMessage("2019-08-24"));
+
+        ReportCacheStatsResponseBody stats = reportCacheStats();
+        Assert.assertEquals(initialStats.getMisses() + 1, stats.getMisses());
+        Assert.assertEquals(initialStats.getHits() + 1, stats.getHits());
+        Assert.assertEquals(1, stats.getSize());
+
+        sellingRequestModel.setSellings(Arrays.asList(createSelling(1, 10, "2019-08-25")));
+        target("/api/demand")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(sellingRequestModel, MediaType.APPLICATION_JSON));
+        Assert.assertEquals(expected, getSalesReportMessage("2019-08-24"));
+        Assert.assertEquals(initialStats.getHits() + 2, reportCacheStats().getHits());
+
+        sellingRequestModel.setSellings(Arrays.asList(createSelling(1, 10, "2019-08-23")));
+        target("/api/demand")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(sellingRequestModel, MediaType.APPLICATION_JSON));
+        Assert.assertEquals(incomeMessage("2019-08-24", 3 * 7.2 + 10 - 4 * 3.2), getSalesReportMessage("2019-08-24"));
+
+        stats = reportCacheStats();
+        Assert.assertEquals(initialStats.getInvalidations() + 1, stats.getInvalidations());
+        Assert.assertEquals(initialStats.getMisses() + 2, stats.getMisses());
+    }
+
+    /**
+     * одновременные запросы одного отчёта получают одинаковый результат; каждый запрос либо берёт отчёт из кэша,
+     * либо выполняет расчёт, либо получает результат расчёта, выполняемого другим запросом. Сколько запросов будет объединено,
+     * зависит от планирования потоков, поэтому само объединение проверяется в {@link app.helpers.SingleFlightTest}
+     */
+    @Test
+    public void testConcurrentSalesReportsAreConsistent() throws Exception {
+
+        target("/api/newproduct")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(product, MediaType.APPLICATION_JSON));
+
+        PurchasesRequestModel purchaseRequestModel = new PurchasesRequestModel();
+        purchaseRequestModel.setPurchases(Arrays.asList(purchase));
+        target("/api/purchase")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(purchaseRequestModel, MediaType.APPLICATION_JSON));
+
+        SellingsRequestModel sellingRequestModel = new SellingsRequestModel();
+        sellingRequestModel.setSellings(Arrays.asList(selling));
+        target("/api/demand")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(sellingRequestModel, MediaType.APPLICATION_JSON));
+
+        int requestCount = 32;
+        ReportCacheStatsResponseBody initialStats = reportCacheStats();
+        ExecutorService executor = Executors.newFixedThreadPool(requestCount);
+        try {
+            List<Future<String>> messages = new ArrayList<>();
+            for (int i = 0; i < requestCount; i++) {
+                messages.add(executor.submit(() -> getSalesReportMessage("2019-08-24")));
+            }
+            for (Future<String> message : messages) {
+                Assert.assertEquals(incomeMessage("2019-08-24", 3 * (7.2 - 3.2)), message.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        ReportCacheStatsResponseBody stats = reportCacheStats();
+        Assert.assertEquals(requestCount, (stats.getHits() - initialStats.getHits())
+                + (stats.getCalculations() - initialStats.getCalculations())
+                + (stats.getCoalescedRequests() - initialStats.getCoalescedRequests()));
+        Assert.assertTrue(stats.getCalculations() > initialStats.getCalculations());
+        Assert.assertEquals(0, stats.getInFlightCalculations());
+    }
+
+    /**
+     * одновременные первые отчёты по товару без журнала строят журнал один раз (под блокировкой товара) и не завершаются ошибкой
+     */
+    @Test
+    public void testConcurrentReportsBuildMissingLedgerOnce() throws Exception {
+
+        target("/api/newproduct")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(product, MediaType.APPLICATION_JSON));
+
+        PurchasesRequestModel purchaseRequestModel = new PurchasesRequestModel();
+        purchaseRequestModel.setPurchases(Arrays.asList(purchase));
+        target("/api/purchase")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(purchaseRequestModel, MediaType.APPLICATION_JSON));
+
+        SellingsRequestModel sellingRequestModel = new SellingsRequestModel();
+        sellingRequestModel.setSellings(Arrays.asList(selling));
+        target("/api/demand")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(sellingRequestModel, MediaType.APPLICATION_JSON));
+
+        try (Session session = factory.openSession()) {
+            Transaction transaction = session.beginTransaction();
+            for (String entityName : new String[]{"LedgerCheckpoint", "ProductLedger"}) {
+                session.createQuery("delete from " + entityName).executeUpdate();
+            }
+            transaction.commit();
+        }
+
+        /**
+         * отчёты на разные даты, чтобы расчёты не объединялись в один
+         */
+        int requestCount = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(requestCount);
+        try {
+            List<Future<String>> messages = new ArrayList<>();
+            for (int i = 0; i < requestCount; i++) {
+                String date = LocalDate.parse("2019-08-24").plusDays(i).toString();
+                messages.add(executor.submit(() -> getSalesReportMessage(date)));
+            }
+            for (int i = 0; i < requestCount; i++) {
+                String date = LocalDate.parse("2019-08-24").plusDays(i).toString();
+                Assert.assertEquals(incomeMessage(date, 3 * (7.2 - 3.2)), messages.get(i).get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        try (Session session = factory.openSession()) {
+            Assert.assertEquals(Long.valueOf(1), session.createQuery("select count(l) from ProductLedger l", Long.class).uniqueResult());
+        }
+    }
+
+    /**
+     * асинхронные методы выполняют запросы к БД в пуле потоков размером с пул соединений и не теряют ответы
+     */
+    @Test
+    public void testDatabaseExecutorStats() {
+
+        target("/api/newproduct")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(product, MediaType.APPLICATION_JSON));
+        Assert.assertEquals(incomeMessage("2019-08-24", 0), getSalesReportMessage("2019-08-24"));
+
+        DatabaseExecutorStatsResponseBody stats = target("/admin/dbexecutor")
+                .request(MediaType.APPLICATION_JSON)
+                .get(DatabaseExecutorStatsResponseBody.class);
+
+        Assert.assertEquals(Constants.POOL_MAX_SIZE, stats.getThreads());
+        Assert.assertEquals(Constants.DB_EXECUTOR_QUEUE_SIZE, stats.getQueueCapacity());
+        Assert.assertEquals(Constants.POOL_MAX_SIZE, stats.getConnectionPermits());
+        Assert.assertEquals(0, stats.getConnectionWaiters());
+        Assert.assertEquals(0, stats.getQueueSize());
+        Assert.assertEquals(0, stats.getRejectedRequests());
+        Assert.assertEquals(0, stats.getTimedOutRequests());
+    }
+
+    /**
+     * статистика Hibernate показывает работу кэша запросов по названию товара и сбрасывается по запросу
+     */
+    @Test
+    public void testHibernateStats() {
+
+        target("/api/newproduct")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(product, MediaType.APPLICATION_JSON));
+        target("/admin/hibernate/reset")
+                .request(MediaType.APPLICATION_JSON)
+                .post(null);
+
+        getSalesReportMessage("2019-08-24");
+        getSalesReportMessage("2019-08-25");
+
+        HibernateStatsResponseBody stats = target("/admin/hibernate")
+                .request(MediaType.APPLICATION_JSON)
+                .get(HibernateStatsResponseBody.class);
+        Assert.assertTrue(stats.isStatisticsEnabled());
+
+        Map<String, CacheRegionStatsResponseBody> regions = stats.getCacheRegions()
+                .stream()
+                .collect(Collectors.toMap(CacheRegionStatsResponseBody::getRegionName, region -> region));
+        Assert.assertTrue(regions.keySet().containsAll(Arrays.asList("product_region", "purchase_region", "selling_region",
+                "productByName_query_region")));
+        Assert.assertEquals(1, regions.get("productByName_query_region").getHitCount());
+        Assert.assertTrue(regions.get("productByName_query_region").getElementsInMemory() >= 1);
+        Assert.assertEquals(MemoryUnit.parseSizeInBytes(Constants.CACHE_PRODUCT_REGION_MAX_BYTES),
+                regions.get("product_region").getMaxBytesLocalHeap());
+        Assert.assertEquals(0, regions.get("product_region").getMaxElementsInMemory());
+        Assert.assertTrue(regions.get("productByName_query_region").getHeapSizeBytes() > 0);
+        Assert.assertTrue(stats.getQueries().stream().anyMatch(query -> query.getExecutionCount() > 0));
+        Assert.assertTrue(stats.getEntities().stream().anyMatch(entity -> entity.getEntityName().equals(Product.class.getName())));
+
+        target("/admin/hibernate/reset")
+                .request(MediaType.APPLICATION_JSON)
+                .post(null);
+        stats = target("/admin/hibernate")
+                .request(MediaType.APPLICATION_JSON)
+                .get(HibernateStatsResponseBody.class);
+        Assert.assertEquals(0, stats.getQueryCacheHitCount());
+        Assert.assertEquals(0, stats.getQueryExecutionCount());
+    }
+
+    /**
+     * при нулевом пороге в журнал медленных запросов попадает запрос отчёта с параметрами, количеством строк и планом H2
+     */
+    @Test
+    public void testSlowQueryLog() {
+
+        target("/api/newproduct")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(product, MediaType.APPLICATION_JSON));
+        PurchasesRequestModel purchaseRequestModel = new PurchasesRequestModel();
+        purchaseRequestModel.setPurchases(Arrays.asList(purchase));
+        HttpResponseBody purchaseResponse = target("/api/purchase")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(purchaseRequestModel, MediaType.APPLICATION_JSON), HttpResponseBody.class);
+        Assert.assertEquals(200, purchaseResponse.getCode());
+        SellingsRequestModel sellingRequestModel = new SellingsRequestModel();
+        sellingRequestModel.setSellings(Arrays.asList(selling));
+        target("/api/demand")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(sellingRequestModel, MediaType.APPLICATION_JSON));
+
+        target("/admin/slowqueries/reset")
+                .request(MediaType.APPLICATION_JSON)
+                .post(null);
+        /**
+         * порог ниже slow_query.min_threshold_ms (в профиле dev - 0) не устанавливается
+         */
+        HttpResponseBody belowMinimum = target("/admin/slowqueries/threshold")
+                .queryParam("ms", Constants.SLOW_QUERY_MIN_THRESHOLD_MS - 1)
+                .request(MediaType.APPLICATION_JSON)
+                .post(null)
+                .readEntity(HttpResponseBody.class);
+        Assert.assertEquals(400, belowMinimum.getCode());
+        Assert.assertEquals("Slow query threshold must be >= " + Constants.SLOW_QUERY_MIN_THRESHOLD_MS + " ms", belowMinimum.getMessage());
+        Assert.assertEquals(Response.Status.OK.getStatusCode(), target("/admin/slowqueries/threshold")
+                .queryParam("ms", 0)
+                .request(MediaType.APPLICATION_JSON)
+                .post(null)
+                .getStatus());
+        try {
+            Assert.assertEquals(incomeMessage("2019-08-24", expectedIncome(Arrays.asList(purchase), Arrays.asList(selling),
+                    LocalDate.parse("2019-08-24"))), getSalesReportMessage("2019-08-24"));
+
+            SlowQueriesResponseBody slowQueries = target("/admin/slowqueries")
+                    .request(MediaType.APPLICATION_JSON)
+                    .get(SlowQueriesResponseBody.class);
+
+            Assert.assertEquals(0, slowQueries.getThresholdMs());
+            Assert.assertEquals(slowQueries.getSlowQueryCount(), slowQueries.getQueries().size());
+            SlowQueryResponseBody productQuery = slowQueries.getQueries()
+                    .stream()
+                    .filter(query -> query.getParameters().contains(product.getName()))
+                    .findFirst()
+                    .orElseThrow(AssertionError::new);
+            Assert.assertTrue(productQuery.getSql().toLowerCase().startsWith("select"));
+            Assert.assertEquals(1, productQuery.getRows());
+            Assert.assertNotNull(productQuery.getPlan());
+            Assert.assertTrue(productQuery.getPlan(), productQuery.getPlan().contains("FROM \"PUBLIC\".\"PRODUCT\""));
+            /**
+             * товар ищется по уникальному индексу названия, а не перебором таблицы
+             */
+            Assert.assertTrue(productQuery.getPlan(), productQuery.getPlan().contains("_INDEX"));
+
+            /**
+             * отчёт на дату последнего движения рассчитывается по журналу товара, сохранённому закупкой и продажей
+             */
+            SlowQueryResponseBody reportQuery = slowQueries.getQueries()
+                    .stream()
+                    .filter(query -> query.getSql().contains("product_ledger"))
+                    .findFirst()
+                    .orElseThrow(AssertionError::new);
+            Assert.assertTrue(reportQuery.getRows() > 0);
+        } finally {
+            target("/admin/slowqueries/threshold")
+                    .queryParam("ms", Constants.SLOW_QUERY_THRESHOLD_MS)
+                    .request(MediaType.APPLICATION_JSON)
+                    .post(null);
+        }
+    }
+
+    /**
+     * встроенный сервер создаётся с пулом потоков и соединителем по настройкам приложения (server.*)
+     */
+    @Test
+    public void testEmbeddedServerStats() throws Exception {
+
+        Assert.assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(),
+                target("/admin/server").request(MediaType.APPLICATION_JSON).get().getStatus());
+
+        Server server = RunServer.createServer(0);
+        server.start();
+        try {
+            ServerConnector connector = (ServerConnector) server.getConnectors()[0];
+            Assert.assertEquals(Constants.SERVER_IDLE_TIMEOUT_MS, connector.getIdleTimeout());
+
+            ServerStatsResponseBody stats = client()
+                    .target("http://localhost:" + connector.getLocalPort() + "/app/admin/server")
+                    .request(MediaType.APPLICATION_JSON)
+                    .get(ServerStatsResponseBody.class);
+
+            Assert.assertEquals(Constants.SERVER_MAX_THREADS, stats.getMaxThreads());
+            Assert.assertEquals(Constants.SERVER_MIN_THREADS, stats.getMinThreads());
+            Assert.assertEquals(Constants.SERVER_QUEUE_SIZE, stats.getQueueCapacity());
+            Assert.assertTrue(stats.getBusyThreads() >= 1);
+            Assert.assertEquals(0, stats.getRejectedTasks());
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * прогрев загружает товары и недавние закупки в кэш второго уровня, выполняет прогревочные запросы
+     * и только после этого сообщает о готовности
+     */
+    @Test
+    public void testWarmUp() throws Exception {
+
+        Assert.assertEquals(Response.Status.OK.getStatusCode(),
+                target("/admin/ready").request(MediaType.APPLICATION_JSON).get().getStatus());
+
+        target("/api/newproduct")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(product, MediaType.APPLICATION_JSON));
+        PurchasesRequestModel purchaseRequestModel = new PurchasesRequestModel();
+        purchaseRequestModel.setPurchases(Arrays.asList(createPurchase(5, 3.2, LocalDate.now().toString())));
+        target("/api/purchase")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(purchaseRequestModel, MediaType.APPLICATION_JSON));
+
+        SessionFactory factory = HibernateHelper.getInstance().getFactory();
+        Long purchaseId;
+        try (Session session = factory.openSession()) {
+            purchaseId = session.createQuery("select p.id from Purchase p", Long.class).uniqueResult();
+        }
+        factory.getCache().evictAllRegions();
+        Assert.assertFalse(factory.getCache().containsEntity(Purchase.class, purchaseId));
+
+        Server server = RunServer.createServer(0);
+        try {
+            WarmUp.getInstance().run(server);
+
+            WarmUpResponseBody stats = client()
+                    .target("http://localhost:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort() + "/app/admin/ready")
+                    .request(MediaType.APPLICATION_JSON)
+                    .get(WarmUpResponseBody.class);
+
+            Assert.assertTrue(stats.isReady());
+            Assert.assertEquals(1, stats.getProducts());
+            Assert.assertEquals(1, stats.getPurchases());
+            Assert.assertEquals(0, stats.getSellings());
+            Assert.assertEquals(Constants.WARMUP_REQUESTS, stats.getRequests());
+            Assert.assertTrue(factory.getCache().containsEntity(Purchase.class, purchaseId));
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * запросы, прошедшие через фильтр встроенного сервера, учитываются в метриках /metrics и получают заголовок Server-Timing
+     */
+    @Test
+    public void testRequestMetrics() throws Exception {
+
+        Server server = RunServer.createServer(0);
+        server.start();
+        try {
+            String baseUrl = "http://localhost:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort() + "/app";
+
+            client().target(baseUrl + "/api/newproduct")
+                    .request(MediaType.APPLICATION_JSON)
+                    .post(Entity.entity(product, MediaType.APPLICATION_JSON))
+                    .close();
+            Response report = client().target(baseUrl + "/api/salesreport/" + product.getName() + "/2019-08-24")
+                    .request(MediaType.APPLICATION_JSON)
+                    .get();
+            Assert.assertEquals(incomeMessage("2019-08-24", 0), report.readEntity(HttpResponseBody.class).getMessage());
+
+            String serverTiming = report.getHeaderString(RequestTimingFilter.SERVER_TIMING_HEADER);
+            Assert.assertNotNull(serverTiming);
+            Assert.assertTrue(serverTiming, serverTiming.contains("db;dur="));
+            Assert.assertTrue(serverTiming, serverTiming.contains("fifo;dur="));
+            Assert.assertTrue(serverTiming, serverTiming.contains("total;dur="));
+
+            String metrics = client().target(baseUrl + "/metrics").request().get(String.class);
+            Assert.assertTrue(metrics, metrics.contains("mysklad_http_responses_total{endpoint=\"GET /api/salesreport/{name}/{date}\",status=\"200\"} 1"));
+            Assert.assertTrue(metrics, metrics.contains("mysklad_http_request_duration_quantile_seconds{endpoint=\"GET /api/salesreport/{name}/{date}\",quantile=\"0.99\"}"));
+            Assert.assertTrue(metrics, metrics.contains("mysklad_http_request_phase_seconds_total{endpoint=\"POST /api/newproduct\",phase=\"json\"}"));
+            Assert.assertTrue(metrics, metrics.contains("mysklad_http_requests_in_flight 1"));
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * запросы расчёта FIFO по товару и диапазону дат используют составные индексы (product_id, дата); слои себестоимости
+     * выдаются в порядке индекса, без сортировки, - иначе H2 не может выполнить запрос лениво
+     */
+    @Test
+    public void testReportQueriesUseProductDateIndexes() {
+
+        target("/api/newproduct")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(product, MediaType.APPLICATION_JSON));
+
+        try (Session session = factory.openSession()) {
+            Long productId = session.createQuery("select p.id from Product p where p.name = :name", Long.class)
+                    .setParameter("name", product.getName())
+                    .uniqueResult();
+
+            String purchasePlan = (String) session.createNativeQuery(
+                    "explain select * from purchase where product_id = :productId and purchase_date <= :endDate " +
+                            "order by product_id, purchase_date, purchase_id")
+                    .setParameter("productId", productId)
+                    .setParameter("endDate", LocalDate.parse("2019-08-24"))
+                    .getSingleResult();
+            String sellingPlan = (String) session.createNativeQuery(
+                    "explain select selling_date, sum(product_count), sum(product_count * product_price), count(*) from selling " +
+                            "where product_id = :productId and selling_date <= :endDate group by selling_date order by selling_date")
+                    .setParameter("productId", productId)
+                    .setParameter("endDate", LocalDate.parse("2019-08-24"))
+                    .getSingleResult();
+
+            Assert.assertTrue(purchasePlan, purchasePlan.toUpperCase().contains("PURCHASE_PRODUCT_FIFO_IDX"));
+            Assert.assertTrue(purchasePlan, purchasePlan.contains("index sorted"));
+            Assert.assertTrue(sellingPlan, sellingPlan.toUpperCase().contains("SELLING_PRODUCT_DATE_IDX"));
+        }
+    }
+
+    /**
+     * параллельные продажи нескольких товаров: продаётся ровно столько, сколько было закуплено, остаток не уходит в минус
+     */
+    @Test
+    public void testConcurrentSellingsDoNotOversell() throws Exception {
+
+        int productCount = 4;
+        int stock = 400;
+        int sellRequests = 2000;
+
+        List<Purchase> purchases = new ArrayList<>();
+        for (int i = 0; i < productCount; i++) {
+            Product stressProduct = new Product();
+            stressProduct.setName("stress" + i);
+            target("/api/newproduct")
+                    .request(MediaType.APPLICATION_JSON)
+                    .post(Entity.entity(stressProduct, MediaType.APPLICATION_JSON));
+
+            Purchase stressPurchase = createPurchase(stock, 1, "2019-08-01");
+            stressPurchase.setProduct(stressProduct);
+            purchases.add(stressPurchase);
+        }
+        PurchasesRequestModel purchaseRequestModel = new PurchasesRequestModel();
+        purchaseRequestModel.setPurchases(purchases);
+        target("/api/purchase")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(purchaseRequestModel, MediaType.APPLICATION_JSON));
+
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        List<Future<HttpResponseBody>> responses = new ArrayList<>();
+        for (int i = 0; i < sellRequests; i++) {
+            String productName = "stress" + (i % productCount);
+            responses.add(executor.submit(() -> {
+                Selling stressSelling = createSelling(1, 3, "2019-08-02");
+                stressSelling.setProduct(new Product());
+                stressSelling.getProduct().setName(productName);
+
+                SellingsRequestModel sellingRequestModel = new SellingsRequestModel();
+                sellingRequestModel.setSellings(Arrays.asList(stressSelling));
+                return target("/api/demand")
+                        .request(MediaType.APPLICATION_JSON)
+                        .post(Entity.entity(sellingRequestModel, MediaType.APPLICATION_JSON), HttpResponseBody.class);
+            }));
+        }
+        executor.shutdown();
+
+        int savedSellings = 0;
+        for (Future<HttpResponseBody> response : responses) {
+            HttpResponseBody body = response.get(2, TimeUnit.MINUTES);
+            Assert.assertEquals(200, body.getCode());
+            if (body.getMessage().endsWith("saved.")) {
+                savedSellings++;
+            }
+        }
+
+        Assert.assertEquals(productCount * stock, savedSellings);
+
+        try (Session session = factory.openSession()) {
+            Assert.assertEquals(Long.valueOf(0), session.createQuery("select sum(p.count) from Product p", Long.class).uniqueResult());
+            Assert.assertEquals(Long.valueOf(productCount * stock), session.createQuery("select count(s) from Selling s", Long.class).uniqueResult());
+            session.createQuery("from ProductLedger", ProductLedger.class).list()
+                    .forEach(ledger -> Assert.assertEquals(stock, ledger.getSoldCount()));
+        }
+
+        SalesReportsResponseBody report = target("/api/salesreports/2019-08-02")
+                .request(MediaType.APPLICATION_JSON)
+                .get(SalesReportsResponseBody.class);
+        for (int i = 0; i < productCount; i++) {
+            Assert.assertEquals(Double.valueOf(stock * (3 - 1)), report.getIncomes().get("stress" + i));
+        }
+    }
+
+    /**
+     * расчёт прибыли по методу FIFO "в лоб" - по всем закупкам и продажам
+     */
+    private double expectedIncome(List<Purchase> purchases, List<Selling> sellings, LocalDate reportDate) {
+        long soldCount = 0;
+        double income = 0;
+        for (Selling s : sellings) {
+            if (!s.getSellingDate().isAfter(reportDate)) {
+                soldCount += s.getProductCount();
+                income += s.getProductCount() * s.getProductPrice();
+            }
+        }
+        List<Purchase> sortedPurchases = new ArrayList<>(purchases);
+        sortedPurchases.sort(Comparator.comparing(Purchase::getPurchaseDate));
+        for (Purchase p : sortedPurchases) {
+            if (soldCount == 0 || p.getPurchaseDate().isAfter(reportDate)) {
+                break;
+            }
+            long taken = Math.min(soldCount, p.getProductCount());
+            income -= taken * p.getProductPrice();
+            soldCount -= taken;
+        }
+        return income;
+    }
+
+    private Purchase createPurchase(int count, double price, String date) {
+        Purchase purchase = new Purchase();
+        purchase.setProductCount(count);
+        purchase.setProductPrice(price);
+        purchase.setPurchaseDate(LocalDate.parse(date));
+        purchase.setProduct(product);
+        return purchase;
+    }
+
+    private Selling createSelling(int count, double price, String date) {
+        Selling selling = new Selling();
+        selling.setProductCount(count);
+        selling.setProductPrice(price);
+        selling.setSellingDate(LocalDate.parse(date));
+        selling.setProduct(product);
+        return selling;
+    }
+
+    /**
+     * дневные итоги движений в виде строки "дата: закуплено, сумма закупок, закупок, продано, выручка, продаж; ..."
+     */
+    private String dailyMovements() {
+        try (Session session = factory.openSession()) {
+            return session.createQuery("from DailyMovement d order by d.movementDate", DailyMovement.class)
+                    .list()
+                    .stream()
+                    .map(day -> day.getMovementDate() + ": " + day.getPurchasedCount() + ", " + day.getPurchasedCost() + ", "
+                            + day.getPurchaseMovements() + ", " + day.getSoldCount() + ", " + day.getRevenue() + ", "
+                            + day.getSellingMovements())
+                    .collect(Collectors.joining("; "));
+        }
+    }
+
+    /**
+     * водяной знак журнала товара в виде строки "дата слоя, единиц перед слоем, себестоимость единиц перед слоем"
+     */
+    private String watermark() {
+        try (Session session = factory.openSession()) {
+            ProductLedger ledger = session.createQuery("from ProductLedger l where l.product.name = :name", ProductLedger.class)
+                    .setParameter("name", product.getName())
+                    .uniqueResult();
+            return ledger.getWatermarkLayerDate() + ", " + ledger.getWatermarkConsumedCount() + ", " + ledger.getWatermarkCostOfGoodsSold();
+        }
+    }
+
+    private ReportCacheStatsResponseBody reportCacheStats() {
+        return target("/admin/reportcache")
+                .request(MediaType.APPLICATION_JSON)
+                .get(ReportCacheStatsResponseBody.class);
+    }
+
+    private String incomeMessage(String date, double income) {
+        NumberFormat formatter = new DecimalFormat("#0.00");
+        return "Income on " + date + ": [" + formatter.format(income) + "]";
+    }
+
+    private String getSalesReportMessage(String date) {
+        return target("/api/salesreport/" + product.getName() + "/" + date)
+                .request(MediaType.APPLICATION_JSON)
+                .get(HttpResponseBody.class)
+                .getMessage();
+    }
+
     @After
     public void clearResources() {
         product = null;
@@ -287,6 +1546,12 @@ public class RestServiceTest extends JerseyTest {
         if (factory != null && !factory.isClosed()) {
             factory.close();
         }
+        /**
+         * данные в БД удаляются в каждом тесте в обход фабрики приложения, поэтому её кэш второго уровня
+         * (в том числе кэш запросов) и кэш отчётов могут ссылаться на уже удалённые записи
+         */
+        HibernateHelper.getInstance().getFactory().getCache().evictAllRegions();
+        ReportCache.getInstance().clear();
     }
 
 }